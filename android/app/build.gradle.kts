@@ -2,6 +2,7 @@ plugins {
     id("com.android.application")
     id("org.jetbrains.kotlin.android")
     id("org.jetbrains.kotlin.plugin.compose")
+    id("org.jetbrains.kotlin.plugin.serialization")
     id("com.google.devtools.ksp")
     id("dagger.hilt.android.plugin")
     id("kotlin-parcelize")
@@ -64,7 +65,28 @@ android {
         }
     }
 
+    testOptions {
+        // JVM tests run against android.jar stubs; let calls like Log.w return defaults
+        unitTests.isReturnDefaultValues = true
+    }
+
+    androidResources {
+        // Dialogue packs are memory-mapped straight from the APK
+        noCompress += "dpk"
+    }
+
+}
 
+// Offline dialogue packs, compiled from src/main/dialogues into a binary asset
+val compileDialoguePacks = tasks.register<CompileDialoguePacksTask>("compileDialoguePacks") {
+    sourceDir.set(layout.projectDirectory.dir("src/main/dialogues"))
+    outputDir.set(layout.buildDirectory.dir("generated/dialoguePacks"))
+}
+
+androidComponents {
+    onVariants { variant ->
+        variant.sources.assets?.addGeneratedSourceDirectory(compileDialoguePacks, CompileDialoguePacksTask::outputDir)
+    }
 }
 
 dependencies {
@@ -114,6 +136,11 @@ dependencies {
     implementation("androidx.room:room-ktx:2.6.1")
     ksp("androidx.room:room-compiler:2.6.1")
     
+    // Background work
+    implementation("androidx.work:work-runtime-ktx:2.9.0")
+    implementation("androidx.hilt:hilt-work:1.1.0")
+    ksp("androidx.hilt:hilt-compiler:1.1.0")
+    
     // Audio & Media
     implementation("androidx.media3:media3-exoplayer:1.2.1")
     implementation("androidx.media3:media3-ui:1.2.1")
@@ -0,0 +1,105 @@
+package com.turi.languagelearning.benchmark
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.util.Log
+import com.turi.languagelearning.benchmark.replay.FixtureStore
+import com.turi.languagelearning.benchmark.replay.ReplayTiming
+import java.io.File
+
+/**
+ * Debug-only entry point for the in-app microbenchmarks:
+ *
+ *   adb shell am broadcast -n com.turi.languagelearning.debug/com.turi.languagelearning.benchmark.BenchmarkReceiver \
+ *       --es benchmark greeting
+ *
+ * The conversation benchmark replays fixtures from the app's files dir, or the bundled ones
+ * if there are none. Optional extras: `--es mode record --es api_key <key>` to record new
+ * fixtures, `--el latency_ms`, `--el interval_ms` and `--el jitter_ms` to replace the recorded
+ * timing, `--ei turns` and `--ei iterations`. `--es mode stalled` instead replays a model that
+ * takes 10 s to answer and fails unless the local fallback keeps every turn within its SLA.
+ *
+ * Results are written to logcat under the BenchmarkReceiver tag.
+ */
+class BenchmarkReceiver : BroadcastReceiver() {
+
+    private val TAG = "BenchmarkReceiver"
+
+    override fun onReceive(context: Context, intent: Intent) {
+        val name = intent.getStringExtra(EXTRA_BENCHMARK) ?: BENCHMARK_GREETING
+        val pending = goAsync()
+
+        Thread {
+            try {
+                val results = when (name) {
+                    BENCHMARK_GREETING -> GreetingBenchmark(context).run()
+                    BENCHMARK_CONVERSATION -> runConversationBenchmark(context, intent)
+                    else -> {
+                        Log.w(TAG, "Unknown benchmark: $name")
+                        emptyList()
+                    }
+                }
+                results.forEach { Log.i(TAG, it.toString()) }
+            } catch (e: Exception) {
+                Log.e(TAG, "Benchmark $name failed", e)
+            } finally {
+                pending.finish()
+            }
+        }.start()
+    }
+
+    private fun runConversationBenchmark(context: Context, intent: Intent): List<ConversationBenchmarkResult> {
+        val benchmark = ConversationBenchmark(
+            context,
+            turns = intent.getIntExtra(EXTRA_TURNS, ConversationBenchmark.DEFAULT_TURNS),
+            iterations = intent.getIntExtra(EXTRA_ITERATIONS, ConversationBenchmark.DEFAULT_ITERATIONS)
+        )
+        val directory = File(context.filesDir, FIXTURE_PATH)
+
+        if (intent.getStringExtra(EXTRA_MODE) == MODE_RECORD) {
+            val apiKey = intent.getStringExtra(EXTRA_API_KEY)
+                ?: throw IllegalArgumentException("Recording needs --es $EXTRA_API_KEY")
+            directory.deleteRecursively()
+            return benchmark.record(directory, apiKey).also {
+                Log.i(TAG, "Recorded fixtures to $directory")
+            }
+        }
+
+        val recorded = FixtureStore.load(directory)
+        val fixtures = if (recorded.size > 0) recorded else FixtureStore.loadAssets(context.assets, FIXTURE_PATH)
+
+        if (intent.getStringExtra(EXTRA_MODE) == MODE_STALLED) return benchmark.stalled(fixtures)
+
+        val jitterMs = intent.getLongExtra(EXTRA_JITTER_MS, 0)
+        val timing = if (intent.hasExtra(EXTRA_LATENCY_MS)) {
+            ReplayTiming.Synthetic(
+                latencyMs = intent.getLongExtra(EXTRA_LATENCY_MS, 0),
+                chunkIntervalMs = intent.getLongExtra(EXTRA_INTERVAL_MS, 0),
+                jitterMs = jitterMs
+            )
+        } else {
+            ReplayTiming.Recorded(jitterMs)
+        }
+
+        return benchmark.replay(fixtures, timing)
+    }
+
+    companion object {
+        const val EXTRA_BENCHMARK = "benchmark"
+        const val BENCHMARK_GREETING = "greeting"
+        const val BENCHMARK_CONVERSATION = "conversation"
+
+        const val EXTRA_MODE = "mode"
+        const val MODE_RECORD = "record"
+        const val MODE_STALLED = "stalled"
+        const val EXTRA_API_KEY = "api_key"
+        const val EXTRA_LATENCY_MS = "latency_ms"
+        const val EXTRA_INTERVAL_MS = "interval_ms"
+        const val EXTRA_JITTER_MS = "jitter_ms"
+        const val EXTRA_TURNS = "turns"
+        const val EXTRA_ITERATIONS = "iterations"
+
+        private const val FIXTURE_PATH = "benchmark/conversation"
+    }
+}
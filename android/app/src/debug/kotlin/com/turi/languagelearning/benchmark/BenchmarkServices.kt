@@ -0,0 +1,98 @@
+package com.turi.languagelearning.benchmark
+
+import android.content.Context
+import com.turi.languagelearning.core.model.Language
+import com.turi.languagelearning.core.network.GeminiApiClient
+import com.turi.languagelearning.core.network.GeminiModelRouter
+import com.turi.languagelearning.core.network.GeminiRequestScheduler
+import com.turi.languagelearning.core.network.RequestPriority
+import com.turi.languagelearning.data.local.dao.ExplanationCacheDao
+import com.turi.languagelearning.data.local.dao.GrammarExplanationDao
+import com.turi.languagelearning.data.local.dao.SkillEstimateDao
+import com.turi.languagelearning.data.local.entity.ExplanationCacheEntity
+import com.turi.languagelearning.data.local.entity.GrammarExplanationEntity
+import com.turi.languagelearning.data.local.entity.SkillEstimateEntity
+import com.turi.languagelearning.data.local.pack.DialoguePackRepository
+import com.turi.languagelearning.features.conversation.data.GeminiConversationService
+import com.turi.languagelearning.features.conversation.data.cache.ExplanationCache
+import com.turi.languagelearning.features.conversation.data.evaluation.LocalResponseEvaluator
+import com.turi.languagelearning.features.conversation.data.fallback.FallbackResponseEngine
+import com.turi.languagelearning.features.conversation.data.grammar.GrammarExplanationStore
+import com.turi.languagelearning.features.conversation.data.skill.SkillModel
+import com.turi.languagelearning.features.conversation.data.vocabulary.VocabularyCoverageChecker
+import com.turi.languagelearning.features.conversation.domain.GrammarExplanation
+import com.turi.languagelearning.features.conversation.domain.GrammarExplanationGenerator
+import com.turi.languagelearning.features.conversation.domain.VocabularySource
+
+/**
+ * Wires the conversation service by hand for benchmarks, with storage stubbed out
+ * so runs don't depend on or disturb the app's database.
+ */
+object BenchmarkServices {
+
+    fun conversationService(
+        context: Context,
+        scheduler: GeminiRequestScheduler = GeminiRequestScheduler(),
+        geminiClient: GeminiApiClient = GeminiApiClient(scheduler, GeminiModelRouter())
+    ): GeminiConversationService {
+        val grammarGenerator = PlaceholderGrammarGenerator
+        val dialoguePacks = DialoguePackRepository(context)
+        val evaluator = LocalResponseEvaluator()
+        return GeminiConversationService(
+            geminiClient,
+            scheduler,
+            ExplanationCache(NoOpExplanationCacheDao),
+            evaluator,
+            GrammarExplanationStore(NoOpGrammarExplanationDao, dialoguePacks, grammarGenerator),
+            grammarGenerator,
+            FallbackResponseEngine(dialoguePacks, evaluator),
+            SkillModel(NoOpSkillEstimateDao),
+            VocabularyCoverageChecker(NoVocabularySource)
+        )
+    }
+
+    private object NoOpExplanationCacheDao : ExplanationCacheDao {
+        override suspend fun getEntry(cacheKey: String): ExplanationCacheEntity? = null
+        override suspend fun insertEntry(entry: ExplanationCacheEntity) = Unit
+        override suspend fun deleteOlderThan(cutoff: Long) = Unit
+        override suspend fun deleteAll() = Unit
+    }
+
+    private object NoOpGrammarExplanationDao : GrammarExplanationDao {
+        override suspend fun getExplanation(sentenceKey: String): GrammarExplanationEntity? = null
+        override suspend fun contains(sentenceKey: String): Boolean = false
+        override suspend fun insertExplanation(entry: GrammarExplanationEntity) = Unit
+        override suspend fun markUsed(sentenceKey: String, usedAt: Long) = Unit
+        override suspend fun totalSizeBytes(): Long = 0
+        override suspend fun leastRecentlyUsedKeys(limit: Int): List<String> = emptyList()
+        override suspend fun deleteExplanations(sentenceKeys: List<String>) = Unit
+        override suspend fun deleteOtherVersions(contentVersion: Int): Int = 0
+    }
+
+    private object NoOpSkillEstimateDao : SkillEstimateDao {
+        override suspend fun getEstimate(languageCode: String): SkillEstimateEntity? = null
+        override suspend fun insertEstimate(estimate: SkillEstimateEntity) = Unit
+        override suspend fun deleteAll() = Unit
+    }
+
+    // Placeholder content, so grammar lookups cost no model round trip during a run
+    private object PlaceholderGrammarGenerator : GrammarExplanationGenerator {
+        override val version: Int = 1
+
+        override suspend fun generate(
+            sentence: String,
+            language: Language,
+            priority: RequestPriority
+        ) = GrammarExplanation(
+            sentence = sentence,
+            language = language,
+            explanation = "Grammar explanation for this sentence",
+            grammarRules = listOf("Rule 1", "Rule 2"),
+            examples = listOf("Example 1", "Example 2")
+        )
+    }
+
+    private object NoVocabularySource : VocabularySource {
+        override suspend fun requiredWords(dialogueId: Int, language: Language): List<String> = emptyList()
+    }
+}
@@ -0,0 +1,239 @@
+package com.turi.languagelearning.benchmark
+
+import android.content.Context
+import com.turi.languagelearning.benchmark.replay.FixtureStore
+import com.turi.languagelearning.benchmark.replay.RecordingInterceptor
+import com.turi.languagelearning.benchmark.replay.ReplayServer
+import com.turi.languagelearning.benchmark.replay.ReplayTiming
+import com.turi.languagelearning.core.model.Language
+import com.turi.languagelearning.core.network.GeminiApiClient
+import com.turi.languagelearning.core.network.GeminiConfig
+import com.turi.languagelearning.core.network.GeminiModelRouter
+import com.turi.languagelearning.core.network.GeminiRequestScheduler
+import com.turi.languagelearning.features.conversation.data.GeminiConversationService
+import com.turi.languagelearning.features.conversation.domain.ConversationChunk
+import com.turi.languagelearning.features.conversation.domain.SpeculativeTurnExecutor
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.runBlocking
+import okhttp3.OkHttpClient
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+/**
+ * End-to-end conversation benchmark: `startConversation`, [turns] streamed turns, `endConversation`.
+ *
+ * [replay] serves the model from recorded fixtures through a local [ReplayServer], so runs are
+ * reproducible and include the real HTTP, SSE parsing and turn assembly. [record] runs the same
+ * script against the live API once and writes the fixtures. Each turn reports time to the first
+ * message chunk, time to the complete turn and bytes allocated.
+ */
+class ConversationBenchmark(
+    private val context: Context,
+    private val turns: Int = DEFAULT_TURNS,
+    private val iterations: Int = DEFAULT_ITERATIONS,
+    private val warmupIterations: Int = 1,
+    private val allocatedBytes: () -> Long = Microbenchmark::artAllocatedBytes
+) {
+
+    fun replay(fixtures: FixtureStore, timing: ReplayTiming): List<ConversationBenchmarkResult> {
+        ReplayServer(fixtures, timing).use { server ->
+            // Quota and API key only matter to the real endpoint
+            val scheduler = GeminiRequestScheduler(UNTHROTTLED_CAPACITY, UNTHROTTLED_PERIOD_MS)
+            val client = GeminiApiClient(
+                GeminiConfig(baseUrl = server.baseUrl, apiKey = REPLAY_API_KEY),
+                httpClient(),
+                scheduler,
+                GeminiModelRouter()
+            )
+            val service = BenchmarkServices.conversationService(context, scheduler, client)
+
+            repeat(warmupIterations) {
+                fixtures.reset()
+                runConversation(service)
+            }
+            val samples = (0 until iterations).flatMap {
+                fixtures.reset()
+                runConversation(service)
+            }
+            return listOf(summarize("conversation/replay", samples))
+        }
+    }
+
+    /**
+     * Replays with a model that takes [stallMs] to answer and checks the turn SLA: the local
+     * fallback has to start a streamed turn within the first-chunk deadline, and answer a whole
+     * turn within the turn deadline, each plus [slackMs]. The speculative run taps an option while
+     * its branch is still generating and has to meet the turn deadline too. Throws if a turn missed it.
+     */
+    fun stalled(
+        fixtures: FixtureStore,
+        stallMs: Long = STALLED_MODEL_MS,
+        slackMs: Long = SLA_SLACK_MS
+    ): List<ConversationBenchmarkResult> {
+        ReplayServer(fixtures, ReplayTiming.Synthetic(latencyMs = stallMs)).use { server ->
+            val scheduler = GeminiRequestScheduler(UNTHROTTLED_CAPACITY, UNTHROTTLED_PERIOD_MS)
+            val client = GeminiApiClient(
+                GeminiConfig(baseUrl = server.baseUrl, apiKey = REPLAY_API_KEY),
+                httpClient(),
+                scheduler,
+                GeminiModelRouter()
+            )
+            val service = BenchmarkServices.conversationService(context, scheduler, client)
+
+            fixtures.reset()
+            val streamed = summarize("conversation/stalled-stream", runConversation(service))
+            fixtures.reset()
+            val whole = summarize("conversation/stalled-turn", runConversation(service, TurnMode.WHOLE))
+            fixtures.reset()
+            val speculative = summarize(
+                "conversation/stalled-speculative",
+                runConversation(service, TurnMode.SPECULATIVE)
+            )
+
+            val firstChunkLimit = GeminiConversationService.FIRST_CHUNK_DEADLINE_MS + slackMs
+            val turnLimit = GeminiConversationService.TURN_DEADLINE_MS + slackMs
+            check(streamed.timeToFirstChunk.maxMs <= firstChunkLimit) {
+                "Streamed turns missed the first-chunk SLA of $firstChunkLimit ms: $streamed"
+            }
+            check(whole.turnTime.maxMs <= turnLimit) {
+                "Turns missed the turn SLA of $turnLimit ms: $whole"
+            }
+            check(speculative.turnTime.maxMs <= turnLimit) {
+                "Speculated turns missed the turn SLA of $turnLimit ms: $speculative"
+            }
+            return listOf(streamed, whole, speculative)
+        }
+    }
+
+    /**
+     * Runs the script once against the live API, writing one fixture per model request into [directory]
+     */
+    fun record(directory: File, apiKey: String): List<ConversationBenchmarkResult> {
+        val scheduler = GeminiRequestScheduler()
+        val client = GeminiApiClient(
+            GeminiConfig(apiKey = apiKey),
+            httpClient().newBuilder().addInterceptor(RecordingInterceptor(directory)).build(),
+            scheduler,
+            GeminiModelRouter()
+        )
+        val service = BenchmarkServices.conversationService(context, scheduler, client)
+        return listOf(summarize("conversation/record", runConversation(service)))
+    }
+
+    private fun runConversation(
+        service: GeminiConversationService,
+        mode: TurnMode = TurnMode.STREAM
+    ): List<TurnSample> = runBlocking {
+        val conversation = service.startConversation(CHARACTER_NAME, Language.SPANISH, 1)
+        val speculationScope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+        val speculation = SpeculativeTurnExecutor(speculationScope, service)
+
+        val samples = List(turns) { turn ->
+            val bytesBefore = allocatedBytes()
+            val start = System.nanoTime()
+            var firstChunk = -1L
+            val learnerInput = LEARNER_SCRIPT[turn % LEARNER_SCRIPT.size]
+
+            when (mode) {
+                TurnMode.STREAM ->
+                    service.continueConversationStream(conversation.conversationId, learnerInput, Language.SPANISH)
+                        .collect { chunk ->
+                            if (firstChunk < 0 && chunk is ConversationChunk.MessageDelta) firstChunk = System.nanoTime()
+                        }
+                TurnMode.WHOLE ->
+                    service.continueConversation(conversation.conversationId, learnerInput, Language.SPANISH)
+                TurnMode.SPECULATIVE -> {
+                    // The learner taps as soon as the options show, while every branch is still generating
+                    val options = listOf(learnerInput, LEARNER_SCRIPT[(turn + 1) % LEARNER_SCRIPT.size])
+                    speculation.speculate(conversation.conversationId, options, Language.SPANISH)
+                    speculation.awaitBranch(conversation.conversationId, learnerInput)
+                        ?: service.continueConversation(conversation.conversationId, learnerInput, Language.SPANISH)
+                }
+            }
+
+            val end = System.nanoTime()
+            TurnSample(
+                timeToFirstChunkNanos = (if (firstChunk >= 0) firstChunk else end) - start,
+                turnNanos = end - start,
+                allocatedBytes = allocatedBytes() - bytesBefore
+            )
+        }
+
+        speculationScope.cancel()
+        service.endConversation(conversation.conversationId)
+        samples
+    }
+
+    private fun summarize(name: String, samples: List<TurnSample>) = ConversationBenchmarkResult(
+        name = name,
+        turns = samples.size,
+        timeToFirstChunk = LatencySummary.of(samples.map { it.timeToFirstChunkNanos }),
+        turnTime = LatencySummary.of(samples.map { it.turnNanos }),
+        bytesPerTurn = if (samples.isEmpty()) 0 else samples.sumOf { it.allocatedBytes } / samples.size
+    )
+
+    private fun httpClient(): OkHttpClient = OkHttpClient.Builder()
+        .readTimeout(60, TimeUnit.SECONDS)
+        .build()
+
+    private enum class TurnMode { STREAM, WHOLE, SPECULATIVE }
+
+    private class TurnSample(
+        val timeToFirstChunkNanos: Long,
+        val turnNanos: Long,
+        val allocatedBytes: Long
+    )
+
+    companion object {
+        const val DEFAULT_TURNS = 5
+        const val DEFAULT_ITERATIONS = 5
+
+        // Slow enough that only the fallback can meet the turn SLA
+        const val STALLED_MODEL_MS = 10_000L
+        const val SLA_SLACK_MS = 250L
+
+        private const val CHARACTER_NAME = "María"
+        private const val REPLAY_API_KEY = "replay"
+        private const val UNTHROTTLED_CAPACITY = 10_000
+        private const val UNTHROTTLED_PERIOD_MS = 1_000L
+
+        private val LEARNER_SCRIPT = listOf(
+            "Me llamo Ana",
+            "Soy de Madrid, ¿y tú?",
+            "Me gusta leer y viajar",
+            "¿Qué te gusta hacer los fines de semana?",
+            "Muchas gracias, hasta luego"
+        )
+    }
+}
+
+data class LatencySummary(
+    val p50Ms: Double,
+    val p90Ms: Double,
+    val maxMs: Double
+) {
+    override fun toString(): String = "p50 %.1f ms, p90 %.1f ms, max %.1f ms".format(p50Ms, p90Ms, maxMs)
+
+    companion object {
+        fun of(nanos: List<Long>): LatencySummary {
+            if (nanos.isEmpty()) return LatencySummary(0.0, 0.0, 0.0)
+            val sorted = nanos.sorted()
+            fun percentile(p: Double) = sorted[((sorted.size - 1) * p).toInt()] / 1_000_000.0
+            return LatencySummary(percentile(0.5), percentile(0.9), sorted.last() / 1_000_000.0)
+        }
+    }
+}
+
+data class ConversationBenchmarkResult(
+    val name: String,
+    val turns: Int,
+    val timeToFirstChunk: LatencySummary,
+    val turnTime: LatencySummary,
+    val bytesPerTurn: Long
+) {
+    override fun toString(): String =
+        "$name ($turns turns): first chunk $timeToFirstChunk; turn $turnTime; $bytesPerTurn B/turn"
+}
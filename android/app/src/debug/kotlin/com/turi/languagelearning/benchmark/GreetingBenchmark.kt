@@ -0,0 +1,110 @@
+package com.turi.languagelearning.benchmark
+
+import android.content.Context
+import com.turi.languagelearning.core.model.Language
+import com.turi.languagelearning.features.conversation.data.GreetingTemplates
+import com.turi.languagelearning.features.conversation.domain.ConversationResult
+import com.turi.languagelearning.features.conversation.domain.ResponseOption
+import kotlinx.coroutines.runBlocking
+
+/**
+ * Conversation start cost before and after the greeting template registry.
+ *
+ * "legacy" replays the former per-call `when(language)` greeting construction, "registry"
+ * the preparsed templates, and "startConversation" the full service call with the registry.
+ */
+class GreetingBenchmark(
+    private val context: Context,
+    private val harness: Microbenchmark = Microbenchmark()
+) {
+
+    fun run(): List<BenchmarkResult> {
+        val service = BenchmarkServices.conversationService(context)
+
+        return listOf(
+            harness.measure("greeting/legacy") {
+                LegacyGreetings.generate(CHARACTER_NAME, Language.SPANISH, 1)
+            },
+            harness.measure("greeting/registry") {
+                val greeting = GreetingTemplates.greeting(Language.SPANISH, 1, CHARACTER_NAME)
+                ConversationResult(
+                    conversationId = "",
+                    characterName = CHARACTER_NAME,
+                    characterMessage = greeting.characterMessage,
+                    translation = greeting.translation,
+                    responseOptions = greeting.responseOptions,
+                    learningTips = greeting.learningTips,
+                    difficulty = 1
+                )
+            },
+            harness.measure("startConversation") {
+                runBlocking { service.startConversation(CHARACTER_NAME, Language.SPANISH, 1) }
+            }
+        )
+    }
+
+    /**
+     * The greeting path as it was before the registry, for the Spanish and default branches
+     */
+    private object LegacyGreetings {
+
+        private data class Greeting(
+            val message: String,
+            val translation: String,
+            val responseOptions: List<ResponseOption>,
+            val learningTips: List<String>
+        )
+
+        fun generate(characterName: String, language: Language, userLevel: Int): ConversationResult {
+            val greetings = when (language) {
+                Language.SPANISH -> when (userLevel) {
+                    1 -> Greeting(
+                        "¡Hola! Me llamo $characterName. ¿Cómo te llamas?",
+                        "Hello! My name is $characterName. What's your name?",
+                        listOf(
+                            ResponseOption("1", "Me llamo Ana", "My name is Ana"),
+                            ResponseOption("2", "Hola, soy Carlos", "Hello, I'm Carlos"),
+                            ResponseOption("3", "Mucho gusto", "Nice to meet you")
+                        ),
+                        listOf("'Me llamo' means 'My name is'", "¿Cómo te llamas? is 'What's your name?'")
+                    )
+                    else -> Greeting(
+                        "¡Buenos días! ¿Cómo está usted hoy?",
+                        "Good morning! How are you today?",
+                        listOf(
+                            ResponseOption("1", "Muy bien, gracias", "Very well, thank you"),
+                            ResponseOption("2", "Bastante bien", "Pretty good"),
+                            ResponseOption("3", "No muy bien", "Not very well")
+                        ),
+                        listOf("'Usted' is the formal 'you'", "Buenos días = Good morning")
+                    )
+                }
+
+                else -> Greeting(
+                    "Hello! My name is $characterName. What's your name?",
+                    "Hello! My name is $characterName. What's your name?",
+                    listOf(
+                        ResponseOption("1", "My name is John", "My name is John"),
+                        ResponseOption("2", "Hi, I'm Sarah", "Hi, I'm Sarah"),
+                        ResponseOption("3", "Nice to meet you", "Nice to meet you")
+                    ),
+                    listOf("This is a basic greeting", "You can respond with your name")
+                )
+            }
+
+            return ConversationResult(
+                conversationId = "",
+                characterName = characterName,
+                characterMessage = greetings.message,
+                translation = greetings.translation,
+                responseOptions = greetings.responseOptions,
+                learningTips = greetings.learningTips,
+                difficulty = userLevel
+            )
+        }
+    }
+
+    companion object {
+        private const val CHARACTER_NAME = "María"
+    }
+}
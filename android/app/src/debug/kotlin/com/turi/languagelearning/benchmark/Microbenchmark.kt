@@ -0,0 +1,55 @@
+package com.turi.languagelearning.benchmark
+
+import android.os.Debug
+
+/**
+ * Minimal in-app microbenchmark harness for debug builds.
+ *
+ * Runs [warmupIterations] untimed, then [iterations] timed calls and reports the mean latency
+ * and bytes allocated per call. Allocation comes from ART's global counter, so run benchmarks
+ * on an otherwise idle app.
+ */
+class Microbenchmark(
+    private val iterations: Int = 10_000,
+    private val warmupIterations: Int = 1_000,
+    private val allocatedBytes: () -> Long = ::artAllocatedBytes
+) {
+
+    fun measure(name: String, block: () -> Any?): BenchmarkResult {
+        repeat(warmupIterations) { consume(block()) }
+        System.gc()
+
+        val bytesBefore = allocatedBytes()
+        val start = System.nanoTime()
+        repeat(iterations) { consume(block()) }
+        val elapsed = System.nanoTime() - start
+        val bytes = allocatedBytes() - bytesBefore
+
+        return BenchmarkResult(
+            name = name,
+            nanosPerOp = elapsed / iterations,
+            bytesPerOp = bytes / iterations
+        )
+    }
+
+    // Keeps results observable so the calls are not optimized away
+    private fun consume(value: Any?) {
+        if (value != null) sink = sink xor System.identityHashCode(value)
+    }
+
+    companion object {
+        @Volatile
+        private var sink = 0
+
+        fun artAllocatedBytes(): Long =
+            Debug.getRuntimeStat("art.gc.bytes-allocated")?.toLongOrNull() ?: 0L
+    }
+}
+
+data class BenchmarkResult(
+    val name: String,
+    val nanosPerOp: Long,
+    val bytesPerOp: Long
+) {
+    override fun toString(): String = "$name: $nanosPerOp ns/op, $bytesPerOp B/op"
+}
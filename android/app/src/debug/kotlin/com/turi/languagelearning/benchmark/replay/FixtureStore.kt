@@ -0,0 +1,83 @@
+package com.turi.languagelearning.benchmark.replay
+
+import android.content.res.AssetManager
+import com.google.gson.GsonBuilder
+import java.io.File
+import java.security.MessageDigest
+
+/**
+ * Ordered set of [HttpFixture]s, one JSON file each.
+ *
+ * Lookup prefers the fixture recorded for the exact same request body. Otherwise the
+ * fixtures of the operation are served in recording order, wrapping around, so a replay
+ * survives prompt changes and conversations longer than the recording.
+ */
+class FixtureStore(fixtures: List<HttpFixture>) {
+
+    private val lock = Any()
+    private val byHash = fixtures.associateBy { it.requestHash }
+    private val byOperation = fixtures.groupBy { it.operation }
+    private val cursors = HashMap<String, Int>()
+
+    val size: Int = fixtures.size
+
+    fun find(operation: String, requestBody: String): HttpFixture? {
+        byHash[hash(requestBody)]?.let { if (it.operation == operation) return it }
+
+        val candidates = byOperation[operation] ?: return null
+        synchronized(lock) {
+            val cursor = cursors[operation] ?: 0
+            cursors[operation] = cursor + 1
+            return candidates[cursor % candidates.size]
+        }
+    }
+
+    fun reset() {
+        synchronized(lock) { cursors.clear() }
+    }
+
+    companion object {
+        private val gson = GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create()
+
+        fun load(directory: File): FixtureStore {
+            val files = directory.listFiles { file -> file.extension == FIXTURE_EXTENSION }
+                ?.sortedBy { it.name }
+                .orEmpty()
+            return FixtureStore(files.map { gson.fromJson(it.readText(), HttpFixture::class.java) })
+        }
+
+        fun loadAssets(assets: AssetManager, path: String): FixtureStore {
+            val names = assets.list(path)
+                ?.filter { it.endsWith(".$FIXTURE_EXTENSION") }
+                ?.sorted()
+                .orEmpty()
+            return FixtureStore(names.map { name ->
+                assets.open("$path/$name").bufferedReader().use { gson.fromJson(it, HttpFixture::class.java) }
+            })
+        }
+
+        /**
+         * Writes [fixture] as the next file of [directory]
+         */
+        @Synchronized
+        fun append(directory: File, fixture: HttpFixture) {
+            directory.mkdirs()
+            val index = directory.listFiles { file -> file.extension == FIXTURE_EXTENSION }?.size ?: 0
+            val name = "%03d-%s.%s".format(index, fixture.operation, FIXTURE_EXTENSION)
+            File(directory, name).writeText(gson.toJson(fixture))
+        }
+
+        fun hash(requestBody: String): String {
+            val digest = MessageDigest.getInstance("SHA-256").digest(requestBody.toByteArray())
+            return digest.take(HASH_BYTES).joinToString("") { "%02x".format(it) }
+        }
+
+        /**
+         * `/v1beta/models/gemini-1.5-flash:streamGenerateContent` -> `streamGenerateContent`
+         */
+        fun operationOf(path: String): String = path.substringAfterLast(':').substringAfterLast('/')
+
+        private const val FIXTURE_EXTENSION = "json"
+        private const val HASH_BYTES = 12
+    }
+}
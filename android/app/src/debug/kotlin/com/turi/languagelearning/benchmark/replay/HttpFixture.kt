@@ -0,0 +1,22 @@
+package com.turi.languagelearning.benchmark.replay
+
+/**
+ * One recorded model HTTP exchange.
+ *
+ * [operation] is the part of the path after the model name (e.g. `streamGenerateContent`),
+ * so a replay doesn't depend on which model the router picked. Body chunks keep the time
+ * they arrived at, relative to the request being sent; chunks are cut at line ends.
+ */
+data class HttpFixture(
+    val operation: String,
+    val requestHash: String,
+    val status: Int,
+    val contentType: String,
+    val headersAtMs: Long,
+    val chunks: List<FixtureChunk>
+)
+
+data class FixtureChunk(
+    val atMs: Long,
+    val data: String
+)
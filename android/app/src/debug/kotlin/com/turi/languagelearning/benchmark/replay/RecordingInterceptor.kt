@@ -0,0 +1,112 @@
+package com.turi.languagelearning.benchmark.replay
+
+import android.util.Log
+import okhttp3.Interceptor
+import okhttp3.Response
+import okhttp3.ResponseBody.Companion.asResponseBody
+import okio.Buffer
+import okio.ForwardingSource
+import okio.buffer
+import java.io.File
+
+/**
+ * OkHttp interceptor that records every model exchange into [directory] as an [HttpFixture].
+ *
+ * The response is passed through unchanged and still streams to the caller; each read is
+ * timestamped on the way. The fixture is written once the body is exhausted or closed.
+ * The API key only appears in the query string, which is not recorded.
+ */
+class RecordingInterceptor(
+    private val directory: File,
+    private val clock: () -> Long = { System.nanoTime() / 1_000_000 }
+) : Interceptor {
+
+    private val TAG = "RecordingInterceptor"
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        val requestBody = Buffer().also { request.body?.writeTo(it) }.readUtf8()
+        val start = clock()
+
+        val response = chain.proceed(request)
+        val headersAtMs = clock() - start
+        val body = response.body ?: return response
+
+        val recorder = ChunkRecorder(start) { chunks ->
+            val fixture = HttpFixture(
+                operation = FixtureStore.operationOf(request.url.encodedPath),
+                requestHash = FixtureStore.hash(requestBody),
+                status = response.code,
+                contentType = body.contentType()?.toString() ?: DEFAULT_CONTENT_TYPE,
+                headersAtMs = headersAtMs,
+                chunks = chunks
+            )
+            try {
+                FixtureStore.append(directory, fixture)
+            } catch (e: Exception) {
+                Log.w(TAG, "Could not write fixture", e)
+            }
+        }
+
+        val source = object : ForwardingSource(body.source()) {
+            override fun read(sink: Buffer, byteCount: Long): Long {
+                val read = super.read(sink, byteCount)
+                if (read == -1L) {
+                    recorder.finish()
+                } else {
+                    recorder.append(sink, sink.size - read, read)
+                }
+                return read
+            }
+
+            override fun close() {
+                recorder.finish()
+                super.close()
+            }
+        }
+
+        return response.newBuilder()
+            .body(source.buffer().asResponseBody(body.contentType(), body.contentLength()))
+            .build()
+    }
+
+    /**
+     * Collects body bytes into line-aligned chunks, so a chunk never splits a UTF-8 sequence
+     */
+    private inner class ChunkRecorder(
+        private val start: Long,
+        private val onFinished: (List<FixtureChunk>) -> Unit
+    ) {
+        private val pending = Buffer()
+        private val chunks = ArrayList<FixtureChunk>()
+        private var finished = false
+
+        @Synchronized
+        fun append(source: Buffer, offset: Long, byteCount: Long) {
+            source.copyTo(pending, offset, byteCount)
+
+            // Only the new bytes can hold a new line end
+            var index = pending.size - 1
+            while (index >= pending.size - byteCount) {
+                if (pending[index] == NEWLINE) {
+                    chunks.add(FixtureChunk(clock() - start, pending.readUtf8(index + 1)))
+                    return
+                }
+                index--
+            }
+        }
+
+        @Synchronized
+        fun finish() {
+            if (finished) return
+            finished = true
+            if (pending.size > 0) chunks.add(FixtureChunk(clock() - start, pending.readUtf8()))
+            onFinished(chunks)
+        }
+    }
+
+    companion object {
+        private const val DEFAULT_CONTENT_TYPE = "application/json"
+        private const val NEWLINE = '\n'.code.toByte()
+    }
+}
@@ -0,0 +1,132 @@
+package com.turi.languagelearning.benchmark.replay
+
+import android.util.Log
+import java.io.BufferedInputStream
+import java.io.ByteArrayOutputStream
+import java.io.Closeable
+import java.io.IOException
+import java.io.InputStream
+import java.net.InetAddress
+import java.net.ServerSocket
+import java.net.Socket
+import java.net.SocketException
+
+/**
+ * Local HTTP/1.1 server that plays [HttpFixture]s back on the loopback interface.
+ *
+ * Point `GeminiConfig.baseUrl` at [baseUrl]. Each connection serves one request: the fixture
+ * is looked up in [fixtures], and its headers and chunks are written at the times given by
+ * [timing]. Responses close the connection instead of declaring a length, the same way a
+ * streamed model response ends. Requests without a fixture get a 404.
+ */
+class ReplayServer(
+    private val fixtures: FixtureStore,
+    private val timing: ReplayTiming = ReplayTiming.Recorded()
+) : Closeable {
+
+    private val TAG = "ReplayServer"
+
+    private val serverSocket = ServerSocket(0, BACKLOG, InetAddress.getLoopbackAddress())
+
+    val baseUrl: String = "http://127.0.0.1:${serverSocket.localPort}/"
+
+    init {
+        Thread({ acceptLoop() }, "ReplayServer").apply { isDaemon = true }.start()
+    }
+
+    override fun close() {
+        serverSocket.close()
+    }
+
+    private fun acceptLoop() {
+        while (!serverSocket.isClosed) {
+            val socket = try {
+                serverSocket.accept()
+            } catch (e: SocketException) {
+                return // closed
+            }
+            Thread({ serve(socket) }, "ReplayServer-connection").apply { isDaemon = true }.start()
+        }
+    }
+
+    private fun serve(socket: Socket) {
+        socket.use {
+            try {
+                val input = BufferedInputStream(socket.getInputStream())
+                val requestLine = readLine(input) ?: return
+                val path = requestLine.split(' ').getOrNull(1)?.substringBefore('?') ?: return
+
+                var contentLength = 0
+                while (true) {
+                    val header = readLine(input) ?: return
+                    if (header.isEmpty()) break
+                    if (header.startsWith(CONTENT_LENGTH, ignoreCase = true)) {
+                        contentLength = header.substring(CONTENT_LENGTH.length).trim().toInt()
+                    }
+                }
+                val body = ByteArray(contentLength)
+                var read = 0
+                while (read < contentLength) {
+                    val n = input.read(body, read, contentLength - read)
+                    if (n < 0) return
+                    read += n
+                }
+
+                val received = System.nanoTime()
+                val fixture = fixtures.find(FixtureStore.operationOf(path), String(body, Charsets.UTF_8))
+                val output = socket.getOutputStream()
+
+                if (fixture == null) {
+                    Log.w(TAG, "No fixture for $path")
+                    output.write("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".toByteArray())
+                    return
+                }
+
+                val schedule = timing.schedule(fixture)
+                sleepUntil(received, schedule[0])
+                output.write(
+                    ("HTTP/1.1 ${fixture.status} ${reason(fixture.status)}\r\n" +
+                        "Content-Type: ${fixture.contentType}\r\n" +
+                        "Connection: close\r\n\r\n").toByteArray()
+                )
+                output.flush()
+
+                fixture.chunks.forEachIndexed { index, chunk ->
+                    sleepUntil(received, schedule[index + 1])
+                    output.write(chunk.data.toByteArray(Charsets.UTF_8))
+                    output.flush()
+                }
+            } catch (e: IOException) {
+                // The client hung up, e.g. a cancelled or hedged request
+                Log.d(TAG, "Connection ended early: ${e.message}")
+            }
+        }
+    }
+
+    private fun sleepUntil(startNanos: Long, atMs: Long) {
+        val remainingMs = atMs - (System.nanoTime() - startNanos) / 1_000_000
+        if (remainingMs > 0) Thread.sleep(remainingMs)
+    }
+
+    private fun readLine(input: InputStream): String? {
+        val line = ByteArrayOutputStream()
+        while (true) {
+            val byte = input.read()
+            if (byte < 0) return if (line.size() > 0) line.toString("UTF-8") else null
+            if (byte == '\n'.code) return line.toString("UTF-8").trimEnd('\r')
+            line.write(byte)
+        }
+    }
+
+    private fun reason(status: Int): String = when (status) {
+        200 -> "OK"
+        429 -> "Too Many Requests"
+        in 500..599 -> "Server Error"
+        else -> "Status"
+    }
+
+    companion object {
+        private const val BACKLOG = 16
+        private const val CONTENT_LENGTH = "Content-Length:"
+    }
+}
@@ -0,0 +1,60 @@
+package com.turi.languagelearning.benchmark.replay
+
+import kotlin.random.Random
+
+/**
+ * When the [ReplayServer] sends each part of a fixture, in ms after the request arrived.
+ * Jitter is uniform in ±[jitterMs] and seeded, so runs with the same seed are comparable.
+ */
+sealed class ReplayTiming(
+    private val jitterMs: Long,
+    seed: Int
+) {
+
+    private val random = Random(seed)
+
+    /**
+     * Timestamps as recorded
+     */
+    class Recorded(jitterMs: Long = 0, seed: Int = DEFAULT_SEED) : ReplayTiming(jitterMs, seed) {
+        override fun headersAt(fixture: HttpFixture): Long = fixture.headersAtMs
+        override fun chunkAt(fixture: HttpFixture, index: Int): Long = fixture.chunks[index].atMs
+    }
+
+    /**
+     * First chunk after [latencyMs], then one every [chunkIntervalMs], whatever was recorded
+     */
+    class Synthetic(
+        private val latencyMs: Long,
+        private val chunkIntervalMs: Long = 0,
+        jitterMs: Long = 0,
+        seed: Int = DEFAULT_SEED
+    ) : ReplayTiming(jitterMs, seed) {
+        override fun headersAt(fixture: HttpFixture): Long = latencyMs
+        override fun chunkAt(fixture: HttpFixture, index: Int): Long = latencyMs + index * chunkIntervalMs
+    }
+
+    protected abstract fun headersAt(fixture: HttpFixture): Long
+    protected abstract fun chunkAt(fixture: HttpFixture, index: Int): Long
+
+    /**
+     * The schedule for one replay: headers first, then one entry per chunk, never going back in time
+     */
+    fun schedule(fixture: HttpFixture): LongArray {
+        val schedule = LongArray(fixture.chunks.size + 1)
+        synchronized(random) {
+            schedule[0] = jitter(headersAt(fixture))
+            for (i in fixture.chunks.indices) {
+                schedule[i + 1] = maxOf(schedule[i], jitter(chunkAt(fixture, i)))
+            }
+        }
+        return schedule
+    }
+
+    private fun jitter(atMs: Long): Long =
+        if (jitterMs == 0L) atMs else maxOf(0L, atMs + random.nextLong(-jitterMs, jitterMs + 1))
+
+    companion object {
+        const val DEFAULT_SEED = 42
+    }
+}
@@ -0,0 +1,34 @@
+package com.turi.languagelearning.core.model
+
+import kotlinx.serialization.SerialName
+import kotlinx.serialization.Serializable
+
+/**
+ * Vocabulary item of a dialogue from the `words_quiz` table, with its text in each language.
+ * Decoded by Postgrest; the language columns are named by [Language.code].
+ */
+@Serializable
+data class QuizWord(
+    val id: Int,
+    @SerialName("dialogue_id")
+    val dialogueId: Int,
+    val en: String? = null,
+    val ru: String? = null,
+    val es: String? = null,
+    val ar: String? = null,
+    val de: String? = null,
+    val ja: String? = null,
+    val zh: String? = null,
+    val fr: String? = null
+) {
+    fun text(language: Language): String? = when (language) {
+        Language.ENGLISH -> en
+        Language.RUSSIAN -> ru
+        Language.SPANISH -> es
+        Language.ARABIC -> ar
+        Language.GERMAN -> de
+        Language.JAPANESE -> ja
+        Language.CHINESE -> zh
+        Language.FRENCH -> fr
+    }
+}
@@ -0,0 +1,229 @@
+package com.turi.languagelearning.core.network
+
+import android.os.SystemClock
+import android.util.Log
+import com.google.gson.JsonParser
+import com.google.gson.JsonPrimitive
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.awaitCancellation
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.currentCoroutineContext
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import okhttp3.Call
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody.Companion.toRequestBody
+import okhttp3.Response
+import java.io.IOException
+import java.util.concurrent.TimeUnit
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Gemini endpoint configuration.
+ * [baseUrl] can point at a local mock server for development and benchmarks.
+ */
+data class GeminiConfig(
+    val baseUrl: String = "https://generativelanguage.googleapis.com/",
+    val apiKey: String = "", // TODO: Add to BuildConfig
+    val models: List<String> = listOf("gemini-1.5-flash", "gemini-1.5-pro", "gemini-pro", "gemini-1.0-pro")
+)
+
+/**
+ * Thin Gemini REST client shared by the AI services
+ */
+@Singleton
+class GeminiApiClient(
+    private val config: GeminiConfig,
+    private val httpClient: OkHttpClient,
+    private val scheduler: GeminiRequestScheduler,
+    private val router: GeminiModelRouter
+) {
+
+    @Inject
+    constructor(scheduler: GeminiRequestScheduler, router: GeminiModelRouter) : this(
+        GeminiConfig(),
+        OkHttpClient.Builder()
+            .readTimeout(60, TimeUnit.SECONDS)
+            .build(),
+        scheduler,
+        router
+    )
+
+    private val TAG = "GeminiApiClient"
+
+    /**
+     * False when no API key is set; callers then fall back to local sample content.
+     */
+    val isConfigured: Boolean
+        get() = config.apiKey.isNotBlank()
+
+    /**
+     * Generates the full response text for [prompt] in one request.
+     * The request waits for a [scheduler] token in the [priority] lane; [requestKey] allows
+     * a queued request to be promoted later. The [router] picks the model and may hedge a slow
+     * request or retry a failed one on another model, but only with a spare token.
+     */
+    suspend fun generateContent(
+        prompt: String,
+        priority: RequestPriority = RequestPriority.INTERACTIVE,
+        requestKey: Any? = null
+    ): String = generateContent(Prompt(null, prompt), priority, requestKey)
+    
+    /**
+     * As above; the prompt's prefix is sent as the system instruction, ahead of its text.
+     */
+    suspend fun generateContent(
+        prompt: Prompt,
+        priority: RequestPriority = RequestPriority.INTERACTIVE,
+        requestKey: Any? = null
+    ): String = withContext(Dispatchers.IO) {
+        scheduler.acquire(priority, key = requestKey)
+
+        router.execute(canSendExtra = { scheduler.tryAcquire(priority) }) { model ->
+            val request = Request.Builder()
+                .url("${config.baseUrl.trimEnd('/')}/v1beta/models/$model:generateContent?key=${config.apiKey}")
+                .post(buildRequestBody(prompt).toRequestBody(JSON_MEDIA_TYPE))
+                .build()
+
+            // Cancelling a hedged loser has to abort its blocking HTTP call
+            httpClient.newCall(request).executeCancellable { response ->
+                if (!response.isSuccessful) {
+                    throw IOException("Gemini request failed: HTTP ${response.code}")
+                }
+
+                val body = response.body?.string()
+                    ?: throw IOException("Gemini response has no body")
+                extractText(body)
+            }
+        }
+    }
+
+    /**
+     * Streams the generated text of [prompt] as it arrives.
+     * Each emission is the text delta carried by one server-sent event. Streams are not hedged;
+     * they go to the currently fastest model and its time to completion feeds the [router].
+     */
+    fun streamGenerateContent(
+        prompt: String,
+        priority: RequestPriority = RequestPriority.INTERACTIVE,
+        requestKey: Any? = null
+    ): Flow<String> = streamGenerateContent(Prompt(null, prompt), priority, requestKey)
+    
+    fun streamGenerateContent(
+        prompt: Prompt,
+        priority: RequestPriority = RequestPriority.INTERACTIVE,
+        requestKey: Any? = null
+    ): Flow<String> = flow {
+        scheduler.acquire(priority, key = requestKey)
+
+        val model = router.rankedModels().first()
+        val request = Request.Builder()
+            .url("${config.baseUrl.trimEnd('/')}/v1beta/models/$model:streamGenerateContent?alt=sse&key=${config.apiKey}")
+            .post(buildRequestBody(prompt).toRequestBody(JSON_MEDIA_TYPE))
+            .build()
+
+        val start = SystemClock.elapsedRealtime()
+        var success = false
+        try {
+            // A collector that stops, e.g. on a turn deadline, aborts the read instead of waiting it out
+            httpClient.newCall(request).executeCancellable { response ->
+                if (!response.isSuccessful) {
+                    throw IOException("Gemini request failed: HTTP ${response.code}")
+                }
+
+                val source = response.body?.source()
+                    ?: throw IOException("Gemini response has no body")
+
+                while (true) {
+                    val line = source.readUtf8Line() ?: break
+                    if (!line.startsWith(SSE_DATA_PREFIX)) continue
+
+                    val text = extractText(line.substring(SSE_DATA_PREFIX.length))
+                    if (text.isNotEmpty()) emit(text)
+                }
+            }
+            success = true
+        } finally {
+            // A collector that stops early is neither a success nor a model failure
+            if (success || currentCoroutineContext().isActive) {
+                router.record(model, SystemClock.elapsedRealtime() - start, success)
+            }
+        }
+    }.flowOn(Dispatchers.IO)
+
+    fun modelStats(): List<ModelStats> = router.stats()
+
+    /**
+     * Executes the call and hands the response to [block], cancelling the call as soon as the
+     * caller is cancelled. A blocking read never notices cancellation by itself, so a watcher on
+     * another thread cancels the call, which makes the read throw.
+     */
+    private suspend fun <T> Call.executeCancellable(block: suspend (Response) -> T): T = coroutineScope {
+        val call = this@executeCancellable
+        val watcher = launch(Dispatchers.IO, start = CoroutineStart.UNDISPATCHED) {
+            try {
+                awaitCancellation()
+            } finally {
+                call.cancel()
+            }
+        }
+        try {
+            call.execute().use { block(it) }
+        } catch (e: IOException) {
+            // A call cancelled by the watcher fails with an IOException; report the cancellation instead
+            ensureActive()
+            throw e
+        } finally {
+            watcher.cancel()
+        }
+    }
+
+    /**
+     * The shared prefix goes first so requests with the same prefix share a leading byte range
+     */
+    private fun buildRequestBody(prompt: Prompt): String {
+        val text = JsonPrimitive(prompt.text).toString()
+        val systemInstruction = prompt.prefix?.systemInstructionJson
+
+        return buildString(text.length + (systemInstruction?.length ?: 0) + REQUEST_ENVELOPE_CHARS) {
+            append('{')
+            if (systemInstruction != null) {
+                append("\"systemInstruction\":").append(systemInstruction).append(',')
+            }
+            append("\"contents\":[{\"role\":\"user\",\"parts\":[{\"text\":").append(text).append("}]}]}")
+        }
+    }
+
+    private fun extractText(eventData: String): String {
+        return try {
+            val candidates = JsonParser.parseString(eventData).asJsonObject
+                .getAsJsonArray("candidates") ?: return ""
+            val builder = StringBuilder()
+            candidates.firstOrNull()?.asJsonObject
+                ?.getAsJsonObject("content")
+                ?.getAsJsonArray("parts")
+                ?.forEach { part ->
+                    part.asJsonObject.get("text")?.let { builder.append(it.asString) }
+                }
+            builder.toString()
+        } catch (e: Exception) {
+            Log.w(TAG, "Skipping malformed stream event", e)
+            ""
+        }
+    }
+
+    companion object {
+        private const val SSE_DATA_PREFIX = "data: "
+        private const val REQUEST_ENVELOPE_CHARS = 64
+        private val JSON_MEDIA_TYPE = "application/json; charset=utf-8".toMediaType()
+    }
+}
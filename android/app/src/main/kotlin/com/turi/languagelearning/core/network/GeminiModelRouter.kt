@@ -0,0 +1,225 @@
+package com.turi.languagelearning.core.network
+
+import android.os.SystemClock
+import android.util.Log
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withTimeoutOrNull
+import java.io.IOException
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Latency-aware routing across the Gemini model fallback chain.
+ *
+ * Keeps a rolling window of latencies and outcomes per model and sends each request to the
+ * healthy model with the lowest p50. If that request runs past the model's p95, a hedged request
+ * goes to the next model and the first success wins. A model that keeps failing trips its circuit
+ * breaker and is skipped for [cooldownMs]; after that it is half-open and the next result
+ * either closes the breaker or opens it again.
+ */
+@Singleton
+class GeminiModelRouter(
+    private val models: List<String>,
+    private val cooldownMs: Long = DEFAULT_COOLDOWN_MS,
+    private val clock: () -> Long = SystemClock::elapsedRealtime
+) {
+
+    @Inject
+    constructor() : this(GeminiConfig().models)
+
+    private val TAG = "GeminiModelRouter"
+
+    private val health = models.associateWith { ModelHealth() }
+
+    /**
+     * Runs [block] against the best model, hedging on the runner-up when the first attempt is slow.
+     * Failed attempts fall through to the next model. [canSendExtra] is consulted before every
+     * request beyond the first, hedge or fallthrough, so callers can refuse them, e.g. when the
+     * rate limiter has no spare token; the last error is thrown then.
+     */
+    suspend fun <T> execute(
+        canSendExtra: () -> Boolean = { true },
+        block: suspend (model: String) -> T
+    ): T = coroutineScope {
+        val candidates = ArrayDeque(rankedModels())
+        val results = Channel<Attempt<T>>(Channel.UNLIMITED)
+        val running = mutableMapOf<String, Job>()
+        var hedged = false
+        var lastError: Throwable? = null
+
+        fun launchNext(): String? {
+            val model = candidates.removeFirstOrNull() ?: return null
+            running[model] = launch {
+                val start = clock()
+                val result = try {
+                    Result.success(block(model))
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    Result.failure(e)
+                }
+                record(model, clock() - start, result.isSuccess)
+                results.send(Attempt(model, result))
+            }
+            return model
+        }
+
+        val primary = launchNext() ?: throw IOException("No Gemini model configured")
+        val hedgeDelay = hedgeDelayFor(primary)
+
+        while (running.isNotEmpty()) {
+            val attempt = if (!hedged && candidates.isNotEmpty()) {
+                withTimeoutOrNull(hedgeDelay) { results.receive() }
+            } else {
+                results.receive()
+            }
+
+            if (attempt == null) {
+                hedged = true
+                if (canSendExtra()) {
+                    val hedge = launchNext()
+                    Log.d(TAG, "Hedging $primary after ${hedgeDelay}ms with $hedge")
+                }
+                continue
+            }
+
+            running.remove(attempt.model)
+            attempt.result.onSuccess { value ->
+                running.values.forEach { it.cancel() }
+                return@coroutineScope value
+            }
+
+            lastError = attempt.result.exceptionOrNull()
+            Log.w(TAG, "Model ${attempt.model} failed", lastError)
+            // A throttled model (HTTP 429) must not turn into more requests than the limiter allows
+            if (running.isEmpty() && candidates.isNotEmpty() && canSendExtra()) launchNext()
+        }
+
+        throw lastError ?: IOException("All Gemini models failed")
+    }
+
+    /**
+     * Models whose breaker allows traffic, fastest first. Models without enough samples keep
+     * their configured order behind measured ones. If every breaker is open the full chain is used.
+     */
+    fun rankedModels(): List<String> {
+        val now = clock()
+        val available = models.filter { health.getValue(it).allowsRequest(now, cooldownMs) }
+        val pool = available.ifEmpty { models }
+
+        return pool.sortedWith(compareBy<String> { health.getValue(it).percentile(0.5) ?: Long.MAX_VALUE }
+            .thenBy { models.indexOf(it) })
+    }
+
+    fun record(model: String, latencyMs: Long, success: Boolean) {
+        val modelHealth = health[model] ?: return
+        val tripped = modelHealth.record(latencyMs, success, clock())
+        if (tripped) Log.w(TAG, "Circuit opened for $model")
+    }
+
+    fun stats(): List<ModelStats> = models.map { model ->
+        val modelHealth = health.getValue(model)
+        ModelStats(
+            model = model,
+            p50Ms = modelHealth.percentile(0.5),
+            p95Ms = modelHealth.percentile(0.95),
+            errorRate = modelHealth.errorRate(),
+            breakerState = modelHealth.state(clock(), cooldownMs)
+        )
+    }
+
+    private fun hedgeDelayFor(model: String): Long =
+        health.getValue(model).percentile(0.95) ?: DEFAULT_HEDGE_DELAY_MS
+
+    private class Attempt<T>(val model: String, val result: Result<T>)
+
+    /**
+     * Rolling window of the last [WINDOW_SIZE] requests to one model
+     */
+    private class ModelHealth {
+        private val latencies = LongArray(WINDOW_SIZE)
+        private val failures = BooleanArray(WINDOW_SIZE)
+        private val sorted = LongArray(WINDOW_SIZE)
+        private var next = 0
+        private var count = 0
+        private var consecutiveFailures = 0
+        private var openedAt: Long? = null
+
+        @Synchronized
+        fun record(latencyMs: Long, success: Boolean, now: Long): Boolean {
+            failures[next] = !success
+            latencies[next] = latencyMs
+            next = (next + 1) % WINDOW_SIZE
+            count = minOf(count + 1, WINDOW_SIZE)
+
+            if (success) {
+                consecutiveFailures = 0
+                openedAt = null
+                return false
+            }
+
+            consecutiveFailures++
+            val shouldOpen = consecutiveFailures >= FAILURE_THRESHOLD ||
+                (count >= MIN_SAMPLES && errorRate() > ERROR_RATE_THRESHOLD)
+            // A failed trial while half-open re-opens the breaker for another cooldown
+            val wasClosed = openedAt == null
+            if (shouldOpen || !wasClosed) openedAt = now
+            return shouldOpen && wasClosed
+        }
+
+        @Synchronized
+        fun allowsRequest(now: Long, cooldownMs: Long): Boolean {
+            val opened = openedAt ?: return true
+            return now - opened >= cooldownMs
+        }
+
+        @Synchronized
+        fun state(now: Long, cooldownMs: Long): BreakerState {
+            val opened = openedAt ?: return BreakerState.CLOSED
+            return if (now - opened < cooldownMs) BreakerState.OPEN else BreakerState.HALF_OPEN
+        }
+
+        @Synchronized
+        fun errorRate(): Float {
+            if (count == 0) return 0f
+            var failed = 0
+            for (i in 0 until count) if (failures[i]) failed++
+            return failed.toFloat() / count
+        }
+
+        @Synchronized
+        fun percentile(fraction: Double): Long? {
+            // Successful latencies are not contiguous in the ring, collect them first
+            var size = 0
+            for (i in 0 until count) {
+                if (!failures[i]) sorted[size++] = latencies[i]
+            }
+            if (size < MIN_SAMPLES) return null
+            sorted.sort(0, size)
+            return sorted[((size - 1) * fraction).toInt()]
+        }
+    }
+
+    companion object {
+        private const val WINDOW_SIZE = 50
+        private const val MIN_SAMPLES = 5
+        private const val FAILURE_THRESHOLD = 3
+        private const val ERROR_RATE_THRESHOLD = 0.5f
+        const val DEFAULT_COOLDOWN_MS = 30_000L
+        const val DEFAULT_HEDGE_DELAY_MS = 3_000L
+    }
+}
+
+enum class BreakerState { CLOSED, OPEN, HALF_OPEN }
+
+data class ModelStats(
+    val model: String,
+    val p50Ms: Long?,
+    val p95Ms: Long?,
+    val errorRate: Float,
+    val breakerState: BreakerState
+)
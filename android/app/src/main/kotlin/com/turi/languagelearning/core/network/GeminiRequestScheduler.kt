@@ -0,0 +1,228 @@
+package com.turi.languagelearning.core.network
+
+import android.os.SystemClock
+import android.util.Log
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Request lanes, served strictly in declaration order
+ */
+enum class RequestPriority {
+    INTERACTIVE, // the turn the learner is waiting on
+    WORD,        // a tapped word or grammar question
+    PREFETCH     // speculative and pre-warming work
+}
+
+class RequestDroppedException(message: String) : Exception(message)
+
+/**
+ * Client-side limiter for Gemini traffic.
+ *
+ * A token bucket enforces [capacity] requests per [periodMs] (10 per minute, matching the API quota).
+ * Waiting requests are queued per [RequestPriority] and a token always goes to the highest
+ * non-empty lane, so prefetches cannot starve an interactive turn. Prefetches that are still
+ * queued after their deadline are dropped with [RequestDroppedException].
+ */
+@Singleton
+class GeminiRequestScheduler(
+    private val capacity: Int,
+    private val periodMs: Long,
+    private val clock: () -> Long = SystemClock::elapsedRealtime
+) {
+
+    @Inject
+    constructor() : this(DEFAULT_CAPACITY, DEFAULT_PERIOD_MS)
+
+    private val TAG = "GeminiRequestScheduler"
+
+    private val lock = Any()
+    private val lanes = Array(RequestPriority.values().size) { ArrayDeque<Waiter>() }
+    private val timerScope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+    private val refillIntervalMs = periodMs / capacity
+
+    private var tokens = capacity.toDouble()
+    private var lastRefill = clock()
+    private var timerPending = false
+
+    private var granted = 0L
+    private var dropped = 0L
+    private var totalWaitMs = 0L
+    private var maxWaitMs = 0L
+
+    /**
+     * Runs [block] once a token is granted to [priority].
+     */
+    suspend fun <T> execute(
+        priority: RequestPriority,
+        deadlineMs: Long? = null,
+        key: Any? = null,
+        block: suspend () -> T
+    ): T {
+        acquire(priority, deadlineMs, key)
+        return block()
+    }
+
+    /**
+     * Suspends until a token is granted. [deadlineMs] defaults to [DEFAULT_PREFETCH_DEADLINE_MS]
+     * for prefetches; [key] lets a later caller [promote] this request.
+     */
+    suspend fun acquire(priority: RequestPriority, deadlineMs: Long? = null, key: Any? = null) {
+        val now = clock()
+        val deadline = (deadlineMs ?: if (priority == RequestPriority.PREFETCH) DEFAULT_PREFETCH_DEADLINE_MS else null)
+            ?.let { now + it }
+        val waiter = Waiter(key, now, deadline)
+
+        synchronized(lock) {
+            lanes[priority.ordinal].addLast(waiter)
+            dispatchLocked()
+        }
+
+        try {
+            waiter.grant.await()
+        } catch (e: CancellationException) {
+            synchronized(lock) {
+                val wasQueued = lanes.any { it.remove(waiter) }
+                // Give back a token that was granted after the caller went away
+                if (!wasQueued && waiter.grant.isCompleted && waiter.grant.getCompletionExceptionOrNull() == null) {
+                    tokens = minOf(capacity.toDouble(), tokens + 1)
+                    dispatchLocked()
+                }
+            }
+            throw e
+        }
+    }
+
+    /**
+     * Takes a token without waiting, or returns false when none is spare. A token is only
+     * spare when no request of the same or a higher priority is queued for it.
+     */
+    fun tryAcquire(priority: RequestPriority): Boolean = synchronized(lock) {
+        val now = clock()
+        refillLocked(now)
+        dropExpiredLocked(now)
+        if (tokens < 1.0 || (0..priority.ordinal).any { lanes[it].isNotEmpty() }) return false
+
+        tokens -= 1.0
+        granted++
+        true
+    }
+
+    /**
+     * Moves a queued request identified by [key] up to [priority]. Used when an interactive
+     * caller joins a request that was queued as a prefetch.
+     */
+    fun promote(key: Any, priority: RequestPriority) {
+        synchronized(lock) {
+            for (lane in priority.ordinal + 1 until lanes.size) {
+                val waiter = lanes[lane].firstOrNull { it.key == key } ?: continue
+                lanes[lane].remove(waiter)
+                waiter.deadline = null
+                lanes[priority.ordinal].addLast(waiter)
+                Log.d(TAG, "Promoted request $key to $priority")
+                dispatchLocked()
+                return
+            }
+        }
+    }
+
+    fun stats(): SchedulerStats = synchronized(lock) {
+        refillLocked(clock())
+        SchedulerStats(
+            queueDepth = RequestPriority.values().associateWith { lanes[it.ordinal].size },
+            availableTokens = tokens.toInt(),
+            granted = granted,
+            dropped = dropped,
+            averageWaitMs = if (granted > 0) totalWaitMs / granted else 0L,
+            maxWaitMs = maxWaitMs
+        )
+    }
+
+    private fun dispatchLocked() {
+        val now = clock()
+        refillLocked(now)
+        dropExpiredLocked(now)
+
+        for (lane in lanes) {
+            while (lane.isNotEmpty() && tokens >= 1.0) {
+                val waiter = lane.removeFirst()
+                tokens -= 1.0
+                granted++
+                val waited = now - waiter.enqueuedAt
+                totalWaitMs += waited
+                maxWaitMs = maxOf(maxWaitMs, waited)
+                waiter.grant.complete(Unit)
+            }
+        }
+
+        if (lanes.any { it.isNotEmpty() }) scheduleWakeUpLocked()
+    }
+
+    private fun refillLocked(now: Long) {
+        val elapsed = now - lastRefill
+        if (elapsed <= 0) return
+        tokens = minOf(capacity.toDouble(), tokens + elapsed.toDouble() / refillIntervalMs)
+        lastRefill = now
+    }
+
+    private fun dropExpiredLocked(now: Long) {
+        lanes.forEach { lane ->
+            val iterator = lane.iterator()
+            while (iterator.hasNext()) {
+                val waiter = iterator.next()
+                val deadline = waiter.deadline ?: continue
+                if (now > deadline) {
+                    iterator.remove()
+                    dropped++
+                    waiter.grant.completeExceptionally(
+                        RequestDroppedException("Request dropped after waiting ${now - waiter.enqueuedAt}ms")
+                    )
+                }
+            }
+        }
+    }
+
+    private fun scheduleWakeUpLocked() {
+        if (timerPending) return
+        timerPending = true
+
+        val untilNextToken = ((1.0 - tokens) * refillIntervalMs).toLong().coerceAtLeast(1L)
+        timerScope.launch {
+            delay(untilNextToken)
+            synchronized(lock) {
+                timerPending = false
+                dispatchLocked()
+            }
+        }
+    }
+
+    private class Waiter(
+        val key: Any?,
+        val enqueuedAt: Long,
+        var deadline: Long?
+    ) {
+        val grant = CompletableDeferred<Unit>()
+    }
+
+    companion object {
+        const val DEFAULT_CAPACITY = 10
+        const val DEFAULT_PERIOD_MS = 60_000L
+        const val DEFAULT_PREFETCH_DEADLINE_MS = 30_000L
+    }
+}
+
+data class SchedulerStats(
+    val queueDepth: Map<RequestPriority, Int>,
+    val availableTokens: Int,
+    val granted: Long,
+    val dropped: Long,
+    val averageWaitMs: Long,
+    val maxWaitMs: Long
+)
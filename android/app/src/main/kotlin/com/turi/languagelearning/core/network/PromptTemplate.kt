@@ -0,0 +1,146 @@
+package com.turi.languagelearning.core.network
+
+import com.google.gson.JsonArray
+import com.google.gson.JsonObject
+
+/**
+ * Typed placeholder of a [PromptTemplate], written as `{name}` in the template text.
+ * Values are formatted when bound with [of], so rendering only copies strings.
+ */
+class PromptSlot<T>(
+    val name: String,
+    private val format: (T) -> String = { it.toString() }
+) {
+    infix fun of(value: T): PromptArg = PromptArg(this, format(value))
+}
+
+class PromptArg internal constructor(
+    internal val slot: PromptSlot<*>,
+    internal val value: String
+)
+
+/**
+ * Stable leading part of a prompt: persona, rules and output format.
+ *
+ * It is sent as Gemini's system instruction ahead of the per-request text, so identical
+ * prefixes form a shared prompt prefix the provider can serve from its context cache.
+ * [key] identifies the prefix for that purpose. The JSON for the request is built once.
+ */
+class PromptPrefix(val text: String) {
+
+    val key: String = "${Integer.toHexString(text.hashCode())}-${text.length}"
+
+    internal val systemInstructionJson: String by lazy {
+        JsonObject().apply {
+            add("parts", JsonArray().apply { add(JsonObject().apply { addProperty("text", text) }) })
+        }.toString()
+    }
+}
+
+/**
+ * A rendered request: the optional shared [prefix] and the per-request [text]
+ */
+class Prompt(
+    val prefix: PromptPrefix?,
+    val text: String
+)
+
+/**
+ * Prompt text compiled once into constant segments and typed slots.
+ *
+ * The optional prefix becomes the [PromptPrefix] and the body the per-request text. A prefix
+ * without slots is built at compile time; one with slots is memoized for the last arguments,
+ * since consecutive requests usually share a persona. Rendering copies segments into a
+ * presized builder and never rescans the template.
+ */
+class PromptTemplate private constructor(
+    private val prefix: CompiledText?,
+    private val body: CompiledText
+) {
+
+    private val constantPrefix: PromptPrefix? =
+        if (prefix != null && prefix.slots.isEmpty()) PromptPrefix(prefix.segments[0]) else null
+
+    @Volatile
+    private var lastPrefix: RenderedPrefix? = null
+
+    fun render(vararg args: PromptArg): Prompt = Prompt(prefix(*args), body.render(args))
+
+    /**
+     * Only the prefix, for callers that assemble the per-request text themselves
+     */
+    fun prefix(vararg args: PromptArg): PromptPrefix? {
+        val prefix = prefix ?: return null
+        constantPrefix?.let { return it }
+
+        val values = Array(prefix.slots.size) { i -> valueOf(prefix.slots[i], args) }
+        lastPrefix?.let { last -> if (last.values.contentEquals(values)) return last.prefix }
+
+        return PromptPrefix(prefix.render(values)).also { lastPrefix = RenderedPrefix(values, it) }
+    }
+
+    private class RenderedPrefix(val values: Array<String>, val prefix: PromptPrefix)
+
+    /**
+     * [segments] has one more entry than [slots]; slot i sits between segments i and i + 1
+     */
+    private class CompiledText(val segments: Array<String>, val slots: Array<PromptSlot<*>>) {
+
+        private val constantLength = segments.sumOf { it.length }
+
+        fun render(args: Array<out PromptArg>): String =
+            render(Array(slots.size) { i -> valueOf(slots[i], args) })
+
+        fun render(values: Array<String>): String {
+            if (slots.isEmpty()) return segments[0]
+
+            var length = constantLength
+            for (value in values) length += value.length
+
+            val builder = StringBuilder(length)
+            builder.append(segments[0])
+            for (i in slots.indices) {
+                builder.append(values[i]).append(segments[i + 1])
+            }
+            return builder.toString()
+        }
+
+        companion object {
+            fun compile(text: String, declared: Array<out PromptSlot<*>>): CompiledText {
+                val segments = ArrayList<String>()
+                val slots = ArrayList<PromptSlot<*>>()
+                var start = 0
+
+                for (match in PLACEHOLDER.findAll(text)) {
+                    val name = match.groupValues[1]
+                    val slot = declared.firstOrNull { it.name == name }
+                        ?: throw IllegalArgumentException("Undeclared prompt slot {$name}")
+                    segments.add(text.substring(start, match.range.first))
+                    slots.add(slot)
+                    start = match.range.last + 1
+                }
+                segments.add(text.substring(start))
+
+                return CompiledText(segments.toTypedArray(), slots.toTypedArray())
+            }
+        }
+    }
+
+    companion object {
+        // JSON examples in templates start with {" and are never taken for a slot
+        private val PLACEHOLDER = Regex("\\{([A-Za-z][A-Za-z0-9_]*)\\}")
+
+        fun compile(prefix: String?, body: String, vararg slots: PromptSlot<*>): PromptTemplate =
+            PromptTemplate(
+                prefix = prefix?.let { CompiledText.compile(it, slots) },
+                body = CompiledText.compile(body, slots)
+            )
+
+        private fun valueOf(slot: PromptSlot<*>, args: Array<out PromptArg>): String {
+            for (arg in args) {
+                if (arg.slot === slot) return arg.value
+            }
+            throw IllegalArgumentException("No value for prompt slot {${slot.name}}")
+        }
+    }
+}
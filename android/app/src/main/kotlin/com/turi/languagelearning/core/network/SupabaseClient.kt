@@ -2,6 +2,7 @@ package com.turi.languagelearning.core.network
 
 import com.turi.languagelearning.core.model.User
 import com.turi.languagelearning.core.model.LearningProgress
+import com.turi.languagelearning.core.model.QuizWord
 import com.turi.languagelearning.core.model.UserSession
 import io.github.jan.supabase.createSupabaseClient
 import io.github.jan.supabase.gotrue.Auth
@@ -132,6 +133,20 @@ class SupabaseClient @Inject constructor() {
         }
     }
     
+    // Vocabulary
+    suspend fun getQuizWords(dialogueId: Int): Result<List<QuizWord>> {
+        return try {
+            val words = supabase.from("words_quiz")
+                .select {
+                    filter { eq("dialogue_id", dialogueId) }
+                }
+                .decodeList<QuizWord>()
+            Result.success(words)
+        } catch (e: Exception) {
+            Result.failure(e)
+        }
+    }
+    
     // User Profile
     suspend fun updateUserProfile(user: User): Result<Unit> {
         return try {
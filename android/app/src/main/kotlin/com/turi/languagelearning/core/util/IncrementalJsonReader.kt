@@ -0,0 +1,177 @@
+package com.turi.languagelearning.core.util
+
+/**
+ * Push-based JSON tokenizer for text that arrives in arbitrary chunks, such as streamed model output.
+ *
+ * [feed] accepts any split of the input, including mid-string and mid-escape, and reports
+ * structure to a [Handler] as it is read; no tree is built. Anything before the root value
+ * (e.g. a ```json fence) and after it is ignored. String values still being read are reported
+ * as partial values at the end of every [feed]. One instance reads one document and is not thread-safe.
+ */
+class IncrementalJsonReader(private val handler: Handler) {
+
+    interface Handler {
+        fun onObjectStart() {}
+        fun onObjectEnd() {}
+        fun onArrayStart() {}
+        fun onArrayEnd() {}
+        fun onKey(key: String) {}
+
+        /**
+         * [value] is only valid during the call; it is the whole string read so far,
+         * and [complete] is true once the closing quote was read.
+         */
+        fun onString(value: CharSequence, complete: Boolean) {}
+
+        /**
+         * Numbers, booleans and null, as their raw text
+         */
+        fun onScalar(value: String) {}
+    }
+
+    private enum class State { BEFORE_ROOT, STRUCTURE, STRING, ESCAPE, UNICODE, LITERAL, DONE }
+
+    private var state = State.BEFORE_ROOT
+    private var containers = BooleanArray(INITIAL_DEPTH) // true for objects
+    private var depth = 0
+    private var expectKey = false
+    private var readingKey = false
+    private var unicodeValue = 0
+    private var unicodeDigits = 0
+    private val buffer = StringBuilder()
+
+    val isComplete: Boolean
+        get() = state == State.DONE
+
+    fun feed(chunk: CharSequence) {
+        for (i in 0 until chunk.length) {
+            read(chunk[i])
+        }
+
+        if (!readingKey && buffer.isNotEmpty() &&
+            (state == State.STRING || state == State.ESCAPE || state == State.UNICODE)
+        ) {
+            handler.onString(buffer, false)
+        }
+    }
+
+    /**
+     * Flushes a trailing scalar; call once the input has ended.
+     */
+    fun finish() {
+        if (state == State.LITERAL) endLiteral()
+    }
+
+    private fun read(char: Char) {
+        when (state) {
+            State.BEFORE_ROOT -> if (char == '{' || char == '[') {
+                state = State.STRUCTURE
+                readStructure(char)
+            }
+            State.STRUCTURE -> readStructure(char)
+            State.STRING -> when (char) {
+                '"' -> endString()
+                '\\' -> state = State.ESCAPE
+                else -> buffer.append(char)
+            }
+            State.ESCAPE -> {
+                state = State.STRING
+                when (char) {
+                    'n' -> buffer.append('\n')
+                    't' -> buffer.append('\t')
+                    'r' -> buffer.append('\r')
+                    'b' -> buffer.append('\b')
+                    'f' -> buffer.append('\u000C')
+                    'u' -> {
+                        unicodeValue = 0
+                        unicodeDigits = 0
+                        state = State.UNICODE
+                    }
+                    else -> buffer.append(char) // \" \\ \/
+                }
+            }
+            State.UNICODE -> {
+                unicodeValue = unicodeValue * 16 + Character.digit(char, 16).coerceAtLeast(0)
+                if (++unicodeDigits == 4) {
+                    buffer.append(unicodeValue.toChar())
+                    state = State.STRING
+                }
+            }
+            State.LITERAL -> if (char.isLetterOrDigit() || char == '-' || char == '+' || char == '.') {
+                buffer.append(char)
+            } else {
+                endLiteral()
+                readStructure(char)
+            }
+            State.DONE -> Unit
+        }
+    }
+
+    private fun readStructure(char: Char) {
+        when (char) {
+            '{' -> {
+                push(isObject = true)
+                expectKey = true
+                handler.onObjectStart()
+            }
+            '[' -> {
+                push(isObject = false)
+                handler.onArrayStart()
+            }
+            '}' -> {
+                depth--
+                handler.onObjectEnd()
+                afterValue()
+            }
+            ']' -> {
+                depth--
+                handler.onArrayEnd()
+                afterValue()
+            }
+            ',' -> expectKey = inObject()
+            ':' -> expectKey = false
+            '"' -> {
+                readingKey = inObject() && expectKey
+                buffer.setLength(0)
+                state = State.STRING
+            }
+            else -> if (!char.isWhitespace()) {
+                buffer.setLength(0)
+                buffer.append(char)
+                state = State.LITERAL
+            }
+        }
+    }
+
+    private fun endString() {
+        state = State.STRUCTURE
+        if (readingKey) {
+            readingKey = false
+            handler.onKey(buffer.toString())
+        } else {
+            handler.onString(buffer, true)
+        }
+        buffer.setLength(0)
+    }
+
+    private fun endLiteral() {
+        state = State.STRUCTURE
+        handler.onScalar(buffer.toString())
+        buffer.setLength(0)
+    }
+
+    private fun afterValue() {
+        if (depth <= 0) state = State.DONE
+    }
+
+    private fun push(isObject: Boolean) {
+        if (depth == containers.size) containers = containers.copyOf(depth * 2)
+        containers[depth++] = isObject
+    }
+
+    private fun inObject(): Boolean = depth > 0 && containers[depth - 1]
+
+    companion object {
+        private const val INITIAL_DEPTH = 8
+    }
+}
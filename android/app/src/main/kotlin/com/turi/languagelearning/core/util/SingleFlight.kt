@@ -0,0 +1,67 @@
+package com.turi.languagelearning.core.util
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.async
+
+/**
+ * Coalesces concurrent identical requests into one in-flight call.
+ *
+ * The first caller for a key starts [run]'s block in [scope]; callers arriving while it is in
+ * flight await the same [Deferred]. A cancelled caller only detaches itself: the shared call is
+ * cancelled once every waiter is gone. Completed calls are forgotten, so results are not cached.
+ */
+class SingleFlight<K : Any, V>(
+    private val scope: CoroutineScope
+) {
+
+    private val lock = Any()
+    private val calls = HashMap<K, Call<V>>()
+
+    suspend fun run(key: K, block: suspend () -> V): V {
+        val call = synchronized(lock) {
+            val existing = calls[key]
+            if (existing != null) {
+                existing.waiters++
+                existing
+            } else {
+                val deferred = scope.async(start = CoroutineStart.LAZY) { block() }
+                Call(deferred).also { created ->
+                    calls[key] = created
+                    deferred.invokeOnCompletion { forget(key, created) }
+                }
+            }
+        }
+
+        call.deferred.start()
+        try {
+            return call.deferred.await()
+        } finally {
+            synchronized(lock) {
+                call.waiters--
+                if (call.waiters == 0 && !call.deferred.isCompleted) {
+                    forgetLocked(key, call)
+                    call.deferred.cancel()
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of distinct calls currently in flight
+     */
+    fun inFlight(): Int = synchronized(lock) { calls.size }
+
+    private fun forget(key: K, call: Call<V>) {
+        synchronized(lock) { forgetLocked(key, call) }
+    }
+
+    private fun forgetLocked(key: K, call: Call<V>) {
+        if (calls[key] === call) calls.remove(key)
+    }
+
+    private class Call<V>(val deferred: Deferred<V>) {
+        var waiters = 1
+    }
+}
@@ -2,14 +2,60 @@ package com.turi.languagelearning.data.local
 
 import androidx.room.Database
 import androidx.room.RoomDatabase
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+import com.turi.languagelearning.data.local.dao.ExplanationCacheDao
+import com.turi.languagelearning.data.local.dao.GrammarExplanationDao
+import com.turi.languagelearning.data.local.dao.SkillEstimateDao
 import com.turi.languagelearning.data.local.dao.UserDao
+import com.turi.languagelearning.data.local.entity.ExplanationCacheEntity
+import com.turi.languagelearning.data.local.entity.GrammarExplanationEntity
+import com.turi.languagelearning.data.local.entity.SkillEstimateEntity
 import com.turi.languagelearning.data.local.entity.UserEntity
 
 @Database(
-    entities = [UserEntity::class],
-    version = 1,
+    entities = [UserEntity::class, ExplanationCacheEntity::class, GrammarExplanationEntity::class, SkillEstimateEntity::class],
+    version = 4,
     exportSchema = false
 )
 abstract class TuriDatabase : RoomDatabase() {
     abstract fun userDao(): UserDao
+    abstract fun explanationCacheDao(): ExplanationCacheDao
+    abstract fun grammarExplanationDao(): GrammarExplanationDao
+    abstract fun skillEstimateDao(): SkillEstimateDao
+    
+    companion object {
+        // Each version only added a table, so upgrades keep the user and the skill estimates
+        val MIGRATION_1_2 = object : Migration(1, 2) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `explanation_cache` (`cacheKey` TEXT NOT NULL, " +
+                        "`payload` TEXT NOT NULL, `sizeBytes` INTEGER NOT NULL, `createdAt` INTEGER NOT NULL, " +
+                        "PRIMARY KEY(`cacheKey`))"
+                )
+            }
+        }
+        
+        val MIGRATION_2_3 = object : Migration(2, 3) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `grammar_explanations` (`sentenceKey` TEXT NOT NULL, " +
+                        "`payload` TEXT NOT NULL, `sizeBytes` INTEGER NOT NULL, `contentVersion` INTEGER NOT NULL, " +
+                        "`createdAt` INTEGER NOT NULL, `lastUsedAt` INTEGER NOT NULL, PRIMARY KEY(`sentenceKey`))"
+                )
+            }
+        }
+        
+        val MIGRATION_3_4 = object : Migration(3, 4) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `skill_estimates` (`languageCode` TEXT NOT NULL, " +
+                        "`rating` REAL NOT NULL, `evaluationCount` INTEGER NOT NULL, `updatedAt` INTEGER NOT NULL, " +
+                        "PRIMARY KEY(`languageCode`))"
+                )
+            }
+        }
+        
+        val ALL_MIGRATIONS = arrayOf(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4)
+    }
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.turi.languagelearning.data.local.dao
+
+import androidx.room.*
+import com.turi.languagelearning.data.local.entity.ExplanationCacheEntity
+
+@Dao
+interface ExplanationCacheDao {
+    
+    @Query("SELECT * FROM explanation_cache WHERE cacheKey = :cacheKey")
+    suspend fun getEntry(cacheKey: String): ExplanationCacheEntity?
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertEntry(entry: ExplanationCacheEntity)
+    
+    @Query("DELETE FROM explanation_cache WHERE createdAt < :cutoff")
+    suspend fun deleteOlderThan(cutoff: Long)
+    
+    @Query("DELETE FROM explanation_cache")
+    suspend fun deleteAll()
+}
@@ -0,0 +1,32 @@
+package com.turi.languagelearning.data.local.dao
+
+import androidx.room.*
+import com.turi.languagelearning.data.local.entity.GrammarExplanationEntity
+
+@Dao
+interface GrammarExplanationDao {
+    
+    @Query("SELECT * FROM grammar_explanations WHERE sentenceKey = :sentenceKey")
+    suspend fun getExplanation(sentenceKey: String): GrammarExplanationEntity?
+    
+    @Query("SELECT EXISTS(SELECT 1 FROM grammar_explanations WHERE sentenceKey = :sentenceKey)")
+    suspend fun contains(sentenceKey: String): Boolean
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertExplanation(entry: GrammarExplanationEntity)
+    
+    @Query("UPDATE grammar_explanations SET lastUsedAt = :usedAt WHERE sentenceKey = :sentenceKey")
+    suspend fun markUsed(sentenceKey: String, usedAt: Long)
+    
+    @Query("SELECT COALESCE(SUM(sizeBytes), 0) FROM grammar_explanations")
+    suspend fun totalSizeBytes(): Long
+    
+    @Query("SELECT sentenceKey FROM grammar_explanations ORDER BY lastUsedAt ASC LIMIT :limit")
+    suspend fun leastRecentlyUsedKeys(limit: Int): List<String>
+    
+    @Query("DELETE FROM grammar_explanations WHERE sentenceKey IN (:sentenceKeys)")
+    suspend fun deleteExplanations(sentenceKeys: List<String>)
+    
+    @Query("DELETE FROM grammar_explanations WHERE contentVersion != :contentVersion")
+    suspend fun deleteOtherVersions(contentVersion: Int): Int
+}
@@ -0,0 +1,17 @@
+package com.turi.languagelearning.data.local.dao
+
+import androidx.room.*
+import com.turi.languagelearning.data.local.entity.SkillEstimateEntity
+
+@Dao
+interface SkillEstimateDao {
+    
+    @Query("SELECT * FROM skill_estimates WHERE languageCode = :languageCode")
+    suspend fun getEstimate(languageCode: String): SkillEstimateEntity?
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertEstimate(estimate: SkillEstimateEntity)
+    
+    @Query("DELETE FROM skill_estimates")
+    suspend fun deleteAll()
+}
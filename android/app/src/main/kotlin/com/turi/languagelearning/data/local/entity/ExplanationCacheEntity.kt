@@ -0,0 +1,13 @@
+package com.turi.languagelearning.data.local.entity
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+@Entity(tableName = "explanation_cache")
+data class ExplanationCacheEntity(
+    @PrimaryKey
+    val cacheKey: String,
+    val payload: String,
+    val sizeBytes: Int,
+    val createdAt: Long
+)
@@ -0,0 +1,15 @@
+package com.turi.languagelearning.data.local.entity
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+@Entity(tableName = "grammar_explanations")
+data class GrammarExplanationEntity(
+    @PrimaryKey
+    val sentenceKey: String,
+    val payload: String,
+    val sizeBytes: Int,
+    val contentVersion: Int,
+    val createdAt: Long,
+    val lastUsedAt: Long
+)
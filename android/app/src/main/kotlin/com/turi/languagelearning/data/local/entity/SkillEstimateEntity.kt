@@ -0,0 +1,13 @@
+package com.turi.languagelearning.data.local.entity
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+@Entity(tableName = "skill_estimates")
+data class SkillEstimateEntity(
+    @PrimaryKey
+    val languageCode: String,
+    val rating: Double,
+    val evaluationCount: Int,
+    val updatedAt: Long
+)
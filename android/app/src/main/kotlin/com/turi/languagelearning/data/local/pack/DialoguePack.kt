@@ -0,0 +1,243 @@
+package com.turi.languagelearning.data.local.pack
+
+import android.content.res.AssetManager
+import com.turi.languagelearning.domain.model.ConversationFlow
+import com.turi.languagelearning.domain.model.Dialogue
+import com.turi.languagelearning.domain.model.DialogueOption
+import com.turi.languagelearning.domain.model.Phrase
+import java.io.FileInputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.zip.CRC32
+
+/**
+ * Read-only view of a compiled dialogue pack (see buildSrc `DialoguePackCompiler` for the layout).
+ *
+ * The pack is memory-mapped and records are decoded on demand: looking up a dialogue reads a
+ * few ints, and strings are decoded from the string table on first use and then reused.
+ * Dialogues, options and flows are addressed by their index in the pack. Safe for concurrent reads.
+ */
+class DialoguePack(private val buffer: ByteBuffer) {
+
+    val flowCount: Int
+    val dialogueCount: Int
+
+    private val stringCount: Int
+    private val optionCount: Int
+    private val pointCount: Int
+
+    private val offsetsPosition: Int
+    private val flowsPosition: Int
+    private val dialoguesPosition: Int
+    private val optionsPosition: Int
+    private val pointsPosition: Int
+    private val stringDataPosition: Int
+
+    private val strings: Array<String?>
+
+    init {
+        if (buffer.getInt(0) != MAGIC) throw IOException("Not a dialogue pack")
+        val version = buffer.getInt(4)
+        if (version != VERSION) throw IOException("Unsupported dialogue pack version $version")
+
+        stringCount = buffer.getInt(8)
+        flowCount = buffer.getInt(12)
+        dialogueCount = buffer.getInt(16)
+        optionCount = buffer.getInt(20)
+        pointCount = buffer.getInt(24)
+
+        offsetsPosition = HEADER_BYTES
+        flowsPosition = offsetsPosition + (stringCount + 1) * INT_BYTES
+        dialoguesPosition = flowsPosition + flowCount * FLOW_RECORD_INTS * INT_BYTES
+        optionsPosition = dialoguesPosition + dialogueCount * DIALOGUE_RECORD_INTS * INT_BYTES
+        pointsPosition = optionsPosition + optionCount * OPTION_RECORD_INTS * INT_BYTES
+        stringDataPosition = pointsPosition + pointCount * INT_BYTES
+
+        strings = arrayOfNulls(stringCount)
+    }
+
+    /**
+     * CRC32 of the whole pack; changes whenever the shipped content does
+     */
+    val checksum: Int by lazy {
+        val crc = CRC32()
+        val view = buffer.duplicate()
+        view.clear()
+        // CRC32.update(ByteBuffer) needs API 26, so copy through a small array
+        val chunk = ByteArray(CHECKSUM_CHUNK_BYTES)
+        while (view.hasRemaining()) {
+            val length = minOf(chunk.size, view.remaining())
+            view.get(chunk, 0, length)
+            crc.update(chunk, 0, length)
+        }
+        crc.value.toInt()
+    }
+
+    /**
+     * Index of the flow for [characterId] in [languageCode], or -1
+     */
+    fun findFlow(characterId: String, languageCode: String): Int {
+        for (flow in 0 until flowCount) {
+            if (string(flowInt(flow, FLOW_CHARACTER_ID)) == characterId &&
+                string(flowInt(flow, FLOW_LANGUAGE)) == languageCode
+            ) {
+                return flow
+            }
+        }
+        return -1
+    }
+
+    fun startDialogue(flow: Int): Int = flowInt(flow, FLOW_START_DIALOGUE)
+
+    /**
+     * Global indices of the dialogues belonging to [flow]
+     */
+    fun flowDialogues(flow: Int): IntRange {
+        val first = flowInt(flow, FLOW_FIRST_DIALOGUE)
+        return first until first + flowInt(flow, FLOW_DIALOGUE_COUNT)
+    }
+
+    /**
+     * Index of the dialogue with [id] in [flow], or -1
+     */
+    fun findDialogue(flow: Int, id: String): Int =
+        flowDialogues(flow).firstOrNull { string(dialogueInt(it, DIALOGUE_ID)) == id } ?: -1
+
+    fun dialogueId(dialogue: Int): String = requireString(dialogueInt(dialogue, DIALOGUE_ID))
+
+    fun optionCount(dialogue: Int): Int = dialogueInt(dialogue, DIALOGUE_OPTION_COUNT)
+
+    /**
+     * Dialogue index that [option] (0-based within [dialogue]) leads to, or -1 when it ends the flow
+     */
+    fun nextDialogue(dialogue: Int, option: Int): Int =
+        optionInt(dialogueInt(dialogue, DIALOGUE_FIRST_OPTION) + option, OPTION_NEXT_DIALOGUE)
+
+    /**
+     * Decodes one dialogue with its options and learning points
+     */
+    fun dialogue(index: Int): Dialogue {
+        val firstOption = dialogueInt(index, DIALOGUE_FIRST_OPTION)
+        val firstPoint = dialogueInt(index, DIALOGUE_FIRST_POINT)
+
+        return Dialogue(
+            id = dialogueId(index),
+            characterName = requireString(dialogueInt(index, DIALOGUE_CHARACTER_NAME)),
+            phrase = Phrase(
+                id = requireString(dialogueInt(index, DIALOGUE_PHRASE_ID)),
+                text = requireString(dialogueInt(index, DIALOGUE_PHRASE_TEXT)),
+                translation = requireString(dialogueInt(index, DIALOGUE_PHRASE_TRANSLATION)),
+                audioUrl = string(dialogueInt(index, DIALOGUE_PHRASE_AUDIO_URL)),
+                difficulty = dialogueInt(index, DIALOGUE_PHRASE_DIFFICULTY)
+            ),
+            options = List(optionCount(index)) { i -> option(firstOption + i) },
+            isQuestion = dialogueInt(index, DIALOGUE_FLAGS) and FLAG_SET != 0,
+            context = string(dialogueInt(index, DIALOGUE_CONTEXT)),
+            learningPoints = List(dialogueInt(index, DIALOGUE_POINT_COUNT)) { i ->
+                requireString(buffer.getInt(pointsPosition + (firstPoint + i) * INT_BYTES))
+            }
+        )
+    }
+
+    /**
+     * Inflates a whole flow. Prefer [dialogue] for walking a conversation.
+     */
+    fun flow(index: Int): ConversationFlow = ConversationFlow(
+        characterId = requireString(flowInt(index, FLOW_CHARACTER_ID)),
+        characterName = requireString(flowInt(index, FLOW_CHARACTER_NAME)),
+        language = requireString(flowInt(index, FLOW_LANGUAGE)),
+        dialogues = flowDialogues(index).map(::dialogue).associateBy { it.id },
+        startDialogueId = dialogueId(startDialogue(index)),
+        description = requireString(flowInt(index, FLOW_DESCRIPTION))
+    )
+
+    private fun option(index: Int): DialogueOption {
+        val next = optionInt(index, OPTION_NEXT_DIALOGUE)
+        return DialogueOption(
+            id = requireString(optionInt(index, OPTION_ID)),
+            text = requireString(optionInt(index, OPTION_TEXT)),
+            translation = requireString(optionInt(index, OPTION_TRANSLATION)),
+            nextDialogueId = if (next >= 0) dialogueId(next) else null,
+            isCorrect = optionInt(index, OPTION_FLAGS) and FLAG_SET != 0
+        )
+    }
+
+    private fun string(index: Int): String? {
+        if (index < 0) return null
+        strings[index]?.let { return it }
+
+        val start = buffer.getInt(offsetsPosition + index * INT_BYTES)
+        val end = buffer.getInt(offsetsPosition + (index + 1) * INT_BYTES)
+        val bytes = ByteArray(end - start)
+        for (i in bytes.indices) bytes[i] = buffer.get(stringDataPosition + start + i)
+
+        // Racing decodes produce equal strings, so the unsynchronized write is harmless
+        return String(bytes, Charsets.UTF_8).also { strings[index] = it }
+    }
+
+    private fun requireString(index: Int): String = string(index).orEmpty()
+
+    private fun flowInt(flow: Int, field: Int): Int =
+        buffer.getInt(flowsPosition + (flow * FLOW_RECORD_INTS + field) * INT_BYTES)
+
+    private fun dialogueInt(dialogue: Int, field: Int): Int =
+        buffer.getInt(dialoguesPosition + (dialogue * DIALOGUE_RECORD_INTS + field) * INT_BYTES)
+
+    private fun optionInt(option: Int, field: Int): Int =
+        buffer.getInt(optionsPosition + (option * OPTION_RECORD_INTS + field) * INT_BYTES)
+
+    companion object {
+        const val ASSET_PATH = "dialogues/dialogues.dpk"
+
+        private const val MAGIC = 0x54445031 // "TDP1"
+        private const val VERSION = 1
+        private const val INT_BYTES = 4
+        private const val HEADER_BYTES = 7 * INT_BYTES
+        private const val FLAG_SET = 1
+        private const val CHECKSUM_CHUNK_BYTES = 8 * 1024
+
+        private const val FLOW_RECORD_INTS = 7
+        private const val FLOW_CHARACTER_ID = 0
+        private const val FLOW_CHARACTER_NAME = 1
+        private const val FLOW_LANGUAGE = 2
+        private const val FLOW_DESCRIPTION = 3
+        private const val FLOW_START_DIALOGUE = 4
+        private const val FLOW_FIRST_DIALOGUE = 5
+        private const val FLOW_DIALOGUE_COUNT = 6
+
+        private const val DIALOGUE_RECORD_INTS = 13
+        private const val DIALOGUE_ID = 0
+        private const val DIALOGUE_CHARACTER_NAME = 1
+        private const val DIALOGUE_PHRASE_ID = 2
+        private const val DIALOGUE_PHRASE_TEXT = 3
+        private const val DIALOGUE_PHRASE_TRANSLATION = 4
+        private const val DIALOGUE_PHRASE_AUDIO_URL = 5
+        private const val DIALOGUE_PHRASE_DIFFICULTY = 6
+        private const val DIALOGUE_FLAGS = 7
+        private const val DIALOGUE_CONTEXT = 8
+        private const val DIALOGUE_FIRST_OPTION = 9
+        private const val DIALOGUE_OPTION_COUNT = 10
+        private const val DIALOGUE_FIRST_POINT = 11
+        private const val DIALOGUE_POINT_COUNT = 12
+
+        private const val OPTION_RECORD_INTS = 5
+        private const val OPTION_ID = 0
+        private const val OPTION_TEXT = 1
+        private const val OPTION_TRANSLATION = 2
+        private const val OPTION_NEXT_DIALOGUE = 3
+        private const val OPTION_FLAGS = 4
+
+        /**
+         * Maps [path] from the APK. The asset must be stored uncompressed (see `noCompress`).
+         */
+        fun open(assets: AssetManager, path: String = ASSET_PATH): DialoguePack {
+            return assets.openFd(path).use { descriptor ->
+                FileInputStream(descriptor.fileDescriptor).channel.use { channel ->
+                    // The mapping stays valid after the channel is closed
+                    DialoguePack(channel.map(FileChannel.MapMode.READ_ONLY, descriptor.startOffset, descriptor.length))
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.turi.languagelearning.data.local.pack
+
+import android.content.Context
+import android.util.Log
+import com.turi.languagelearning.core.model.Language
+import com.turi.languagelearning.features.conversation.domain.ConversationGraph
+import dagger.hilt.android.qualifiers.ApplicationContext
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Offline dialogue content shipped in the APK.
+ * The pack is mapped on first use; a missing or corrupt pack just means no offline content.
+ */
+@Singleton
+class DialoguePackRepository @Inject constructor(
+    @ApplicationContext private val context: Context
+) {
+
+    private val TAG = "DialoguePackRepository"
+
+    val pack: DialoguePack? by lazy {
+        try {
+            DialoguePack.open(context.assets)
+        } catch (e: Exception) {
+            Log.w(TAG, "Dialogue pack unavailable", e)
+            null
+        }
+    }
+
+    /**
+     * Identifies the shipped content; 0 when there is no pack
+     */
+    val contentVersion: Int
+        get() = pack?.checksum ?: 0
+
+    /**
+     * Flow index for [characterId] in [language], falling back to the language's default flow, or -1
+     */
+    fun findFlow(characterId: String, language: Language): Int {
+        val pack = pack ?: return -1
+        val flow = pack.findFlow(characterId, language.code)
+        return if (flow >= 0) flow else pack.findFlow(DEFAULT_CHARACTER_ID, language.code)
+    }
+
+    /**
+     * Graph over the character's flow; dialogues are decoded from the pack as they are visited
+     */
+    fun graph(characterId: String, language: Language): ConversationGraph? {
+        val pack = pack ?: return null
+        val flow = findFlow(characterId, language)
+        if (flow < 0) return null
+
+        val nodes = pack.flowDialogues(flow)
+        val first = nodes.first
+        val edgeOffsets = IntArray(nodes.count() + 1)
+        nodes.forEachIndexed { node, dialogue ->
+            edgeOffsets[node + 1] = edgeOffsets[node] + pack.optionCount(dialogue)
+        }
+
+        val edgeTargets = IntArray(edgeOffsets.last())
+        nodes.forEachIndexed { node, dialogue ->
+            for (option in 0 until pack.optionCount(dialogue)) {
+                val next = pack.nextDialogue(dialogue, option)
+                edgeTargets[edgeOffsets[node] + option] = if (next >= 0) next - first else -1
+            }
+        }
+
+        return ConversationGraph(
+            ids = Array(nodes.count()) { pack.dialogueId(first + it) },
+            startNode = pack.startDialogue(flow) - first,
+            edgeOffsets = edgeOffsets,
+            edgeTargets = edgeTargets,
+            loader = { node -> pack.dialogue(first + node) }
+        )
+    }
+
+    companion object {
+        const val DEFAULT_CHARACTER_ID = "default"
+    }
+}
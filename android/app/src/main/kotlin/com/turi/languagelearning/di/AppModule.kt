@@ -3,8 +3,16 @@ package com.turi.languagelearning.di
 import android.content.Context
 import androidx.room.Room
 import com.turi.languagelearning.data.local.TuriDatabase
+import com.turi.languagelearning.core.network.GeminiApiClient
+import com.turi.languagelearning.data.local.dao.ExplanationCacheDao
+import com.turi.languagelearning.data.local.dao.GrammarExplanationDao
+import com.turi.languagelearning.data.local.dao.SkillEstimateDao
 import com.turi.languagelearning.data.local.dao.UserDao
 import com.turi.languagelearning.data.remote.SupabaseClient
+import com.turi.languagelearning.features.conversation.data.grammar.GeminiGrammarExplanationGenerator
+import com.turi.languagelearning.features.conversation.data.vocabulary.SupabaseVocabularySource
+import com.turi.languagelearning.features.conversation.domain.GrammarExplanationGenerator
+import com.turi.languagelearning.features.conversation.domain.VocabularySource
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.InstallIn
@@ -32,7 +40,9 @@ object AppModule {
             TuriDatabase::class.java,
             "turi_database"
         )
-        .fallbackToDestructiveMigration()
+        .addMigrations(*TuriDatabase.ALL_MIGRATIONS)
+        // Only a downgrade, e.g. back to an older build, may drop the data
+        .fallbackToDestructiveMigrationOnDowngrade()
         .build()
     }
     
@@ -40,4 +50,33 @@ object AppModule {
     fun provideUserDao(database: TuriDatabase): UserDao {
         return database.userDao()
     }
-}
\ No newline at end of file
+    
+    @Provides
+    fun provideExplanationCacheDao(database: TuriDatabase): ExplanationCacheDao {
+        return database.explanationCacheDao()
+    }
+    
+    @Provides
+    fun provideGrammarExplanationDao(database: TuriDatabase): GrammarExplanationDao {
+        return database.grammarExplanationDao()
+    }
+    
+    @Provides
+    fun provideSkillEstimateDao(database: TuriDatabase): SkillEstimateDao {
+        return database.skillEstimateDao()
+    }
+    
+    @Provides
+    @Singleton
+    fun provideGrammarExplanationGenerator(
+        geminiClient: GeminiApiClient
+    ): GrammarExplanationGenerator {
+        return GeminiGrammarExplanationGenerator(geminiClient)
+    }
+    
+    @Provides
+    @Singleton
+    fun provideVocabularySource(source: SupabaseVocabularySource): VocabularySource {
+        return source
+    }
+}
@@ -0,0 +1,146 @@
+package com.turi.languagelearning.features.conversation.data
+
+import com.google.gson.JsonArray
+import com.google.gson.JsonObject
+import com.turi.languagelearning.core.model.Language
+import com.turi.languagelearning.core.network.Prompt
+import com.turi.languagelearning.core.network.PromptSlot
+import com.turi.languagelearning.core.network.PromptTemplate
+import com.turi.languagelearning.features.conversation.domain.ConversationResult
+
+/**
+ * Token limits for the conversation part of a turn prompt.
+ * History beyond [historyTokens] is folded into a rolling summary of at most [summaryTokens];
+ * the last [minRecentTurns] turns are always kept verbatim.
+ */
+data class PromptBudget(
+    val historyTokens: Int = 600,
+    val summaryTokens: Int = 200,
+    val minRecentTurns: Int = 2
+)
+
+/**
+ * Cheap token estimate used for budgeting, close enough to the Gemini tokenizer:
+ * CJK characters count one token each, other text roughly four characters per token.
+ */
+internal object TokenEstimator {
+
+    fun estimate(text: CharSequence): Int {
+        var cjk = 0
+        var other = 0
+        for (char in text) {
+            if (isCjk(char)) cjk++ else other++
+        }
+        return cjk + (other + 3) / 4
+    }
+
+    private fun isCjk(char: Char): Boolean {
+        val block = Character.UnicodeBlock.of(char)
+        return block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS ||
+            block == Character.UnicodeBlock.HIRAGANA ||
+            block == Character.UnicodeBlock.KATAKANA ||
+            block == Character.UnicodeBlock.HANGUL_SYLLABLES
+    }
+}
+
+/**
+ * Assembles turn prompts from the compacted conversation state.
+ * The persona and output rules form a prefix that stays the same for the whole conversation;
+ * the history part is bounded by the context's [PromptBudget], so building a prompt
+ * costs the same on the fiftieth turn as on the second.
+ */
+internal class ConversationPromptBuilder {
+
+    /**
+     * [targetWords] are required dialogue words the reply or its options should use
+     */
+    fun buildTurnPrompt(context: ConversationContext, userInput: String, targetWords: List<String> = emptyList()): Prompt {
+        val prefix = turnPrefix(context)
+        val snapshot = context.promptSnapshot()
+
+        val text = buildString(BASE_CAPACITY + snapshot.estimatedChars + userInput.length) {
+            if (snapshot.summary.isNotEmpty()) {
+                appendLine("Earlier in the conversation:")
+                snapshot.summary.forEach { appendLine("- $it") }
+                appendLine()
+            }
+            appendLine("Recent conversation:")
+            snapshot.recentMessages.forEach { message ->
+                appendLine("Learner: ${message.userInput}")
+                appendLine("${context.characterName}: ${message.characterResponse}")
+            }
+            append("Learner: ").append(userInput)
+            if (targetWords.isNotEmpty()) {
+                appendLine()
+                appendLine()
+                append("Use these words in your reply or the options: ").append(targetWords.joinToString(", "))
+            }
+        }
+        return Prompt(prefix, text)
+    }
+
+    /**
+     * Asks for the same turn again with [missingWords] worked in, instead of a whole new turn
+     */
+    fun buildRepairPrompt(context: ConversationContext, result: ConversationResult, missingWords: List<String>): Prompt {
+        val turn = JsonObject().apply {
+            addProperty("message", result.characterMessage)
+            addProperty("translation", result.translation)
+            add("options", JsonArray().apply {
+                result.responseOptions.forEach { option ->
+                    add(JsonObject().apply {
+                        addProperty("text", option.text)
+                        addProperty("translation", option.translation)
+                    })
+                }
+            })
+            add("tips", JsonArray().apply { result.learningTips.forEach { add(it) } })
+        }
+
+        val text = buildString {
+            appendLine("Your last reply was:")
+            appendLine(turn.toString())
+            appendLine()
+            append("Rewrite it so the reply or the options also use: ").append(missingWords.joinToString(", "))
+            append(". Change as little as possible and keep it natural.")
+        }
+        return Prompt(turnPrefix(context), text)
+    }
+
+    private fun turnPrefix(context: ConversationContext) = TURN_PREFIX.prefix(
+        CHARACTER of context.characterName,
+        LANGUAGE of context.language,
+        LEVEL of context.userLevel
+    )
+
+    companion object {
+        private const val BASE_CAPACITY = 128
+
+        private val CHARACTER = PromptSlot<String>("character")
+        private val LANGUAGE = PromptSlot<Language>("language") { it.displayName }
+        private val LEVEL = PromptSlot<Int>("level")
+
+        private val TURN_PREFIX = PromptTemplate.compile(
+            prefix = """
+                You are {character}, a friendly character in a {language} language learning app.
+                Learner level: {level}
+                
+                Reply in {language} with one or two short sentences.
+                Return only this JSON object, keys in this order, without code fences:
+                ${TurnJsonParser.FORMAT}
+                Give 2-3 options and 1-2 tips.
+            """.trimIndent(),
+            body = "",
+            CHARACTER, LANGUAGE, LEVEL
+        )
+    }
+}
+
+/**
+ * Immutable view of the prompt-relevant conversation state
+ */
+internal data class PromptSnapshot(
+    val summary: List<String>,
+    val recentMessages: List<ConversationMessage>,
+    val estimatedChars: Int
+)
@@ -0,0 +1,226 @@
+package com.turi.languagelearning.features.conversation.data
+
+import android.util.Log
+import com.turi.languagelearning.core.model.Language
+import com.turi.languagelearning.features.conversation.data.vocabulary.VocabularyCoverage
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Thread-safe store for active conversations.
+ *
+ * Sessions are kept in access order and evicted when the store exceeds [maxSessions]
+ * or a session has been idle longer than [idleTtlMs]. Screens that are left without
+ * calling endConversation therefore no longer leak their context.
+ */
+internal class ConversationSessionStore(
+    private val maxSessions: Int = DEFAULT_MAX_SESSIONS,
+    private val idleTtlMs: Long = DEFAULT_IDLE_TTL_MS,
+    private val maxMessagesPerSession: Int = DEFAULT_MAX_MESSAGES,
+    private val promptBudget: PromptBudget = PromptBudget(),
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+
+    private val TAG = "ConversationSessionStore"
+
+    private val lock = Any()
+    private val sessions = LinkedHashMap<String, ConversationContext>(16, 0.75f, true)
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+    private val evictions = AtomicLong()
+
+    fun create(
+        id: String,
+        characterName: String,
+        language: Language,
+        userLevel: Int,
+        vocabulary: VocabularyCoverage? = null
+    ): ConversationContext {
+        val now = clock()
+        val context = ConversationContext(
+            id = id,
+            characterName = characterName,
+            language = language,
+            userLevel = userLevel,
+            vocabulary = vocabulary,
+            startTime = now,
+            maxMessages = maxMessagesPerSession,
+            budget = promptBudget
+        )
+
+        synchronized(lock) {
+            sessions[id] = context
+            evictExpiredLocked(now)
+            while (sessions.size > maxSessions) {
+                val eldest = sessions.keys.first()
+                sessions.remove(eldest)
+                evictions.incrementAndGet()
+                Log.i(TAG, "Evicted least recently used conversation: $eldest")
+            }
+        }
+        return context
+    }
+
+    fun get(id: String): ConversationContext? {
+        val now = clock()
+        val context = synchronized(lock) {
+            evictExpiredLocked(now)
+            sessions[id]
+        }
+
+        if (context == null) {
+            misses.incrementAndGet()
+        } else {
+            hits.incrementAndGet()
+            context.touch(now)
+        }
+        return context
+    }
+
+    fun remove(id: String): ConversationContext? = synchronized(lock) {
+        sessions.remove(id)
+    }
+
+    fun stats(): SessionStoreStats = SessionStoreStats(
+        size = synchronized(lock) { sessions.size },
+        hits = hits.get(),
+        misses = misses.get(),
+        evictions = evictions.get()
+    )
+
+    private fun evictExpiredLocked(now: Long) {
+        // Access order keeps the idlest sessions first, so stop at the first live one
+        val iterator = sessions.entries.iterator()
+        while (iterator.hasNext()) {
+            val entry = iterator.next()
+            if (now - entry.value.lastAccessTime <= idleTtlMs) break
+            iterator.remove()
+            evictions.incrementAndGet()
+            Log.i(TAG, "Evicted idle conversation: ${entry.key}")
+        }
+    }
+
+    companion object {
+        const val DEFAULT_MAX_SESSIONS = 8
+        const val DEFAULT_IDLE_TTL_MS = 30 * 60 * 1000L
+        const val DEFAULT_MAX_MESSAGES = 20
+    }
+}
+
+data class SessionStoreStats(
+    val size: Int,
+    val hits: Long,
+    val misses: Long,
+    val evictions: Long
+)
+
+/**
+ * Conversation state. Recent turns are kept verbatim with a running token estimate;
+ * when they exceed [budget] or [maxMessages], the oldest turns are folded into a bounded
+ * rolling summary. All access is synchronized so parallel turns cannot corrupt it.
+ */
+internal class ConversationContext(
+    val id: String,
+    val characterName: String,
+    val language: Language,
+    userLevel: Int,
+    val vocabulary: VocabularyCoverage?,
+    val startTime: Long,
+    private val maxMessages: Int,
+    private val budget: PromptBudget = PromptBudget()
+) {
+    private val lock = Any()
+    private val history = ArrayDeque<ConversationMessage>()
+    private val summary = ArrayDeque<SummaryLine>()
+    private var historyTokens = 0
+    private var summaryTokens = 0
+
+    @Volatile
+    var lastAccessTime: Long = startTime
+        private set
+
+    // Follows the learner's skill estimate from turn to turn
+    @Volatile
+    var userLevel: Int = userLevel
+
+    val messages: List<ConversationMessage>
+        get() = synchronized(lock) { history.toList() }
+
+    val lastCharacterResponse: String?
+        get() = synchronized(lock) { history.lastOrNull()?.characterResponse }
+
+    fun addMessage(userInput: String, characterResponse: String) {
+        val now = System.currentTimeMillis()
+        val message = ConversationMessage(
+            userInput = userInput,
+            characterResponse = characterResponse,
+            timestamp = now,
+            tokens = TokenEstimator.estimate(userInput) + TokenEstimator.estimate(characterResponse)
+        )
+
+        synchronized(lock) {
+            history.addLast(message)
+            historyTokens += message.tokens
+            compactLocked()
+        }
+        touch(now)
+    }
+
+    fun promptSnapshot(): PromptSnapshot = synchronized(lock) {
+        PromptSnapshot(
+            summary = summary.map { it.text },
+            recentMessages = history.toList(),
+            estimatedChars = (historyTokens + summaryTokens) * CHARS_PER_TOKEN
+        )
+    }
+
+    fun touch(now: Long) {
+        lastAccessTime = now
+    }
+
+    /**
+     * Folds the oldest turns into the summary until history fits the budget.
+     * Each fold touches one turn, so the amortized cost per added turn is constant.
+     */
+    private fun compactLocked() {
+        while (history.size > budget.minRecentTurns &&
+            (historyTokens > budget.historyTokens || history.size > maxMessages)
+        ) {
+            val oldest = history.removeFirst()
+            historyTokens -= oldest.tokens
+
+            val line = SummaryLine.fold(oldest, characterName)
+            summary.addLast(line)
+            summaryTokens += line.tokens
+            while (summaryTokens > budget.summaryTokens && summary.size > 1) {
+                summaryTokens -= summary.removeFirst().tokens
+            }
+        }
+    }
+
+    private class SummaryLine(val text: String, val tokens: Int) {
+        companion object {
+            fun fold(message: ConversationMessage, characterName: String): SummaryLine {
+                val text = "Learner: \"${message.userInput.abbreviate(FOLDED_INPUT_CHARS)}\", " +
+                    "$characterName: \"${message.characterResponse.abbreviate(FOLDED_RESPONSE_CHARS)}\""
+                return SummaryLine(text, TokenEstimator.estimate(text))
+            }
+
+            private fun String.abbreviate(maxChars: Int): String =
+                if (length <= maxChars) this else take(maxChars - 1).trimEnd() + "…"
+        }
+    }
+
+    companion object {
+        private const val CHARS_PER_TOKEN = 4
+        private const val FOLDED_INPUT_CHARS = 48
+        private const val FOLDED_RESPONSE_CHARS = 72
+    }
+}
+
+internal data class ConversationMessage(
+    val userInput: String,
+    val characterResponse: String,
+    val timestamp: Long,
+    val tokens: Int
+)
@@ -1,60 +1,125 @@
 package com.turi.languagelearning.features.conversation.data
 
 import android.util.Log
+import com.google.gson.JsonObject
+import com.google.gson.JsonParser
 import com.turi.languagelearning.core.model.Language
+import com.turi.languagelearning.core.network.GeminiApiClient
+import com.turi.languagelearning.core.network.GeminiRequestScheduler
+import com.turi.languagelearning.core.network.Prompt
+import com.turi.languagelearning.core.network.RequestPriority
+import com.turi.languagelearning.core.network.SchedulerStats
+import com.turi.languagelearning.core.util.SingleFlight
+import com.turi.languagelearning.features.conversation.data.cache.ExplanationCache
+import com.turi.languagelearning.features.conversation.data.evaluation.EvaluationScore
+import com.turi.languagelearning.features.conversation.data.evaluation.LocalResponseEvaluator
+import com.turi.languagelearning.features.conversation.data.evaluation.Verdict
+import com.turi.languagelearning.features.conversation.data.fallback.FallbackResponseEngine
+import com.turi.languagelearning.features.conversation.data.grammar.GrammarExplanationStore
+import com.turi.languagelearning.features.conversation.data.skill.SkillModel
+import com.turi.languagelearning.features.conversation.data.vocabulary.VocabularyCoverageChecker
 import com.turi.languagelearning.features.conversation.domain.*
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.FlowCollector
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
+import kotlinx.coroutines.withTimeoutOrNull
 import javax.inject.Inject
 import javax.inject.Singleton
 
 /**
  * Clean Gemini AI implementation for conversations
  * Native Android integration with Google AI
+ *
+ * Without an API key every turn, streamed or not, is answered by the [FallbackResponseEngine],
+ * and word and grammar explanations throw since there is nothing real to show or cache.
  */
 @Singleton
 class GeminiConversationService @Inject constructor(
-    // TODO: Inject Gemini AI client when ready
+    private val geminiClient: GeminiApiClient,
+    private val requestScheduler: GeminiRequestScheduler,
+    private val explanationCache: ExplanationCache,
+    private val responseEvaluator: LocalResponseEvaluator,
+    private val grammarStore: GrammarExplanationStore,
+    private val grammarGenerator: GrammarExplanationGenerator,
+    private val fallbackEngine: FallbackResponseEngine,
+    private val skillModel: SkillModel,
+    private val vocabularyChecker: VocabularyCoverageChecker
 ) : ConversationService {
     
     private val TAG = "GeminiConversationService"
     
-    // Active conversations
-    private val activeConversations = mutableMapOf<String, ConversationContext>()
+    companion object {
+        private const val WORD_EXPLANATION_KIND = "word"
+        
+        // Turn SLA: past these the local fallback answers instead of the model
+        const val TURN_DEADLINE_MS = 5_000L
+        const val FIRST_CHUNK_DEADLINE_MS = 3_000L
+        
+        // Required dialogue words asked for per turn
+        private const val WORDS_PER_TURN = 3
+        private const val VOCABULARY_LOAD_TIMEOUT_MS = 2_000L
+    }
+    
+    // Active conversations, bounded and safe to touch from parallel turns
+    private val sessions = ConversationSessionStore()
+    private val promptBuilder = ConversationPromptBuilder()
+    
+    // Identical concurrent requests share one in-flight call
+    private val requestScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val turnRequests = SingleFlight<String, ConversationResult>(requestScope)
+    private val wordRequests = SingleFlight<String, WordExplanation>(requestScope)
+    private val grammarRequests = SingleFlight<String, GrammarExplanation>(requestScope)
+    private val evaluationRequests = SingleFlight<String, ResponseEvaluation>(requestScope)
     
     override suspend fun startConversation(
         characterName: String,
         language: Language,
-        userLevel: Int
+        userLevel: Int,
+        dialogueId: Int?
     ): ConversationResult = withContext(Dispatchers.IO) {
         
         Log.i(TAG, "Starting conversation with $characterName in ${language.displayName}")
         
         val conversationId = generateConversationId()
         
+        // The declared level only matters until the learner's answers have been evaluated
+        val level = skillModel.level(language, declaredLevel = userLevel)
+        
+        // Quiz words are loaded once per dialogue; a slow load just leaves this conversation unchecked
+        val vocabulary = dialogueId?.let { id ->
+            withTimeoutOrNull(VOCABULARY_LOAD_TIMEOUT_MS) { vocabularyChecker.coverageFor(id, language) }
+        }
+        
         // Create conversation context
-        val context = ConversationContext(
+        val context = sessions.create(
             id = conversationId,
             characterName = characterName,
             language = language,
-            userLevel = userLevel,
-            startTime = System.currentTimeMillis()
+            userLevel = level,
+            vocabulary = vocabulary
         )
         
-        activeConversations[conversationId] = context
-        
-        // Generate initial greeting based on character and language
-        val greeting = generateGreeting(characterName, language, userLevel)
+        // Preparsed greeting for the language and level, only the name is filled in
+        val greeting = GreetingTemplates.greeting(language, level, characterName)
         
         ConversationResult(
             conversationId = conversationId,
             characterName = characterName,
-            characterMessage = greeting.message,
+            characterMessage = greeting.characterMessage,
             translation = greeting.translation,
             responseOptions = greeting.responseOptions,
             learningTips = greeting.learningTips,
-            difficulty = userLevel
-        )
+            difficulty = level
+        ).also { context.vocabulary?.record(it) }
     }
     
     override suspend fun continueConversation(
@@ -63,25 +128,76 @@ class GeminiConversationService @Inject constructor(
         language: Language
     ): ConversationResult = withContext(Dispatchers.IO) {
         
-        val context = activeConversations[conversationId]
+        val context = sessions.get(conversationId)
             ?: throw IllegalArgumentException("Conversation not found: $conversationId")
         
         Log.i(TAG, "Continuing conversation $conversationId with input: $userInput")
         
-        // TODO: Call Gemini API to generate response
-        val response = generateResponse(context, userInput)
+        val response = generateTurn(context, userInput, RequestPriority.INTERACTIVE)
         
         // Update conversation context
-        context.addMessage(userInput, response.characterMessage)
+        commit(context, userInput, response)
         
         response
     }
     
+    override fun continueConversationStream(
+        conversationId: String,
+        userInput: String,
+        language: Language
+    ): Flow<ConversationChunk> = flow {
+        
+        val context = sessions.get(conversationId)
+            ?: throw IllegalArgumentException("Conversation not found: $conversationId")
+        
+        Log.i(TAG, "Streaming conversation $conversationId with input: $userInput")
+        
+        context.userLevel = skillModel.level(context.language)
+        
+        val response = if (geminiClient.isConfigured) {
+            streamModelTurn(context, userInput)
+        } else {
+            null
+        } ?: fallbackEngine.respond(context, userInput).also { emitReplay(it) }
+        
+        commit(context, userInput, response)
+        emit(ConversationChunk.Complete(response))
+    }.flowOn(Dispatchers.IO)
+    
+    override suspend fun previewTurn(
+        conversationId: String,
+        userInput: String,
+        language: Language
+    ): ConversationResult = withContext(Dispatchers.IO) {
+        
+        val context = sessions.get(conversationId)
+            ?: throw IllegalArgumentException("Conversation not found: $conversationId")
+        
+        Log.d(TAG, "Pre-generating reply for $conversationId to: $userInput")
+        
+        generateTurn(context, userInput, RequestPriority.PREFETCH)
+    }
+    
+    override suspend fun commitTurn(
+        conversationId: String,
+        userInput: String,
+        result: ConversationResult
+    ) {
+        val context = sessions.get(conversationId)
+            ?: throw IllegalArgumentException("Conversation not found: $conversationId")
+        
+        commit(context, userInput, result)
+    }
+    
     override suspend fun endConversation(conversationId: String) {
-        activeConversations.remove(conversationId)
+        sessions.remove(conversationId)
         Log.i(TAG, "Ended conversation: $conversationId")
     }
     
+    fun sessionStats(): SessionStoreStats = sessions.stats()
+    
+    fun schedulerStats(): SchedulerStats = requestScheduler.stats()
+    
     override suspend fun explainWord(
         word: String,
         language: Language,
@@ -90,8 +206,47 @@ class GeminiConversationService @Inject constructor(
         
         Log.i(TAG, "Explaining word: $word in ${language.displayName}")
         
-        // TODO: Call Gemini API for word explanation
-        generateWordExplanation(word, language, context)
+        val key = ExplanationCache.wordKey(WORD_EXPLANATION_KIND, word, language, context)
+        wordRequests.run(key) {
+            explanationCache.getOrLoad(key, WordExplanation::class.java) {
+                // Throwing keeps a failed load out of the cache
+                generateWordExplanations(listOf(word), language, context, RequestPriority.WORD)[word.lowercase()]
+                    ?: throw IllegalStateException("No explanation generated for \"$word\"")
+            }
+        }
+    }
+    
+    override suspend fun explainWords(
+        words: List<String>,
+        language: Language,
+        context: String?
+    ): Map<String, WordExplanation> = withContext(Dispatchers.IO) {
+        
+        val results = LinkedHashMap<String, WordExplanation>()
+        val missing = mutableListOf<String>()
+        
+        words.distinct().forEach { word ->
+            val key = ExplanationCache.wordKey(WORD_EXPLANATION_KIND, word, language, context)
+            val cached = explanationCache.peek(key, WordExplanation::class.java)
+            if (cached != null) results[word] = cached else missing.add(word)
+        }
+        
+        if (missing.isNotEmpty()) {
+            Log.i(TAG, "Explaining ${missing.size} words in ${language.displayName} with one request")
+            
+            val generated = generateWordExplanations(missing, language, context, RequestPriority.PREFETCH)
+            missing.forEach { word ->
+                // Words the batch skipped stay uncached, so a tap fetches them on demand
+                val explanation = generated[word.lowercase()] ?: return@forEach
+                explanationCache.put(
+                    ExplanationCache.wordKey(WORD_EXPLANATION_KIND, word, language, context),
+                    explanation
+                )
+                results[word] = explanation
+            }
+        }
+        
+        results
     }
     
     override suspend fun explainGrammar(
@@ -101,251 +256,313 @@ class GeminiConversationService @Inject constructor(
         
         Log.i(TAG, "Explaining grammar for: $sentence in ${language.displayName}")
         
-        // TODO: Call Gemini API for grammar explanation
-        generateGrammarExplanation(sentence, language)
+        grammarRequests.run(GrammarExplanationStore.key(sentence, language)) {
+            // Usually pre-generated in the background; generate and keep it otherwise. A failed
+            // generation throws, so it is never stored
+            grammarStore.get(sentence, language)
+                ?: grammarGenerator.generate(sentence, language, RequestPriority.WORD).also {
+                    grammarStore.put(sentence, language, it)
+                }
+        }
     }
     
     override suspend fun evaluateResponse(
         userResponse: String,
         expectedResponse: String,
-        language: Language
+        language: Language,
+        contentLevel: Int?
     ): ResponseEvaluation = withContext(Dispatchers.IO) {
         
         Log.i(TAG, "Evaluating response: $userResponse")
         
-        // TODO: Call Gemini API for response evaluation
-        generateResponseEvaluation(userResponse, expectedResponse, language)
+        // Clear matches and misses are settled on-device; only borderline answers need the model
+        val score = responseEvaluator.score(userResponse, expectedResponse)
+        val evaluation = if (score.verdict != Verdict.AMBIGUOUS || !geminiClient.isConfigured) {
+            localEvaluation(userResponse, expectedResponse, score)
+        } else {
+            evaluationRequests.run("${language.code}|$userResponse|$expectedResponse") {
+                evaluateWithModel(userResponse, expectedResponse, language, score)
+            }
+        }
+        
+        skillModel.record(language, evaluation.accuracy, contentLevel)
+        evaluation
     }
     
     // Helper methods (will be replaced with actual Gemini API calls)
     
-    private fun generateConversationId(): String {
-        return "conv_${System.currentTimeMillis()}_${(1000..9999).random()}"
-    }
-    
-    private fun generateGreeting(
-        characterName: String,
-        language: Language,
-        userLevel: Int
+    /**
+     * One turn from the model, or from the local fallback when the client is not configured or
+     * an interactive turn misses [TURN_DEADLINE_MS]
+     */
+    private suspend fun generateTurn(
+        context: ConversationContext,
+        userInput: String,
+        priority: RequestPriority
     ): ConversationResult {
+        val requestKey = "${context.id}|$userInput"
         
-        // Sample greetings by language and level
-        val greetings = when (language) {
-            Language.SPANISH -> when (userLevel) {
-                1 -> Greeting(
-                    "¡Hola! Me llamo $characterName. ¿Cómo te llamas?",
-                    "Hello! My name is $characterName. What's your name?",
-                    listOf(
-                        ResponseOption("1", "Me llamo Ana", "My name is Ana"),
-                        ResponseOption("2", "Hola, soy Carlos", "Hello, I'm Carlos"),
-                        ResponseOption("3", "Mucho gusto", "Nice to meet you")
-                    ),
-                    listOf("'Me llamo' means 'My name is'", "¿Cómo te llamas? is 'What's your name?'")
-                )
-                else -> Greeting(
-                    "¡Buenos días! ¿Cómo está usted hoy?",
-                    "Good morning! How are you today?",
-                    listOf(
-                        ResponseOption("1", "Muy bien, gracias", "Very well, thank you"),
-                        ResponseOption("2", "Bastante bien", "Pretty good"),
-                        ResponseOption("3", "No muy bien", "Not very well")
-                    ),
-                    listOf("'Usted' is the formal 'you'", "Buenos días = Good morning")
-                )
+        // A tap on an option that is still queued as a speculative prefetch moves it up
+        requestScheduler.promote(requestKey, priority)
+        
+        // Each turn is pitched at the learner's current estimate rather than the level they started with
+        context.userLevel = skillModel.level(context.language)
+        
+        if (!geminiClient.isConfigured) {
+            return fallbackEngine.respond(context, userInput)
+        }
+        
+        // Speculative turns have no learner waiting, so they get no deadline or fallback
+        if (priority == RequestPriority.PREFETCH) {
+            return turnRequests.run(requestKey) { modelTurn(context, userInput, priority, requestKey) }
+        }
+        
+        // The deadline wraps the shared call, so a tap that joins a speculative turn still running gets it too
+        val modelResult = try {
+            withTimeoutOrNull(TURN_DEADLINE_MS) {
+                turnRequests.run(requestKey) { modelTurn(context, userInput, priority, requestKey) }
             }
-            
-            Language.FRENCH -> Greeting(
-                "Bonjour! Je m'appelle $characterName. Comment vous appelez-vous?",
-                "Hello! My name is $characterName. What is your name?",
-                listOf(
-                    ResponseOption("1", "Je m'appelle Marie", "My name is Marie"),
-                    ResponseOption("2", "Bonjour, je suis Pierre", "Hello, I am Pierre"),
-                    ResponseOption("3", "Enchanté(e)", "Nice to meet you")
-                ),
-                listOf("'Je m'appelle' means 'My name is'", "Bonjour = Hello/Good morning")
-            )
-            
-            Language.GERMAN -> Greeting(
-                "Guten Tag! Ich heiße $characterName. Wie heißen Sie?",
-                "Good day! My name is $characterName. What is your name?",
-                listOf(
-                    ResponseOption("1", "Ich heiße Anna", "My name is Anna"),
-                    ResponseOption("2", "Hallo, ich bin Max", "Hello, I am Max"),
-                    ResponseOption("3", "Freut mich", "Nice to meet you")
-                ),
-                listOf("'Ich heiße' means 'My name is'", "Guten Tag = Good day")
-            )
-            
-            Language.RUSSIAN -> Greeting(
-                "Привет! Меня зовут $characterName. Как тебя зовут?",
-                "Hello! My name is $characterName. What is your name?",
-                listOf(
-                    ResponseOption("1", "Меня зовут Анна", "My name is Anna"),
-                    ResponseOption("2", "Привет, я Максим", "Hello, I am Maxim"),
-                    ResponseOption("3", "Очень приятно", "Very nice to meet you")
-                ),
-                listOf("'Меня зовут' means 'My name is'", "Привет = Hello (informal)")
-            )
-            
-            Language.JAPANESE -> Greeting(
-                "こんにちは！私の名前は${characterName}です。お名前は何ですか？",
-                "Hello! My name is $characterName. What is your name?",
-                listOf(
-                    ResponseOption("1", "私の名前は田中です", "My name is Tanaka"),
-                    ResponseOption("2", "こんにちは、佐藤です", "Hello, I'm Sato"),
-                    ResponseOption("3", "よろしくお願いします", "Nice to meet you")
-                ),
-                listOf("私の名前は = My name is", "こんにちは = Hello")
-            )
-            
-            Language.CHINESE -> Greeting(
-                "你好！我叫$characterName。你叫什么名字？",
-                "Hello! My name is $characterName. What is your name?",
-                listOf(
-                    ResponseOption("1", "我叫李明", "My name is Li Ming"),
-                    ResponseOption("2", "你好，我是王华", "Hello, I am Wang Hua"),
-                    ResponseOption("3", "很高兴认识你", "Nice to meet you")
-                ),
-                listOf("我叫 = My name is", "你好 = Hello")
-            )
-            
-            Language.ARABIC -> Greeting(
-                "مرحبا! اسمي $characterName. ما اسمك؟",
-                "Hello! My name is $characterName. What is your name?",
-                listOf(
-                    ResponseOption("1", "اسمي أحمد", "My name is Ahmed"),
-                    ResponseOption("2", "مرحبا، أنا فاطمة", "Hello, I am Fatima"),
-                    ResponseOption("3", "تشرفنا", "Nice to meet you")
-                ),
-                listOf("اسمي = My name is", "مرحبا = Hello")
-            )
-            
-            else -> Greeting( // English default
-                "Hello! My name is $characterName. What's your name?",
-                "Hello! My name is $characterName. What's your name?",
-                listOf(
-                    ResponseOption("1", "My name is John", "My name is John"),
-                    ResponseOption("2", "Hi, I'm Sarah", "Hi, I'm Sarah"),
-                    ResponseOption("3", "Nice to meet you", "Nice to meet you")
-                ),
-                listOf("This is a basic greeting", "You can respond with your name")
-            )
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            Log.w(TAG, "Model turn failed, using local fallback", e)
+            null
         }
         
-        return ConversationResult(
-            conversationId = "",
-            characterName = characterName,
-            characterMessage = greetings.message,
-            translation = greetings.translation,
-            responseOptions = greetings.responseOptions,
-            learningTips = greetings.learningTips,
-            difficulty = userLevel
-        )
+        return modelResult ?: run {
+            Log.i(TAG, "Turn for ${context.id} answered by local fallback")
+            fallbackEngine.respond(context, userInput)
+        }
     }
     
-    private fun generateResponse(
+    private suspend fun modelTurn(
         context: ConversationContext,
-        userInput: String
+        userInput: String,
+        priority: RequestPriority,
+        requestKey: String
+    ): ConversationResult {
+        val targetWords = context.vocabulary?.pending(WORDS_PER_TURN).orEmpty()
+        val prompt = promptBuilder.buildTurnPrompt(context, userInput, targetWords)
+        val result = collectTurn(context, prompt, priority, requestKey)
+        
+        // Only the words this turn left out are asked for again, on the same turn
+        val missing = context.vocabulary?.missing(targetWords, result).orEmpty()
+        if (missing.isEmpty() || result.characterMessage.isEmpty()) return result
+        
+        Log.i(TAG, "Turn for ${context.id} missed ${missing.size} required words, repairing")
+        val repairPrompt = promptBuilder.buildRepairPrompt(context, result, missing)
+        val repaired = collectTurn(context, repairPrompt, priority, "$requestKey|repair")
+        return if (repaired.characterMessage.isNotEmpty()) repaired else result
+    }
+    
+    private suspend fun collectTurn(
+        context: ConversationContext,
+        prompt: Prompt,
+        priority: RequestPriority,
+        requestKey: String
     ): ConversationResult {
-        // TODO: Replace with actual Gemini API call
+        val parser = TurnJsonParser()
+        geminiClient.streamGenerateContent(prompt, priority, requestKey).collect { delta ->
+            parser.feed(delta)
+        }
+        parser.finish()
+        return parser.toResult(context)
+    }
+    
+    /**
+     * Records a turn the learner actually saw
+     */
+    private fun commit(context: ConversationContext, userInput: String, result: ConversationResult) {
+        context.addMessage(userInput, result.characterMessage)
+        context.vocabulary?.record(result)
+    }
+    
+    /**
+     * Streams the model's turn, or returns null without emitting anything if no text arrived
+     * within [FIRST_CHUNK_DEADLINE_MS] or the call failed first. Once text is flowing the
+     * model is allowed to finish, since what was shown can't be taken back.
+     */
+    private suspend fun FlowCollector<ConversationChunk>.streamModelTurn(
+        context: ConversationContext,
+        userInput: String
+    ): ConversationResult? {
+        val parser = TurnJsonParser()
+        // Streamed text is already on screen, so words it misses are left for later turns instead of repaired
+        val targetWords = context.vocabulary?.pending(WORDS_PER_TURN).orEmpty()
+        val prompt = promptBuilder.buildTurnPrompt(context, userInput, targetWords)
+        var started = false
+        
+        return try {
+            coroutineScope {
+                val deadline = launch {
+                    delay(FIRST_CHUNK_DEADLINE_MS)
+                    throw FirstChunkDeadlineExceeded()
+                }
+                geminiClient.streamGenerateContent(prompt, RequestPriority.INTERACTIVE).collect { delta ->
+                    if (!started) {
+                        started = true
+                        deadline.cancel()
+                    }
+                    parser.feed(delta).forEach { emit(it) }
+                }
+                deadline.cancel()
+                parser.finish().forEach { emit(it) }
+                parser.toResult(context)
+            }
+        } catch (e: FirstChunkDeadlineExceeded) {
+            Log.i(TAG, "No reply from the model in ${FIRST_CHUNK_DEADLINE_MS}ms, using local fallback")
+            null
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            if (started) throw e
+            Log.w(TAG, "Model stream failed, using local fallback", e)
+            null
+        }
+    }
+    
+    /**
+     * Emits a complete reply in the same order the model would stream it
+     */
+    private suspend fun FlowCollector<ConversationChunk>.emitReplay(result: ConversationResult) {
+        result.characterMessage.split(" ").forEachIndexed { index, word ->
+            emit(ConversationChunk.MessageDelta(if (index == 0) word else " $word"))
+        }
+        emit(ConversationChunk.Translation(result.translation))
+        result.responseOptions.forEach { emit(ConversationChunk.Option(it)) }
+        result.learningTips.forEach { emit(ConversationChunk.LearningTip(it)) }
+    }
+    
+    private class FirstChunkDeadlineExceeded : Exception()
+    
+    private fun TurnJsonParser.toResult(context: ConversationContext): ConversationResult {
         return ConversationResult(
             conversationId = context.id,
             characterName = context.characterName,
-            characterMessage = "¡Muy bien! Me alegra conocerte.",
-            translation = "Very good! I'm happy to meet you.",
-            responseOptions = listOf(
-                ResponseOption("1", "Igualmente", "Likewise"),
-                ResponseOption("2", "¿De dónde eres?", "Where are you from?")
-            ),
-            learningTips = listOf("'Me alegra' means 'I'm happy' or 'it makes me happy'")
+            characterMessage = message.toString().trim(),
+            translation = translation,
+            responseOptions = responseOptions.toList(),
+            learningTips = learningTips.toList(),
+            difficulty = context.userLevel
         )
     }
     
-    private fun generateWordExplanation(
-        word: String,
+    private fun generateConversationId(): String {
+        return "conv_${System.currentTimeMillis()}_${(1000..9999).random()}"
+    }
+    
+    /**
+     * Explanations generated for [words], keyed by the lowercased word. Words the model skipped,
+     * or all of them when the client is not configured or the request failed, are left out.
+     */
+    private suspend fun generateWordExplanations(
+        words: List<String>,
         language: Language,
-        context: String?
-    ): WordExplanation {
-        // TODO: Replace with actual Gemini API call
-        return WordExplanation(
-            word = word,
-            language = language,
-            translation = "sample translation",
-            pronunciation = "sample pronunciation",
-            partOfSpeech = "noun",
-            definition = "A sample definition of the word",
-            examples = listOf("Example sentence 1", "Example sentence 2"),
-            grammarNotes = "Grammar notes about this word",
-            culturalContext = "Cultural context if relevant"
-        )
+        context: String?,
+        priority: RequestPriority
+    ): Map<String, WordExplanation> {
+        if (!geminiClient.isConfigured) return emptyMap()
+        
+        val prompt = buildString {
+            append("Explain each of these ${language.displayName} words for a language learner")
+            if (context != null) append(" as used in \"$context\"")
+            appendLine(".")
+            appendLine("Words: ${words.joinToString(", ")}")
+            appendLine("Return only a JSON array with one object per word, in the same order:")
+            append("[{\"word\": \"\", \"translation\": \"\", \"pronunciation\": \"\", \"partOfSpeech\": \"\", ")
+            append("\"definition\": \"\", \"examples\": [\"\"], \"grammarNotes\": \"\", \"culturalContext\": \"\"}]")
+        }
+        
+        return try {
+            val json = geminiClient.generateContent(prompt, priority)
+                .trim()
+                .removePrefix("```json")
+                .removePrefix("```")
+                .removeSuffix("```")
+            
+            JsonParser.parseString(json).asJsonArray
+                .map { it.asJsonObject.toWordExplanation(language) }
+                .associateBy { it.word.lowercase() }
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to parse batch word explanations", e)
+            emptyMap()
+        }
     }
     
-    private fun generateGrammarExplanation(
-        sentence: String,
-        language: Language
-    ): GrammarExplanation {
-        // TODO: Replace with actual Gemini API call
-        return GrammarExplanation(
-            sentence = sentence,
+    private fun JsonObject.toWordExplanation(language: Language): WordExplanation {
+        fun text(name: String): String? = get(name)?.takeUnless { it.isJsonNull }?.asString
+        
+        return WordExplanation(
+            word = text("word").orEmpty(),
             language = language,
-            explanation = "Grammar explanation for this sentence",
-            grammarRules = listOf("Rule 1", "Rule 2"),
-            examples = listOf("Example 1", "Example 2")
+            translation = text("translation").orEmpty(),
+            pronunciation = text("pronunciation").orEmpty(),
+            partOfSpeech = text("partOfSpeech").orEmpty(),
+            definition = text("definition").orEmpty(),
+            examples = getAsJsonArray("examples")?.map { it.asString } ?: emptyList(),
+            grammarNotes = text("grammarNotes"),
+            culturalContext = text("culturalContext")
         )
     }
     
-    private fun generateResponseEvaluation(
+    private fun localEvaluation(
         userResponse: String,
         expectedResponse: String,
-        language: Language
+        score: EvaluationScore
     ): ResponseEvaluation {
-        // TODO: Replace with actual Gemini API call
-        val similarity = calculateSimpleSimilarity(userResponse, expectedResponse)
+        val isCorrect = score.verdict == Verdict.CORRECT
         
         return ResponseEvaluation(
             userResponse = userResponse,
-            isCorrect = similarity > 0.7f,
-            accuracy = similarity,
-            feedback = if (similarity > 0.7f) "Great job!" else "Good try, but let's practice this more",
-            corrections = if (similarity <= 0.7f) listOf("Try this instead: $expectedResponse") else emptyList(),
+            isCorrect = isCorrect,
+            accuracy = score.similarity,
+            feedback = if (isCorrect) "Great job!" else "Good try, but let's practice this more",
+            corrections = if (!isCorrect) listOf("Try this instead: $expectedResponse") else emptyList(),
             suggestions = listOf("Practice pronunciation", "Focus on verb conjugation")
         )
     }
     
-    private fun calculateSimpleSimilarity(text1: String, text2: String): Float {
-        val words1 = text1.lowercase().split(" ").toSet()
-        val words2 = text2.lowercase().split(" ").toSet()
-        val intersection = words1.intersect(words2).size
-        val union = words1.union(words2).size
-        return if (union > 0) intersection.toFloat() / union else 0f
-    }
-}
-
-/**
- * Helper classes
- */
-private data class ConversationContext(
-    val id: String,
-    val characterName: String,
-    val language: Language,
-    val userLevel: Int,
-    val startTime: Long,
-    val messages: MutableList<ConversationMessage> = mutableListOf()
-) {
-    fun addMessage(userInput: String, characterResponse: String) {
-        messages.add(ConversationMessage(userInput, characterResponse, System.currentTimeMillis()))
+    private suspend fun evaluateWithModel(
+        userResponse: String,
+        expectedResponse: String,
+        language: Language,
+        score: EvaluationScore
+    ): ResponseEvaluation {
+        val prompt = buildString {
+            appendLine("A ${language.displayName} learner was expected to say: \"$expectedResponse\"")
+            appendLine("They said: \"$userResponse\"")
+            appendLine("Judge whether the answer is acceptable in meaning and grammar; ignore accents and punctuation.")
+            appendLine("Return only a JSON object:")
+            append("{\"isCorrect\": true, \"accuracy\": 0.0, \"feedback\": \"\", \"corrections\": [\"\"], ")
+            append("\"suggestions\": [\"\"], \"grammarTips\": [\"\"]}")
+        }
+        
+        return try {
+            val json = geminiClient.generateContent(prompt, RequestPriority.WORD)
+                .trim()
+                .removePrefix("```json")
+                .removePrefix("```")
+                .removeSuffix("```")
+            
+            val result = JsonParser.parseString(json).asJsonObject
+            fun list(name: String): List<String> = result.getAsJsonArray(name)?.map { it.asString } ?: emptyList()
+            
+            ResponseEvaluation(
+                userResponse = userResponse,
+                isCorrect = result.get("isCorrect")?.asBoolean ?: false,
+                accuracy = result.get("accuracy")?.asFloat ?: score.similarity,
+                feedback = result.get("feedback")?.asString.orEmpty(),
+                corrections = list("corrections"),
+                suggestions = list("suggestions"),
+                grammarTips = list("grammarTips")
+            )
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            Log.e(TAG, "Model evaluation failed, using local score", e)
+            localEvaluation(userResponse, expectedResponse, score)
+        }
     }
 }
-
-private data class ConversationMessage(
-    val userInput: String,
-    val characterResponse: String,
-    val timestamp: Long
-)
-
-private data class Greeting(
-    val message: String,
-    val translation: String,
-    val responseOptions: List<ResponseOption>,
-    val learningTips: List<String>
-)
\ No newline at end of file
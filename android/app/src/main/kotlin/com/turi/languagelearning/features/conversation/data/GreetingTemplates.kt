@@ -0,0 +1,208 @@
+package com.turi.languagelearning.features.conversation.data
+
+import com.turi.languagelearning.core.model.Language
+import com.turi.languagelearning.features.conversation.domain.ResponseOption
+
+/**
+ * Opening line of a conversation. Option and tip lists are shared between
+ * conversations and must not be mutated.
+ */
+internal class Greeting(
+    val characterName: String,
+    val characterMessage: String,
+    val translation: String,
+    val responseOptions: List<ResponseOption>,
+    val learningTips: List<String>
+)
+
+/**
+ * Text with [NAME_SLOT] placeholders, split into its constant segments once at load time.
+ */
+internal class NameTemplate(template: String) {
+
+    private val segments = template.split(NAME_SLOT).toTypedArray()
+    private val constantLength = segments.sumOf { it.length }
+
+    fun render(name: String): String {
+        if (segments.size == 1) return segments[0]
+
+        val builder = StringBuilder(constantLength + name.length * (segments.size - 1))
+        builder.append(segments[0])
+        for (i in 1 until segments.size) {
+            builder.append(name).append(segments[i])
+        }
+        return builder.toString()
+    }
+
+    companion object {
+        const val NAME_SLOT = "{name}"
+    }
+}
+
+/**
+ * A preparsed greeting. The last rendering is memoized, since a learner usually
+ * meets the same character several times in a row.
+ */
+internal class GreetingTemplate(
+    message: String,
+    translation: String,
+    private val responseOptions: List<ResponseOption>,
+    private val learningTips: List<String>
+) {
+
+    private val message = NameTemplate(message)
+    private val translation = NameTemplate(translation)
+
+    @Volatile
+    private var last: Greeting? = null
+
+    fun render(characterName: String): Greeting {
+        last?.let { if (it.characterName == characterName) return it }
+
+        return Greeting(
+            characterName = characterName,
+            characterMessage = message.render(characterName),
+            translation = translation.render(characterName),
+            responseOptions = responseOptions,
+            learningTips = learningTips
+        ).also { last = it }
+    }
+}
+
+/**
+ * Greeting registry indexed by [Language.ordinal] and learner level, built once.
+ */
+internal object GreetingTemplates {
+
+    private const val LEVEL_COUNT = 2
+
+    private val templates: Array<Array<GreetingTemplate>> = Language.values()
+        .map { language -> forLanguage(language) }
+        .toTypedArray()
+
+    fun greeting(language: Language, userLevel: Int, characterName: String): Greeting {
+        val level = (userLevel - 1).coerceIn(0, LEVEL_COUNT - 1)
+        return templates[language.ordinal][level].render(characterName)
+    }
+
+    /**
+     * Templates per level; languages with a single greeting use it for every level
+     */
+    private fun forLanguage(language: Language): Array<GreetingTemplate> = when (language) {
+        Language.SPANISH -> arrayOf(
+            GreetingTemplate(
+                "¡Hola! Me llamo {name}. ¿Cómo te llamas?",
+                "Hello! My name is {name}. What's your name?",
+                listOf(
+                    ResponseOption("1", "Me llamo Ana", "My name is Ana"),
+                    ResponseOption("2", "Hola, soy Carlos", "Hello, I'm Carlos"),
+                    ResponseOption("3", "Mucho gusto", "Nice to meet you")
+                ),
+                listOf("'Me llamo' means 'My name is'", "¿Cómo te llamas? is 'What's your name?'")
+            ),
+            GreetingTemplate(
+                "¡Buenos días! ¿Cómo está usted hoy?",
+                "Good morning! How are you today?",
+                listOf(
+                    ResponseOption("1", "Muy bien, gracias", "Very well, thank you"),
+                    ResponseOption("2", "Bastante bien", "Pretty good"),
+                    ResponseOption("3", "No muy bien", "Not very well")
+                ),
+                listOf("'Usted' is the formal 'you'", "Buenos días = Good morning")
+            )
+        )
+
+        Language.FRENCH -> allLevels(
+            GreetingTemplate(
+                "Bonjour! Je m'appelle {name}. Comment vous appelez-vous?",
+                "Hello! My name is {name}. What is your name?",
+                listOf(
+                    ResponseOption("1", "Je m'appelle Marie", "My name is Marie"),
+                    ResponseOption("2", "Bonjour, je suis Pierre", "Hello, I am Pierre"),
+                    ResponseOption("3", "Enchanté(e)", "Nice to meet you")
+                ),
+                listOf("'Je m'appelle' means 'My name is'", "Bonjour = Hello/Good morning")
+            )
+        )
+
+        Language.GERMAN -> allLevels(
+            GreetingTemplate(
+                "Guten Tag! Ich heiße {name}. Wie heißen Sie?",
+                "Good day! My name is {name}. What is your name?",
+                listOf(
+                    ResponseOption("1", "Ich heiße Anna", "My name is Anna"),
+                    ResponseOption("2", "Hallo, ich bin Max", "Hello, I am Max"),
+                    ResponseOption("3", "Freut mich", "Nice to meet you")
+                ),
+                listOf("'Ich heiße' means 'My name is'", "Guten Tag = Good day")
+            )
+        )
+
+        Language.RUSSIAN -> allLevels(
+            GreetingTemplate(
+                "Привет! Меня зовут {name}. Как тебя зовут?",
+                "Hello! My name is {name}. What is your name?",
+                listOf(
+                    ResponseOption("1", "Меня зовут Анна", "My name is Anna"),
+                    ResponseOption("2", "Привет, я Максим", "Hello, I am Maxim"),
+                    ResponseOption("3", "Очень приятно", "Very nice to meet you")
+                ),
+                listOf("'Меня зовут' means 'My name is'", "Привет = Hello (informal)")
+            )
+        )
+
+        Language.JAPANESE -> allLevels(
+            GreetingTemplate(
+                "こんにちは！私の名前は{name}です。お名前は何ですか？",
+                "Hello! My name is {name}. What is your name?",
+                listOf(
+                    ResponseOption("1", "私の名前は田中です", "My name is Tanaka"),
+                    ResponseOption("2", "こんにちは、佐藤です", "Hello, I'm Sato"),
+                    ResponseOption("3", "よろしくお願いします", "Nice to meet you")
+                ),
+                listOf("私の名前は = My name is", "こんにちは = Hello")
+            )
+        )
+
+        Language.CHINESE -> allLevels(
+            GreetingTemplate(
+                "你好！我叫{name}。你叫什么名字？",
+                "Hello! My name is {name}. What is your name?",
+                listOf(
+                    ResponseOption("1", "我叫李明", "My name is Li Ming"),
+                    ResponseOption("2", "你好，我是王华", "Hello, I am Wang Hua"),
+                    ResponseOption("3", "很高兴认识你", "Nice to meet you")
+                ),
+                listOf("我叫 = My name is", "你好 = Hello")
+            )
+        )
+
+        Language.ARABIC -> allLevels(
+            GreetingTemplate(
+                "مرحبا! اسمي {name}. ما اسمك؟",
+                "Hello! My name is {name}. What is your name?",
+                listOf(
+                    ResponseOption("1", "اسمي أحمد", "My name is Ahmed"),
+                    ResponseOption("2", "مرحبا، أنا فاطمة", "Hello, I am Fatima"),
+                    ResponseOption("3", "تشرفنا", "Nice to meet you")
+                ),
+                listOf("اسمي = My name is", "مرحبا = Hello")
+            )
+        )
+
+        else -> allLevels( // English default
+            GreetingTemplate(
+                "Hello! My name is {name}. What's your name?",
+                "Hello! My name is {name}. What's your name?",
+                listOf(
+                    ResponseOption("1", "My name is John", "My name is John"),
+                    ResponseOption("2", "Hi, I'm Sarah", "Hi, I'm Sarah"),
+                    ResponseOption("3", "Nice to meet you", "Nice to meet you")
+                ),
+                listOf("This is a basic greeting", "You can respond with your name")
+            )
+        )
+    }
+
+    private fun allLevels(template: GreetingTemplate) = Array(LEVEL_COUNT) { template }
+}
@@ -0,0 +1,132 @@
+package com.turi.languagelearning.features.conversation.data
+
+import com.turi.languagelearning.core.util.IncrementalJsonReader
+import com.turi.languagelearning.features.conversation.domain.ConversationChunk
+import com.turi.languagelearning.features.conversation.domain.ResponseOption
+
+/**
+ * Incremental parser for the JSON turn format requested by the turn prompt ([FORMAT]).
+ *
+ * Fields are mapped straight from the [IncrementalJsonReader] events: message text is released
+ * as it arrives, the translation and tips once their string closes, and each option once its
+ * object closes, so options can render while the tips are still streaming.
+ * Not thread-safe, use one instance per turn.
+ */
+internal class TurnJsonParser : IncrementalJsonReader.Handler {
+
+    private val reader = IncrementalJsonReader(this)
+    private val pending = mutableListOf<ConversationChunk>()
+
+    private var depth = 0
+    private var rootKey: String? = null
+    private var optionKey: String? = null
+    private var optionText = ""
+    private var optionTranslation = ""
+    private var emittedMessage = 0
+
+    val message = StringBuilder()
+    var translation = ""
+        private set
+    val responseOptions = mutableListOf<ResponseOption>()
+    val learningTips = mutableListOf<String>()
+
+    fun feed(delta: String): List<ConversationChunk> {
+        reader.feed(delta)
+        return drain()
+    }
+
+    fun finish(): List<ConversationChunk> {
+        reader.finish()
+        return drain()
+    }
+
+    override fun onObjectStart() {
+        depth++
+        if (depth == OPTION_DEPTH && rootKey == KEY_OPTIONS) {
+            optionKey = null
+            optionText = ""
+            optionTranslation = ""
+        }
+    }
+
+    override fun onObjectEnd() {
+        if (depth == OPTION_DEPTH && rootKey == KEY_OPTIONS && optionText.isNotEmpty()) {
+            val option = ResponseOption(
+                id = (responseOptions.size + 1).toString(),
+                text = optionText,
+                translation = optionTranslation
+            )
+            responseOptions.add(option)
+            pending.add(ConversationChunk.Option(option))
+        }
+        depth--
+    }
+
+    override fun onArrayStart() {
+        depth++
+    }
+
+    override fun onArrayEnd() {
+        depth--
+    }
+
+    override fun onKey(key: String) {
+        when (depth) {
+            ROOT_DEPTH -> rootKey = key
+            OPTION_DEPTH -> optionKey = key
+        }
+    }
+
+    override fun onString(value: CharSequence, complete: Boolean) {
+        when (depth) {
+            ROOT_DEPTH -> when (rootKey) {
+                KEY_MESSAGE -> {
+                    if (value.length > emittedMessage) {
+                        val delta = value.substring(emittedMessage)
+                        message.append(delta)
+                        pending.add(ConversationChunk.MessageDelta(delta))
+                    }
+                    emittedMessage = if (complete) 0 else value.length
+                }
+                KEY_TRANSLATION -> if (complete) {
+                    translation = value.toString().trim()
+                    pending.add(ConversationChunk.Translation(translation))
+                }
+            }
+            ROOT_DEPTH + 1 -> if (complete && rootKey == KEY_TIPS) {
+                val tip = value.toString().trim()
+                learningTips.add(tip)
+                pending.add(ConversationChunk.LearningTip(tip))
+            }
+            OPTION_DEPTH -> if (complete && rootKey == KEY_OPTIONS) {
+                when (optionKey) {
+                    KEY_TEXT -> optionText = value.toString().trim()
+                    KEY_TRANSLATION -> optionTranslation = value.toString().trim()
+                }
+            }
+        }
+    }
+
+    private fun drain(): List<ConversationChunk> {
+        if (pending.isEmpty()) return emptyList()
+        return pending.toList().also { pending.clear() }
+    }
+
+    companion object {
+        private const val ROOT_DEPTH = 1
+        private const val OPTION_DEPTH = 3
+
+        private const val KEY_MESSAGE = "message"
+        private const val KEY_TRANSLATION = "translation"
+        private const val KEY_OPTIONS = "options"
+        private const val KEY_TEXT = "text"
+        private const val KEY_TIPS = "tips"
+
+        /**
+         * Output shape given to the model; keys are in streaming order
+         */
+        const val FORMAT = "{\"message\": \"<reply>\", \"translation\": \"<English translation>\", " +
+            "\"options\": [{\"text\": \"<possible learner answer>\", \"translation\": \"<English translation>\"}], " +
+            "\"tips\": [\"<short learning tip>\"]}"
+    }
+}
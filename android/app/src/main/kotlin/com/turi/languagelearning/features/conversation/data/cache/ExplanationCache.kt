@@ -0,0 +1,159 @@
+package com.turi.languagelearning.features.conversation.data.cache
+
+import android.util.Log
+import android.util.LruCache
+import com.google.gson.Gson
+import com.turi.languagelearning.core.model.Language
+import com.turi.languagelearning.data.local.dao.ExplanationCacheDao
+import com.turi.languagelearning.data.local.entity.ExplanationCacheEntity
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import java.text.Normalizer
+import java.util.concurrent.ConcurrentHashMap
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Two-tier cache for AI explanations.
+ *
+ * Tier 1 is an in-memory LRU holding decoded objects within a byte budget, so repeated
+ * taps are a map lookup. Tier 2 is the Room `explanation_cache` table, which survives restarts
+ * and works offline. Entries older than [FRESH_TTL_MS] are still served, but refreshed in the
+ * background (stale-while-revalidate); entries older than [MAX_AGE_MS] are purged.
+ */
+@Singleton
+class ExplanationCache @Inject constructor(
+    private val dao: ExplanationCacheDao
+) {
+
+    private val TAG = "ExplanationCache"
+
+    private val gson = Gson()
+    private val refreshScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val refreshing = ConcurrentHashMap.newKeySet<String>()
+
+    private val memory = object : LruCache<String, MemoryEntry>(MEMORY_BUDGET_BYTES) {
+        override fun sizeOf(key: String, value: MemoryEntry): Int = value.sizeBytes
+    }
+
+    init {
+        refreshScope.launch {
+            dao.deleteOlderThan(System.currentTimeMillis() - MAX_AGE_MS)
+        }
+    }
+
+    /**
+     * Returns the cached value for [key], loading and storing it on a miss.
+     * Stale hits are returned immediately and refreshed through [load] in the background.
+     */
+    suspend fun <T : Any> getOrLoad(key: String, type: Class<T>, load: suspend () -> T): T {
+        val now = System.currentTimeMillis()
+
+        memory.get(key)?.let { entry ->
+            if (now - entry.createdAt > FRESH_TTL_MS) refreshInBackground(key, load)
+            return type.cast(entry.value)!!
+        }
+
+        val stored = try {
+            dao.getEntry(key)
+        } catch (e: Exception) {
+            Log.w(TAG, "Disk cache read failed for $key", e)
+            null
+        }
+
+        if (stored != null) {
+            val value = gson.fromJson(stored.payload, type)
+            memory.put(key, MemoryEntry(value, stored.sizeBytes, stored.createdAt))
+            if (now - stored.createdAt > FRESH_TTL_MS) refreshInBackground(key, load)
+            return value
+        }
+
+        val value = load()
+        store(key, value)
+        return value
+    }
+
+    /**
+     * Returns a cached value without loading, or null on a miss.
+     */
+    suspend fun <T : Any> peek(key: String, type: Class<T>): T? {
+        memory.get(key)?.let { return type.cast(it.value) }
+        val stored = dao.getEntry(key) ?: return null
+        return gson.fromJson(stored.payload, type).also { value ->
+            memory.put(key, MemoryEntry(value, stored.sizeBytes, stored.createdAt))
+        }
+    }
+
+    suspend fun put(key: String, value: Any) {
+        store(key, value)
+    }
+
+    suspend fun clear() {
+        memory.evictAll()
+        dao.deleteAll()
+    }
+
+    private suspend fun store(key: String, value: Any) {
+        val payload = gson.toJson(value)
+        val sizeBytes = payload.length * 2
+        val createdAt = System.currentTimeMillis()
+
+        memory.put(key, MemoryEntry(value, sizeBytes, createdAt))
+        try {
+            dao.insertEntry(ExplanationCacheEntity(key, payload, sizeBytes, createdAt))
+        } catch (e: Exception) {
+            Log.w(TAG, "Disk cache write failed for $key", e)
+        }
+    }
+
+    private fun <T : Any> refreshInBackground(key: String, load: suspend () -> T) {
+        if (!refreshing.add(key)) return
+
+        refreshScope.launch {
+            try {
+                store(key, load())
+                Log.d(TAG, "Refreshed stale entry: $key")
+            } catch (e: Exception) {
+                // Keep serving the stale value, e.g. while offline
+                Log.w(TAG, "Background refresh failed for $key", e)
+            } finally {
+                refreshing.remove(key)
+            }
+        }
+    }
+
+    private class MemoryEntry(
+        val value: Any,
+        val sizeBytes: Int,
+        val createdAt: Long
+    )
+
+    companion object {
+        private const val MEMORY_BUDGET_BYTES = 512 * 1024
+        private const val FRESH_TTL_MS = 7 * 24 * 60 * 60 * 1000L
+        private const val MAX_AGE_MS = 90 * 24 * 60 * 60 * 1000L
+
+        /**
+         * Cache key for a word explanation: the word and context are normalized so
+         * case, accents composition and spacing differences share an entry.
+         */
+        fun wordKey(kind: String, word: String, languageCode: String, context: String? = null): String {
+            val normalizedWord = normalize(word)
+            val contextHash = context?.let { Integer.toHexString(normalize(it).hashCode()) } ?: "-"
+            return "$kind|$languageCode|$normalizedWord|$contextHash"
+        }
+
+        fun wordKey(kind: String, word: String, language: Language, context: String? = null): String =
+            wordKey(kind, word, language.code, context)
+
+        private fun normalize(text: String): String {
+            return Normalizer.normalize(text.trim(), Normalizer.Form.NFC)
+                .lowercase()
+                .replace(WHITESPACE, " ")
+        }
+
+        private val WHITESPACE = Regex("\\s+")
+    }
+}
@@ -0,0 +1,224 @@
+package com.turi.languagelearning.features.conversation.data.evaluation
+
+import java.text.Normalizer
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * On-device scoring of a learner's answer against the expected phrase.
+ *
+ * Both texts are NFKD-normalized and folded (case, accents, Arabic harakat), then split into
+ * tokens per script: words for space-separated scripts, single characters for Han and kana.
+ * The score is a token-alignment edit distance where substituting one token for another costs
+ * their character edit distance, so "grasias" against "gracias" is a near miss rather than a
+ * wrong word. All work happens in per-thread reusable buffers.
+ */
+@Singleton
+class LocalResponseEvaluator @Inject constructor() {
+
+    private val workspaces = ThreadLocal.withInitial { Workspace() }
+
+    fun score(userResponse: String, expectedResponse: String): EvaluationScore {
+        val workspace = workspaces.get()!!
+        val user = workspace.user.apply { tokenize(userResponse) }
+        val expected = workspace.expected.apply { tokenize(expectedResponse) }
+
+        val longest = maxOf(user.tokenCount, expected.tokenCount)
+        if (longest == 0) {
+            return EvaluationScore(1f, Verdict.CORRECT)
+        }
+
+        val distance = workspace.alignmentDistance(user, expected)
+        val similarity = (1f - distance / longest).coerceIn(0f, 1f)
+        val verdict = when {
+            similarity >= ACCEPT_THRESHOLD -> Verdict.CORRECT
+            similarity < REJECT_THRESHOLD -> Verdict.INCORRECT
+            else -> Verdict.AMBIGUOUS
+        }
+        return EvaluationScore(similarity, verdict)
+    }
+
+    /**
+     * Folded text of one side, with tokens stored as [start, end) ranges into [chars]
+     */
+    private class TokenizedText {
+        var chars = CharArray(INITIAL_CHARS)
+        var length = 0
+        var tokenStarts = IntArray(INITIAL_TOKENS)
+        var tokenEnds = IntArray(INITIAL_TOKENS)
+        var tokenCount = 0
+
+        private var openToken = false
+
+        fun tokenize(text: String) {
+            length = 0
+            tokenCount = 0
+            openToken = false
+
+            val decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD)
+            var i = 0
+            while (i < decomposed.length) {
+                val codePoint = decomposed.codePointAt(i)
+                i += Character.charCount(codePoint)
+
+                when {
+                    isMark(codePoint) -> {
+                        // Kana voicing marks change the letter; every other mark is folded away
+                        if (codePoint == KANA_VOICED_MARK || codePoint == KANA_SEMI_VOICED_MARK) {
+                            if (openToken) append(codePoint)
+                        }
+                    }
+                    Character.isLetterOrDigit(codePoint) -> {
+                        if (isCharacterScript(codePoint)) {
+                            closeToken()
+                            openToken()
+                            append(Character.toLowerCase(codePoint))
+                            // Left open so a following voicing mark joins this character
+                        } else {
+                            if (openToken && isCharacterScript(lastCodePoint())) closeToken()
+                            if (!openToken) openToken()
+                            append(Character.toLowerCase(codePoint))
+                        }
+                    }
+                    else -> closeToken()
+                }
+            }
+            closeToken()
+        }
+
+        fun tokenLength(token: Int): Int = tokenEnds[token] - tokenStarts[token]
+
+        private fun openToken() {
+            if (tokenCount == tokenStarts.size) {
+                tokenStarts = tokenStarts.copyOf(tokenCount * 2)
+                tokenEnds = tokenEnds.copyOf(tokenCount * 2)
+            }
+            tokenStarts[tokenCount] = length
+            openToken = true
+        }
+
+        private fun closeToken() {
+            if (!openToken) return
+            tokenEnds[tokenCount++] = length
+            openToken = false
+        }
+
+        private fun append(codePoint: Int) {
+            if (length + 2 > chars.size) chars = chars.copyOf(chars.size * 2)
+            length += Character.toChars(codePoint, chars, length)
+        }
+
+        private fun lastCodePoint(): Int = Character.codePointBefore(chars, length)
+    }
+
+    private class Workspace {
+        val user = TokenizedText()
+        val expected = TokenizedText()
+
+        private var tokenRow = FloatArray(INITIAL_TOKENS + 1)
+        private var previousTokenRow = FloatArray(INITIAL_TOKENS + 1)
+        private var charRow = IntArray(INITIAL_CHARS + 1)
+        private var previousCharRow = IntArray(INITIAL_CHARS + 1)
+
+        /**
+         * Levenshtein distance over tokens; insertions and deletions cost 1,
+         * substitutions cost the normalized character distance of the two tokens.
+         */
+        fun alignmentDistance(a: TokenizedText, b: TokenizedText): Float {
+            if (tokenRow.size <= b.tokenCount) {
+                tokenRow = FloatArray(b.tokenCount + 1)
+                previousTokenRow = FloatArray(b.tokenCount + 1)
+            }
+
+            for (j in 0..b.tokenCount) previousTokenRow[j] = j.toFloat()
+
+            for (i in 1..a.tokenCount) {
+                tokenRow[0] = i.toFloat()
+                for (j in 1..b.tokenCount) {
+                    val substitution = previousTokenRow[j - 1] + substitutionCost(a, i - 1, b, j - 1)
+                    val deletion = previousTokenRow[j] + 1f
+                    val insertion = tokenRow[j - 1] + 1f
+                    tokenRow[j] = minOf(substitution, deletion, insertion)
+                }
+                val swap = previousTokenRow
+                previousTokenRow = tokenRow
+                tokenRow = swap
+            }
+            return previousTokenRow[b.tokenCount]
+        }
+
+        private fun substitutionCost(a: TokenizedText, tokenA: Int, b: TokenizedText, tokenB: Int): Float {
+            val lengthA = a.tokenLength(tokenA)
+            val lengthB = b.tokenLength(tokenB)
+            val startA = a.tokenStarts[tokenA]
+            val startB = b.tokenStarts[tokenB]
+
+            if (lengthA == lengthB) {
+                var equal = true
+                for (k in 0 until lengthA) {
+                    if (a.chars[startA + k] != b.chars[startB + k]) {
+                        equal = false
+                        break
+                    }
+                }
+                if (equal) return 0f
+            }
+
+            if (charRow.size <= lengthB) {
+                charRow = IntArray(lengthB + 1)
+                previousCharRow = IntArray(lengthB + 1)
+            }
+
+            for (j in 0..lengthB) previousCharRow[j] = j
+            for (i in 1..lengthA) {
+                charRow[0] = i
+                val charA = a.chars[startA + i - 1]
+                for (j in 1..lengthB) {
+                    val cost = if (charA == b.chars[startB + j - 1]) 0 else 1
+                    charRow[j] = minOf(previousCharRow[j - 1] + cost, previousCharRow[j] + 1, charRow[j - 1] + 1)
+                }
+                val swap = previousCharRow
+                previousCharRow = charRow
+                charRow = swap
+            }
+            return previousCharRow[lengthB].toFloat() / maxOf(lengthA, lengthB)
+        }
+    }
+
+    companion object {
+        const val ACCEPT_THRESHOLD = 0.85f
+        const val REJECT_THRESHOLD = 0.5f
+
+        private const val INITIAL_CHARS = 128
+        private const val INITIAL_TOKENS = 32
+        private const val KANA_VOICED_MARK = 0x3099
+        private const val KANA_SEMI_VOICED_MARK = 0x309A
+
+        private fun isMark(codePoint: Int): Boolean = when (Character.getType(codePoint)) {
+            Character.NON_SPACING_MARK.toInt(),
+            Character.COMBINING_SPACING_MARK.toInt(),
+            Character.ENCLOSING_MARK.toInt() -> true
+            else -> false
+        }
+
+        /**
+         * Scripts written without spaces, where each character is scored as a token
+         */
+        private fun isCharacterScript(codePoint: Int): Boolean = when (Character.UnicodeScript.of(codePoint)) {
+            Character.UnicodeScript.HAN,
+            Character.UnicodeScript.HIRAGANA,
+            Character.UnicodeScript.KATAKANA -> true
+            else -> false
+        }
+    }
+}
+
+/**
+ * [Verdict.AMBIGUOUS] scores fall between the thresholds and are worth a model's judgement.
+ */
+enum class Verdict { CORRECT, INCORRECT, AMBIGUOUS }
+
+data class EvaluationScore(
+    val similarity: Float,
+    val verdict: Verdict
+)
@@ -0,0 +1,471 @@
+package com.turi.languagelearning.features.conversation.data.fallback
+
+import com.turi.languagelearning.core.model.Language
+import com.turi.languagelearning.features.conversation.domain.ResponseOption
+import java.text.Normalizer
+
+/**
+ * What the learner's message does, as far as simple keyword rules can tell
+ */
+internal enum class ReplyIntent { FAREWELL, THANKS, GREETING, QUESTION, OTHER }
+
+/**
+ * An authored reply. Option and tip lists are shared and must not be mutated.
+ */
+internal class FallbackReply(
+    val message: String,
+    val translation: String,
+    val responseOptions: List<ResponseOption>,
+    val learningTips: List<String>
+)
+
+/**
+ * Keywords that mark an intent, folded the same way as the learner's input
+ */
+private class IntentKeywords(
+    greeting: List<String>,
+    thanks: List<String>,
+    farewell: List<String>
+) {
+    val byIntent: List<Pair<ReplyIntent, List<String>>> = listOf(
+        ReplyIntent.FAREWELL to farewell.map(::fold),
+        ReplyIntent.THANKS to thanks.map(::fold),
+        ReplyIntent.GREETING to greeting.map(::fold)
+    )
+}
+
+/**
+ * Replies per language, level and intent. Each intent has one or more variants so
+ * consecutive fallback turns don't repeat themselves.
+ */
+private class LanguageBank(
+    val keywords: IntentKeywords,
+    val levels: Array<Map<ReplyIntent, List<FallbackReply>>>
+)
+
+/**
+ * Hand-written replies for every [Language], used when the model can't answer in time.
+ * Indexed by [Language.ordinal] and learner level, built once.
+ */
+internal object FallbackPhraseBank {
+
+    private const val LEVEL_COUNT = 2
+
+    private val banks: Array<LanguageBank> = Language.values()
+        .map { language -> forLanguage(language) }
+        .toTypedArray()
+
+    fun intentOf(language: Language, userInput: String): ReplyIntent {
+        val folded = fold(userInput)
+        // Word-separated scripts match whole words only, so "hi" doesn't fire inside "this"
+        val spaced = language != Language.JAPANESE && language != Language.CHINESE
+        val haystack = if (spaced) " ${folded.replace(NON_WORD, " ")} " else folded
+
+        for ((intent, keywords) in banks[language.ordinal].keywords.byIntent) {
+            val matched = keywords.any { keyword -> if (spaced) haystack.contains(" $keyword ") else haystack.contains(keyword) }
+            if (matched) return intent
+        }
+
+        return if (userInput.any { it in QUESTION_MARKS }) ReplyIntent.QUESTION else ReplyIntent.OTHER
+    }
+
+    /**
+     * Reply for [intent], skipping the variant equal to [previousMessage] when there is another
+     */
+    fun reply(language: Language, userLevel: Int, intent: ReplyIntent, previousMessage: String?): FallbackReply {
+        val level = (userLevel - 1).coerceIn(0, LEVEL_COUNT - 1)
+        val variants = banks[language.ordinal].levels[level].getValue(intent)
+        return variants.firstOrNull { it.message != previousMessage } ?: variants.first()
+    }
+
+    private fun forLanguage(language: Language): LanguageBank = when (language) {
+        Language.SPANISH -> LanguageBank(
+            IntentKeywords(
+                greeting = listOf("hola", "buenos días", "buenas tardes", "buenas noches", "buenas", "qué tal"),
+                thanks = listOf("gracias"),
+                farewell = listOf("adiós", "hasta luego", "hasta mañana", "hasta pronto", "chao")
+            ),
+            arrayOf(
+                mapOf(
+                    ReplyIntent.GREETING to listOf(
+                        reply("¡Hola! ¿Qué tal?", "Hi! How are you?",
+                            "Muy bien, gracias" to "Very well, thanks",
+                            "Bien, ¿y tú?" to "Good, and you?",
+                            tip = "'¿Qué tal?' is a casual 'How are you?'")
+                    ),
+                    ReplyIntent.QUESTION to listOf(
+                        reply("Buena pregunta. No estoy seguro. ¿Y tú qué piensas?",
+                            "Good question. I'm not sure. What do you think?",
+                            "Creo que sí" to "I think so",
+                            "No lo sé" to "I don't know",
+                            tip = "'¿Qué piensas?' means 'What do you think?'")
+                    ),
+                    ReplyIntent.THANKS to listOf(
+                        reply("¡De nada!", "You're welcome!",
+                            "¿Hablamos más?" to "Shall we talk more?",
+                            "Hasta luego" to "See you later",
+                            tip = "'De nada' is the usual answer to 'gracias'")
+                    ),
+                    ReplyIntent.FAREWELL to listOf(
+                        reply("¡Hasta luego! Fue un placer hablar contigo.",
+                            "See you later! It was a pleasure talking with you.",
+                            "Adiós" to "Goodbye",
+                            "Hasta mañana" to "See you tomorrow",
+                            tip = "'Hasta luego' = 'See you later'")
+                    ),
+                    ReplyIntent.OTHER to listOf(
+                        reply("¡Qué interesante! Cuéntame más.", "How interesting! Tell me more.",
+                            "Me gusta viajar" to "I like to travel",
+                            "Trabajo mucho" to "I work a lot",
+                            tip = "'Cuéntame' means 'tell me'"),
+                        reply("Entiendo. ¿Y qué te gusta hacer?", "I understand. And what do you like to do?",
+                            "Me gusta leer" to "I like to read",
+                            "Me gusta la música" to "I like music",
+                            tip = "'Me gusta' + infinitive = 'I like to …'")
+                    )
+                ),
+                mapOf(
+                    ReplyIntent.GREETING to listOf(
+                        reply("Buenas. ¿Cómo le va?", "Hello. How is it going for you?",
+                            "Me va muy bien, gracias" to "It's going very well, thank you",
+                            "Bastante bien, ¿y a usted?" to "Quite well, and you?",
+                            tip = "'¿Cómo le va?' is the formal 'How's it going?'")
+                    ),
+                    ReplyIntent.QUESTION to listOf(
+                        reply("Es una buena pregunta. Déjeme pensarlo. ¿Usted qué opina?",
+                            "That's a good question. Let me think about it. What's your opinion?",
+                            "Opino que sí" to "I think so",
+                            "Prefiero no opinar" to "I'd rather not say",
+                            tip = "'Déjeme' is the formal 'let me'")
+                    ),
+                    ReplyIntent.THANKS to listOf(
+                        reply("No hay de qué. Ha sido un placer.", "Don't mention it. It's been a pleasure.",
+                            "Sigamos hablando" to "Let's keep talking",
+                            "Tengo que irme" to "I have to go",
+                            tip = "'No hay de qué' is a polite 'you're welcome'")
+                    ),
+                    ReplyIntent.FAREWELL to listOf(
+                        reply("Que le vaya bien. ¡Hasta la próxima!", "All the best. Until next time!",
+                            "Igualmente" to "Likewise",
+                            "Hasta pronto" to "See you soon",
+                            tip = "'Que le vaya bien' wishes someone well on parting")
+                    ),
+                    ReplyIntent.OTHER to listOf(
+                        reply("Qué interesante. ¿Podría contarme un poco más?",
+                            "How interesting. Could you tell me a bit more?",
+                            "Claro que sí" to "Of course",
+                            "Es una larga historia" to "It's a long story",
+                            tip = "'Podría' (could) makes a request more polite"),
+                        reply("Comprendo. ¿Y a qué se dedica usted?", "I see. And what do you do for a living?",
+                            "Soy profesor" to "I'm a teacher",
+                            "Trabajo en una oficina" to "I work in an office",
+                            tip = "'¿A qué se dedica?' asks about someone's job")
+                    )
+                )
+            )
+        )
+
+        Language.FRENCH -> LanguageBank(
+            IntentKeywords(
+                greeting = listOf("bonjour", "bonsoir", "salut", "coucou"),
+                thanks = listOf("merci"),
+                farewell = listOf("au revoir", "à bientôt", "à demain", "bonne nuit")
+            ),
+            allLevels(
+                greeting = reply("Salut! Ça va?", "Hi! How are you?",
+                    "Ça va bien, merci" to "I'm fine, thanks",
+                    "Pas mal, et toi?" to "Not bad, and you?",
+                    tip = "'Ça va?' is a casual 'How are you?'"),
+                question = reply("Bonne question! Je ne sais pas trop. Et toi, qu'en penses-tu?",
+                    "Good question! I'm not too sure. And you, what do you think?",
+                    "Je pense que oui" to "I think so",
+                    "Je ne sais pas" to "I don't know",
+                    tip = "'Qu'en penses-tu?' means 'What do you think about it?'"),
+                thanks = reply("De rien!", "You're welcome!",
+                    "On continue?" to "Shall we continue?",
+                    "À bientôt" to "See you soon",
+                    tip = "'De rien' is the usual answer to 'merci'"),
+                farewell = reply("Au revoir! C'était un plaisir de parler avec toi.",
+                    "Goodbye! It was a pleasure talking with you.",
+                    "Au revoir" to "Goodbye",
+                    "À demain" to "See you tomorrow",
+                    tip = "'À demain' = 'See you tomorrow'"),
+                other = listOf(
+                    reply("C'est intéressant! Raconte-moi plus.", "That's interesting! Tell me more.",
+                        "J'aime voyager" to "I like to travel",
+                        "Je travaille beaucoup" to "I work a lot",
+                        tip = "'Raconte-moi' means 'tell me'"),
+                    reply("Je comprends. Et qu'est-ce que tu aimes faire?", "I understand. And what do you like to do?",
+                        "J'aime lire" to "I like to read",
+                        "J'aime la musique" to "I like music",
+                        tip = "'J'aime' + infinitive = 'I like to …'")
+                )
+            )
+        )
+
+        Language.GERMAN -> LanguageBank(
+            IntentKeywords(
+                greeting = listOf("hallo", "guten tag", "guten morgen", "guten abend", "servus", "moin"),
+                thanks = listOf("danke"),
+                farewell = listOf("tschüss", "auf wiedersehen", "bis später", "bis morgen", "bis bald")
+            ),
+            allLevels(
+                greeting = reply("Hallo! Wie geht's?", "Hello! How are you?",
+                    "Gut, danke" to "Good, thanks",
+                    "Nicht schlecht, und dir?" to "Not bad, and you?",
+                    tip = "'Wie geht's?' is a casual 'How are you?'"),
+                question = reply("Gute Frage! Das weiß ich nicht genau. Was denkst du?",
+                    "Good question! I don't know exactly. What do you think?",
+                    "Ich glaube schon" to "I think so",
+                    "Ich weiß es nicht" to "I don't know",
+                    tip = "'Was denkst du?' means 'What do you think?'"),
+                thanks = reply("Bitte schön!", "You're welcome!",
+                    "Sprechen wir weiter?" to "Shall we keep talking?",
+                    "Bis später" to "See you later",
+                    tip = "'Bitte schön' is a friendly 'you're welcome'"),
+                farewell = reply("Tschüss! Es war schön, mit dir zu sprechen.", "Bye! It was nice talking with you.",
+                    "Auf Wiedersehen" to "Goodbye",
+                    "Bis morgen" to "See you tomorrow",
+                    tip = "'Tschüss' is informal, 'Auf Wiedersehen' is formal"),
+                other = listOf(
+                    reply("Wie interessant! Erzähl mir mehr.", "How interesting! Tell me more.",
+                        "Ich reise gern" to "I like to travel",
+                        "Ich arbeite viel" to "I work a lot",
+                        tip = "'Erzähl mir' means 'tell me'"),
+                    reply("Verstehe. Und was machst du gern?", "I see. And what do you like to do?",
+                        "Ich lese gern" to "I like to read",
+                        "Ich höre gern Musik" to "I like listening to music",
+                        tip = "A verb with 'gern' means you like doing it")
+                )
+            )
+        )
+
+        Language.RUSSIAN -> LanguageBank(
+            IntentKeywords(
+                greeting = listOf("привет", "здравствуйте", "добрый день", "доброе утро", "добрый вечер"),
+                thanks = listOf("спасибо"),
+                farewell = listOf("пока", "до свидания", "до встречи", "до завтра")
+            ),
+            allLevels(
+                greeting = reply("Привет! Как дела?", "Hi! How are you?",
+                    "Хорошо, спасибо" to "Good, thanks",
+                    "Нормально, а у тебя?" to "Fine, and you?",
+                    tip = "'Как дела?' is a casual 'How are you?'"),
+                question = reply("Хороший вопрос! Я не совсем уверен. А ты как думаешь?",
+                    "Good question! I'm not quite sure. What do you think?",
+                    "Думаю, да" to "I think so",
+                    "Не знаю" to "I don't know",
+                    tip = "'Как думаешь?' means 'What do you think?'"),
+                thanks = reply("Пожалуйста!", "You're welcome!",
+                    "Поговорим ещё?" to "Shall we talk more?",
+                    "До встречи" to "See you",
+                    tip = "'Пожалуйста' means both 'please' and 'you're welcome'"),
+                farewell = reply("Пока! Было приятно поговорить.", "Bye! It was nice to talk.",
+                    "До свидания" to "Goodbye",
+                    "До завтра" to "See you tomorrow",
+                    tip = "'Пока' is informal, 'До свидания' is formal"),
+                other = listOf(
+                    reply("Как интересно! Расскажи ещё.", "How interesting! Tell me more.",
+                        "Я люблю путешествовать" to "I love to travel",
+                        "Я много работаю" to "I work a lot",
+                        tip = "'Расскажи' means 'tell'"),
+                    reply("Понятно. А что ты любишь делать?", "I see. And what do you like to do?",
+                        "Я люблю читать" to "I like to read",
+                        "Я люблю музыку" to "I like music",
+                        tip = "'Я люблю' + infinitive = 'I like to …'")
+                )
+            )
+        )
+
+        Language.JAPANESE -> LanguageBank(
+            IntentKeywords(
+                greeting = listOf("こんにちは", "おはよう", "こんばんは", "はじめまして"),
+                thanks = listOf("ありがとう"),
+                farewell = listOf("さようなら", "またね", "じゃあね", "また明日")
+            ),
+            allLevels(
+                greeting = reply("こんにちは！元気ですか？", "Hello! How are you?",
+                    "はい、元気です" to "Yes, I'm fine",
+                    "まあまあです" to "So-so",
+                    tip = "元気ですか？ = How are you?"),
+                question = reply("いい質問ですね。うーん、よくわかりません。どう思いますか？",
+                    "Good question. Hmm, I'm not sure. What do you think?",
+                    "そう思います" to "I think so",
+                    "わかりません" to "I don't know",
+                    tip = "どう思いますか？ = What do you think?"),
+                thanks = reply("どういたしまして！", "You're welcome!",
+                    "もっと話しましょう" to "Let's talk more",
+                    "またね" to "See you",
+                    tip = "どういたしまして = You're welcome"),
+                farewell = reply("さようなら！話せて楽しかったです。", "Goodbye! It was fun talking.",
+                    "さようなら" to "Goodbye",
+                    "また明日" to "See you tomorrow",
+                    tip = "また明日 = See you tomorrow"),
+                other = listOf(
+                    reply("面白いですね！もっと教えてください。", "That's interesting! Please tell me more.",
+                        "旅行が好きです" to "I like traveling",
+                        "仕事が忙しいです" to "Work is busy",
+                        tip = "教えてください = Please tell me"),
+                    reply("なるほど。趣味は何ですか？", "I see. What are your hobbies?",
+                        "読書が好きです" to "I like reading",
+                        "音楽が好きです" to "I like music",
+                        tip = "趣味 = hobby")
+                )
+            )
+        )
+
+        Language.CHINESE -> LanguageBank(
+            IntentKeywords(
+                greeting = listOf("你好", "您好", "早上好", "晚上好"),
+                thanks = listOf("谢谢"),
+                farewell = listOf("再见", "明天见", "回头见", "拜拜")
+            ),
+            allLevels(
+                greeting = reply("你好！你好吗？", "Hello! How are you?",
+                    "我很好，谢谢" to "I'm fine, thanks",
+                    "还可以，你呢？" to "Not bad, and you?",
+                    tip = "你好吗？ = How are you?"),
+                question = reply("好问题！我不太确定。你觉得呢？", "Good question! I'm not too sure. What do you think?",
+                    "我觉得是" to "I think so",
+                    "我不知道" to "I don't know",
+                    tip = "你觉得呢？ = What do you think?"),
+                thanks = reply("不客气！", "You're welcome!",
+                    "我们再聊聊吧" to "Let's chat some more",
+                    "回头见" to "See you later",
+                    tip = "不客气 = You're welcome"),
+                farewell = reply("再见！很高兴和你聊天。", "Goodbye! It was nice chatting with you.",
+                    "再见" to "Goodbye",
+                    "明天见" to "See you tomorrow",
+                    tip = "明天见 = See you tomorrow"),
+                other = listOf(
+                    reply("真有意思！再多说一点吧。", "How interesting! Tell me a bit more.",
+                        "我喜欢旅行" to "I like traveling",
+                        "我工作很忙" to "I'm busy with work",
+                        tip = "有意思 = interesting"),
+                    reply("明白了。你喜欢做什么？", "I see. What do you like to do?",
+                        "我喜欢看书" to "I like reading",
+                        "我喜欢听音乐" to "I like listening to music",
+                        tip = "我喜欢 + verb = I like to …")
+                )
+            )
+        )
+
+        Language.ARABIC -> LanguageBank(
+            IntentKeywords(
+                greeting = listOf("مرحبا", "أهلا", "السلام عليكم", "صباح الخير", "مساء الخير"),
+                thanks = listOf("شكرا"),
+                farewell = listOf("مع السلامة", "إلى اللقاء", "وداعا")
+            ),
+            allLevels(
+                greeting = reply("أهلاً! كيف حالك؟", "Hi! How are you?",
+                    "بخير، شكراً" to "Fine, thanks",
+                    "الحمد لله، وأنت؟" to "Good, thank God, and you?",
+                    tip = "كيف حالك؟ = How are you?"),
+                question = reply("سؤال جيد! لست متأكداً. ما رأيك أنت؟", "Good question! I'm not sure. What do you think?",
+                    "أعتقد ذلك" to "I think so",
+                    "لا أعرف" to "I don't know",
+                    tip = "ما رأيك؟ = What do you think?"),
+                thanks = reply("عفواً!", "You're welcome!",
+                    "لنتحدث أكثر" to "Let's talk more",
+                    "إلى اللقاء" to "Goodbye",
+                    tip = "عفواً = You're welcome"),
+                farewell = reply("مع السلامة! سعدت بالحديث معك.", "Goodbye! I enjoyed talking with you.",
+                    "مع السلامة" to "Goodbye",
+                    "أراك غداً" to "See you tomorrow",
+                    tip = "مع السلامة = Goodbye (lit. 'with safety')"),
+                other = listOf(
+                    reply("مثير للاهتمام! أخبرني المزيد.", "Interesting! Tell me more.",
+                        "أحب السفر" to "I love traveling",
+                        "أعمل كثيراً" to "I work a lot",
+                        tip = "أخبرني = tell me"),
+                    reply("فهمت. ماذا تحب أن تفعل؟", "I see. What do you like to do?",
+                        "أحب القراءة" to "I love reading",
+                        "أحب الموسيقى" to "I love music",
+                        tip = "أحب = I love / I like")
+                )
+            )
+        )
+
+        else -> LanguageBank( // English default
+            IntentKeywords(
+                greeting = listOf("hello", "hi", "hey", "good morning", "good afternoon", "good evening"),
+                thanks = listOf("thanks", "thank you"),
+                farewell = listOf("bye", "goodbye", "see you")
+            ),
+            allLevels(
+                greeting = reply("Hi there! How are you doing?", "Hi there! How are you doing?",
+                    "I'm doing well, thanks" to "I'm doing well, thanks",
+                    "Not bad, and you?" to "Not bad, and you?",
+                    tip = "'How are you doing?' is a friendly 'How are you?'"),
+                question = reply("Good question! I'm not really sure. What do you think?",
+                    "Good question! I'm not really sure. What do you think?",
+                    "I think so" to "I think so",
+                    "I'm not sure either" to "I'm not sure either",
+                    tip = "'What do you think?' asks for someone's opinion"),
+                thanks = reply("You're welcome!", "You're welcome!",
+                    "Shall we keep talking?" to "Shall we keep talking?",
+                    "See you later" to "See you later",
+                    tip = "'You're welcome' is the usual reply to 'thank you'"),
+                farewell = reply("Goodbye! It was nice talking with you.", "Goodbye! It was nice talking with you.",
+                    "Bye!" to "Bye!",
+                    "See you tomorrow" to "See you tomorrow",
+                    tip = "'See you' is a casual goodbye"),
+                other = listOf(
+                    reply("That's interesting! Tell me more.", "That's interesting! Tell me more.",
+                        "I love to travel" to "I love to travel",
+                        "I work a lot" to "I work a lot",
+                        tip = "'Tell me more' invites someone to keep talking"),
+                    reply("I see. What do you like to do?", "I see. What do you like to do?",
+                        "I like reading" to "I like reading",
+                        "I like music" to "I like music",
+                        tip = "'I like' + verb-ing = things you enjoy")
+                )
+            )
+        )
+    }
+
+    private fun reply(
+        message: String,
+        translation: String,
+        vararg options: Pair<String, String>,
+        tip: String
+    ) = FallbackReply(
+        message = message,
+        translation = translation,
+        responseOptions = options.mapIndexed { index, (text, optionTranslation) ->
+            ResponseOption((index + 1).toString(), text, optionTranslation)
+        },
+        learningTips = listOf(tip)
+    )
+
+    private fun allLevels(
+        greeting: FallbackReply,
+        question: FallbackReply,
+        thanks: FallbackReply,
+        farewell: FallbackReply,
+        other: List<FallbackReply>
+    ): Array<Map<ReplyIntent, List<FallbackReply>>> {
+        val replies = mapOf(
+            ReplyIntent.GREETING to listOf(greeting),
+            ReplyIntent.QUESTION to listOf(question),
+            ReplyIntent.THANKS to listOf(thanks),
+            ReplyIntent.FAREWELL to listOf(farewell),
+            ReplyIntent.OTHER to other
+        )
+        return Array(LEVEL_COUNT) { replies }
+    }
+
+    private const val QUESTION_MARKS = "?¿？؟"
+    private val NON_WORD = Regex("[^\\p{L}\\p{N}]+")
+}
+
+/**
+ * Lowercase with accents and other combining marks removed
+ */
+private fun fold(text: String): String =
+    Normalizer.normalize(text, Normalizer.Form.NFKD)
+        .replace(MARKS, "")
+        .lowercase()
+        .trim()
+
+private val MARKS = Regex("\\p{M}+")
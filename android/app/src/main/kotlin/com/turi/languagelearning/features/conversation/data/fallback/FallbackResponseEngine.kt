@@ -0,0 +1,85 @@
+package com.turi.languagelearning.features.conversation.data.fallback
+
+import com.turi.languagelearning.core.model.Language
+import com.turi.languagelearning.data.local.pack.DialoguePackRepository
+import com.turi.languagelearning.features.conversation.data.ConversationContext
+import com.turi.languagelearning.features.conversation.data.evaluation.LocalResponseEvaluator
+import com.turi.languagelearning.features.conversation.data.evaluation.Verdict
+import com.turi.languagelearning.features.conversation.domain.ConversationGraph
+import com.turi.languagelearning.features.conversation.domain.ConversationResult
+import com.turi.languagelearning.features.conversation.domain.ResponseOption
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Deterministic, on-device replies for turns the model can't answer in time.
+ *
+ * If the learner said one of the options of the authored dialogue pack, the conversation
+ * continues along that flow. Otherwise the reply comes from [FallbackPhraseBank], picked by
+ * language, level and the intent of the learner's message. No I/O beyond the mapped pack,
+ * so a reply takes microseconds.
+ */
+@Singleton
+class FallbackResponseEngine @Inject constructor(
+    private val dialoguePacks: DialoguePackRepository,
+    private val evaluator: LocalResponseEvaluator
+) {
+
+    // One authored graph per language, built on first use
+    private val graphs = Language.values().map { language ->
+        lazy { dialoguePacks.graph(DialoguePackRepository.DEFAULT_CHARACTER_ID, language) }
+    }
+
+    internal fun respond(context: ConversationContext, userInput: String): ConversationResult {
+        val reply = packReply(context.language, userInput)
+            ?: FallbackPhraseBank.reply(
+                language = context.language,
+                userLevel = context.userLevel,
+                intent = FallbackPhraseBank.intentOf(context.language, userInput),
+                previousMessage = context.lastCharacterResponse
+            )
+
+        return ConversationResult(
+            conversationId = context.id,
+            characterName = context.characterName,
+            characterMessage = reply.message,
+            translation = reply.translation,
+            responseOptions = reply.responseOptions,
+            learningTips = reply.learningTips,
+            difficulty = context.userLevel
+        )
+    }
+
+    /**
+     * The pack dialogue that follows the option closest to [userInput], if it is a clear match
+     */
+    private fun packReply(language: Language, userInput: String): FallbackReply? {
+        val graph = graphs[language.ordinal].value ?: return null
+
+        var bestSimilarity = 0f
+        var bestNext = -1
+        for (node in 0 until graph.size) {
+            graph.dialogue(node).options.forEachIndexed { index, option ->
+                val score = evaluator.score(userInput, option.text)
+                if (score.verdict == Verdict.CORRECT && score.similarity > bestSimilarity) {
+                    val next = graph.next(node, index)
+                    if (next >= 0) {
+                        bestSimilarity = score.similarity
+                        bestNext = next
+                    }
+                }
+            }
+        }
+        if (bestNext < 0) return null
+
+        val dialogue = graph.dialogue(bestNext)
+        return FallbackReply(
+            message = dialogue.phrase.text,
+            translation = dialogue.phrase.translation,
+            responseOptions = dialogue.options.map { option ->
+                ResponseOption(option.id, option.text, option.translation, option.isCorrect, dialogue.phrase.difficulty)
+            },
+            learningTips = dialogue.learningPoints
+        )
+    }
+}
@@ -0,0 +1,60 @@
+package com.turi.languagelearning.features.conversation.data.grammar
+
+import com.google.gson.JsonParser
+import com.turi.languagelearning.core.model.Language
+import com.turi.languagelearning.core.network.GeminiApiClient
+import com.turi.languagelearning.core.network.RequestPriority
+import com.turi.languagelearning.features.conversation.domain.GrammarExplanation
+import com.turi.languagelearning.features.conversation.domain.GrammarExplanationGenerator
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Grammar explanations from Gemini.
+ * Throws when the client is not configured, the request fails or the answer can't be parsed,
+ * so nothing but a real explanation ever reaches [GrammarExplanationStore].
+ */
+@Singleton
+class GeminiGrammarExplanationGenerator @Inject constructor(
+    private val geminiClient: GeminiApiClient
+) : GrammarExplanationGenerator {
+
+    override val version: Int = 1
+
+    override suspend fun generate(
+        sentence: String,
+        language: Language,
+        priority: RequestPriority
+    ): GrammarExplanation {
+        check(geminiClient.isConfigured) { "Gemini API key not configured" }
+
+        val prompt = buildString {
+            appendLine("Explain the grammar of this ${language.displayName} sentence for a language learner:")
+            appendLine("\"$sentence\"")
+            appendLine("Return only a JSON object:")
+            append("{\"explanation\": \"\", \"grammarRules\": [\"\"], \"examples\": [\"\"], \"commonMistakes\": [\"\"]}")
+        }
+
+        val json = geminiClient.generateContent(prompt, priority)
+            .trim()
+            .removePrefix("```json")
+            .removePrefix("```")
+            .removeSuffix("```")
+
+        val result = try {
+            JsonParser.parseString(json).asJsonObject
+        } catch (e: Exception) {
+            throw IllegalStateException("Failed to parse grammar explanation", e)
+        }
+        fun list(name: String): List<String> = result.getAsJsonArray(name)?.map { it.asString } ?: emptyList()
+
+        return GrammarExplanation(
+            sentence = sentence,
+            language = language,
+            explanation = result.get("explanation")?.asString.orEmpty(),
+            grammarRules = list("grammarRules"),
+            examples = list("examples"),
+            commonMistakes = list("commonMistakes")
+        )
+    }
+}
@@ -0,0 +1,121 @@
+package com.turi.languagelearning.features.conversation.data.grammar
+
+import android.util.Log
+import com.google.gson.Gson
+import com.turi.languagelearning.core.model.Language
+import com.turi.languagelearning.data.local.dao.GrammarExplanationDao
+import com.turi.languagelearning.data.local.entity.GrammarExplanationEntity
+import com.turi.languagelearning.data.local.pack.DialoguePackRepository
+import com.turi.languagelearning.features.conversation.data.cache.ExplanationCache
+import com.turi.languagelearning.features.conversation.domain.GrammarExplanation
+import com.turi.languagelearning.features.conversation.domain.GrammarExplanationGenerator
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Grammar explanations stored in Room, filled on demand and ahead of time by
+ * [GrammarPregenerationWorker].
+ *
+ * Every row carries the content version it was made for: the dialogue pack checksum combined
+ * with the generator version. Rows from any other version are dropped on first use, so a new
+ * pack or prompt invalidates everything at once. The table is kept under [STORAGE_BUDGET_BYTES]
+ * by evicting the least recently used rows.
+ */
+@Singleton
+class GrammarExplanationStore @Inject constructor(
+    private val dao: GrammarExplanationDao,
+    private val packs: DialoguePackRepository,
+    private val generator: GrammarExplanationGenerator
+) {
+
+    private val TAG = "GrammarExplanationStore"
+
+    private val gson = Gson()
+    private val purgeLock = Mutex()
+    @Volatile
+    private var purged = false
+
+    val contentVersion: Int by lazy { packs.contentVersion * 31 + generator.version }
+
+    suspend fun get(sentence: String, language: Language): GrammarExplanation? {
+        purgeOtherVersions()
+        val key = key(sentence, language)
+
+        val stored = try {
+            dao.getExplanation(key)
+        } catch (e: Exception) {
+            Log.w(TAG, "Grammar store read failed for $key", e)
+            null
+        } ?: return null
+
+        if (stored.contentVersion != contentVersion) return null
+
+        dao.markUsed(key, System.currentTimeMillis())
+        return gson.fromJson(stored.payload, GrammarExplanation::class.java)
+    }
+
+    suspend fun contains(sentence: String, language: Language): Boolean {
+        purgeOtherVersions()
+        return dao.contains(key(sentence, language))
+    }
+
+    suspend fun put(sentence: String, language: Language, explanation: GrammarExplanation) {
+        purgeOtherVersions()
+        val payload = gson.toJson(explanation)
+        val now = System.currentTimeMillis()
+
+        try {
+            dao.insertExplanation(
+                GrammarExplanationEntity(
+                    sentenceKey = key(sentence, language),
+                    payload = payload,
+                    sizeBytes = payload.length * 2,
+                    contentVersion = contentVersion,
+                    createdAt = now,
+                    lastUsedAt = now
+                )
+            )
+            trimToBudget()
+        } catch (e: Exception) {
+            Log.w(TAG, "Grammar store write failed", e)
+        }
+    }
+
+    /**
+     * True once the store has reached its budget; further writes evict older rows
+     */
+    suspend fun isFull(): Boolean = dao.totalSizeBytes() >= STORAGE_BUDGET_BYTES
+
+    private suspend fun trimToBudget() {
+        while (dao.totalSizeBytes() > STORAGE_BUDGET_BYTES) {
+            val oldest = dao.leastRecentlyUsedKeys(EVICTION_BATCH)
+            if (oldest.isEmpty()) return
+            dao.deleteExplanations(oldest)
+        }
+    }
+
+    private suspend fun purgeOtherVersions() {
+        if (purged) return
+        purgeLock.withLock {
+            if (purged) return
+            try {
+                val deleted = dao.deleteOtherVersions(contentVersion)
+                if (deleted > 0) Log.i(TAG, "Dropped $deleted explanations from older content")
+            } catch (e: Exception) {
+                Log.w(TAG, "Grammar store purge failed", e)
+            }
+            purged = true
+        }
+    }
+
+    companion object {
+        const val STORAGE_BUDGET_BYTES = 512 * 1024L
+        private const val EVICTION_BATCH = 8
+        private const val GRAMMAR_KIND = "grammar"
+
+        fun key(sentence: String, language: Language): String =
+            ExplanationCache.wordKey(GRAMMAR_KIND, sentence, language)
+    }
+}
@@ -0,0 +1,157 @@
+package com.turi.languagelearning.features.conversation.data.skill
+
+import android.util.Log
+import com.turi.languagelearning.core.model.Language
+import com.turi.languagelearning.data.local.dao.SkillEstimateDao
+import com.turi.languagelearning.data.local.entity.SkillEstimateEntity
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import javax.inject.Inject
+import javax.inject.Singleton
+import kotlin.math.pow
+import kotlin.math.roundToInt
+
+/**
+ * On-device proficiency estimate per language, used to pick the difficulty of the next turn.
+ *
+ * Each evaluated answer is an Elo game between the learner and content at the learner's
+ * current level: the rating moves by K times the gap between the achieved accuracy and the
+ * expected score. K starts high and decays with experience, so the first answers place a new
+ * learner quickly and later ones act as an exponentially weighted average. Every update is
+ * O(1) and written through to the Room `skill_estimates` table by a single conflated writer,
+ * so the stored row never goes back to an older estimate.
+ */
+@Singleton
+class SkillModel @Inject constructor(
+    private val dao: SkillEstimateDao
+) {
+
+    private val TAG = "SkillModel"
+
+    private val lock = Mutex()
+    private val estimates = arrayOfNulls<Estimate>(Language.values().size)
+    private val unsaved = BooleanArray(Language.values().size)
+    private val writeRequests = Channel<Unit>(Channel.CONFLATED)
+    private val writeScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    init {
+        writeScope.launch {
+            for (request in writeRequests) saveUnsaved()
+        }
+    }
+
+    /**
+     * Current level for [language]. Until the first evaluation, [declaredLevel] seeds the estimate.
+     */
+    suspend fun level(language: Language, declaredLevel: Int? = null): Int {
+        estimates[language.ordinal]?.let { if (it.evaluationCount > 0 || declaredLevel == null) return it.level }
+        return lock.withLock { loadLocked(language, declaredLevel) }.level
+    }
+
+    /**
+     * Folds one evaluation into the estimate and returns the new level.
+     * [accuracy] is the 0..1 score of an answer to content at [contentLevel].
+     */
+    suspend fun record(language: Language, accuracy: Float, contentLevel: Int? = null): Int {
+        var previousLevel = 0
+        val updated = lock.withLock {
+            val current = loadLocked(language, null)
+            previousLevel = current.level
+            val contentRating = ratingOf(contentLevel ?: current.level)
+            val expected = 1.0 / (1.0 + 10.0.pow((contentRating - current.rating) / ELO_SCALE))
+            val k = maxOf(K_MIN, K_START * K_DECAY.pow(current.evaluationCount))
+
+            Estimate(
+                rating = (current.rating + k * (accuracy.coerceIn(0f, 1f) - expected)).coerceIn(MIN_RATING, MAX_RATING),
+                evaluationCount = current.evaluationCount + 1
+            ).also {
+                estimates[language.ordinal] = it
+                unsaved[language.ordinal] = true
+            }
+        }
+        writeRequests.trySend(Unit)
+
+        if (updated.level != previousLevel) Log.i(TAG, "${language.code} level $previousLevel -> ${updated.level}")
+        return updated.level
+    }
+
+    /**
+     * Writes the latest estimate of every language changed since the last save
+     */
+    private suspend fun saveUnsaved() {
+        val now = System.currentTimeMillis()
+        val pending = lock.withLock {
+            Language.values().filter { unsaved[it.ordinal] }.map { language ->
+                unsaved[language.ordinal] = false
+                val estimate = estimates[language.ordinal]!!
+                SkillEstimateEntity(language.code, estimate.rating, estimate.evaluationCount, now)
+            }
+        }
+
+        pending.forEach { entity ->
+            try {
+                dao.insertEstimate(entity)
+            } catch (e: Exception) {
+                Log.w(TAG, "Could not save skill estimate for ${entity.languageCode}", e)
+            }
+        }
+    }
+
+    /**
+     * Cached, stored or seeded estimate. A seed that no evaluation has touched yet
+     * follows the latest [declaredLevel].
+     */
+    private suspend fun loadLocked(language: Language, declaredLevel: Int?): Estimate {
+        val cached = estimates[language.ordinal]
+        if (cached != null && (cached.evaluationCount > 0 || declaredLevel == null)) return cached
+
+        val stored = if (cached == null) {
+            try {
+                dao.getEstimate(language.code)
+            } catch (e: Exception) {
+                Log.w(TAG, "Could not read skill estimate for ${language.code}", e)
+                null
+            }
+        } else {
+            null
+        }
+
+        val estimate = when {
+            stored != null && stored.evaluationCount > 0 -> Estimate(stored.rating, stored.evaluationCount)
+            else -> Estimate(ratingOf(declaredLevel ?: cached?.level ?: MIN_LEVEL), 0)
+        }
+        estimates[language.ordinal] = estimate
+        return estimate
+    }
+
+    private class Estimate(
+        val rating: Double,
+        val evaluationCount: Int
+    ) {
+        val level: Int = levelOf(rating)
+    }
+
+    companion object {
+        const val MIN_LEVEL = 1
+        const val MAX_LEVEL = 5
+
+        private const val BASE_RATING = 800.0
+        private const val LEVEL_STEP = 200.0
+        private const val MIN_RATING = BASE_RATING - LEVEL_STEP
+        private const val MAX_RATING = BASE_RATING + MAX_LEVEL * LEVEL_STEP
+        private const val ELO_SCALE = 400.0
+        private const val K_START = 96.0
+        private const val K_MIN = 16.0
+        private const val K_DECAY = 0.9
+
+        fun ratingOf(level: Int): Double = BASE_RATING + (level.coerceIn(MIN_LEVEL, MAX_LEVEL) - 1) * LEVEL_STEP
+
+        fun levelOf(rating: Double): Int =
+            ((rating - BASE_RATING) / LEVEL_STEP).roundToInt().plus(1).coerceIn(MIN_LEVEL, MAX_LEVEL)
+    }
+}
@@ -0,0 +1,29 @@
+package com.turi.languagelearning.features.conversation.data.vocabulary
+
+import android.util.Log
+import com.turi.languagelearning.core.model.Language
+import com.turi.languagelearning.core.network.SupabaseClient
+import com.turi.languagelearning.features.conversation.domain.VocabularySource
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Quiz words of a dialogue from the Supabase `words_quiz` table
+ */
+@Singleton
+class SupabaseVocabularySource @Inject constructor(
+    private val supabase: SupabaseClient
+) : VocabularySource {
+
+    private val TAG = "SupabaseVocabularySource"
+
+    override suspend fun requiredWords(dialogueId: Int, language: Language): List<String> {
+        return supabase.getQuizWords(dialogueId).fold(
+            onSuccess = { words -> words.mapNotNull { it.text(language)?.takeIf(String::isNotBlank) } },
+            onFailure = { e ->
+                Log.w(TAG, "Could not load quiz words for dialogue $dialogueId", e)
+                emptyList()
+            }
+        )
+    }
+}
@@ -0,0 +1,63 @@
+package com.turi.languagelearning.features.conversation.data.vocabulary
+
+import com.turi.languagelearning.features.conversation.domain.ConversationResult
+
+/**
+ * Which of a dialogue's required words the conversation has used so far.
+ * A turn counts its character message and every response option, scanned in one pass each.
+ */
+class VocabularyCoverage(private val matcher: VocabularyMatcher) {
+
+    private val lock = Any()
+    private val covered = BooleanArray(matcher.size)
+    private var coveredCount = 0
+
+    val isComplete: Boolean
+        get() = synchronized(lock) { coveredCount == matcher.size }
+
+    /**
+     * Up to [limit] words the conversation still has to use
+     */
+    fun pending(limit: Int): List<String> = synchronized(lock) {
+        val words = mutableListOf<String>()
+        for (i in covered.indices) {
+            if (words.size == limit) break
+            if (!covered[i]) words.add(matcher.words[i])
+        }
+        words
+    }
+
+    /**
+     * Those of [targets] that [result] doesn't use
+     */
+    fun missing(targets: List<String>, result: ConversationResult): List<String> {
+        if (targets.isEmpty()) return targets
+        val found = scan(result)
+        return targets.filter { target ->
+            val index = matcher.words.indexOf(target)
+            index >= 0 && !found[index]
+        }
+    }
+
+    /**
+     * Counts the words used by a turn the learner actually saw
+     */
+    fun record(result: ConversationResult) {
+        val found = scan(result)
+        synchronized(lock) {
+            for (i in found.indices) {
+                if (found[i] && !covered[i]) {
+                    covered[i] = true
+                    coveredCount++
+                }
+            }
+        }
+    }
+
+    private fun scan(result: ConversationResult): BooleanArray {
+        val found = BooleanArray(matcher.size)
+        matcher.scan(result.characterMessage, found)
+        result.responseOptions.forEach { matcher.scan(it.text, found) }
+        return found
+    }
+}
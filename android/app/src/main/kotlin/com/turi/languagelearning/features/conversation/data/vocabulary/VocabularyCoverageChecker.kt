@@ -0,0 +1,32 @@
+package com.turi.languagelearning.features.conversation.data.vocabulary
+
+import com.turi.languagelearning.core.model.Language
+import com.turi.languagelearning.features.conversation.domain.VocabularySource
+import java.util.concurrent.ConcurrentHashMap
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Compiles each dialogue's required words into a [VocabularyMatcher] once and hands out
+ * fresh [VocabularyCoverage] for every conversation on that dialogue.
+ */
+@Singleton
+class VocabularyCoverageChecker @Inject constructor(
+    private val source: VocabularySource
+) {
+
+    private val matchers = ConcurrentHashMap<String, VocabularyMatcher>()
+
+    /**
+     * Null when the dialogue has no required words
+     */
+    suspend fun coverageFor(dialogueId: Int, language: Language): VocabularyCoverage? {
+        val key = "${language.code}|$dialogueId"
+        val matcher = matchers[key] ?: run {
+            val words = source.requiredWords(dialogueId, language)
+            if (words.isEmpty()) return null
+            VocabularyMatcher.compile(language, words).also { matchers[key] = it }
+        }
+        return if (matcher.size > 0) VocabularyCoverage(matcher) else null
+    }
+}
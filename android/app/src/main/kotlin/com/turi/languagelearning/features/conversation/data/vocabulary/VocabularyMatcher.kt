@@ -0,0 +1,244 @@
+package com.turi.languagelearning.features.conversation.data.vocabulary
+
+import com.turi.languagelearning.core.model.Language
+import java.text.Normalizer
+
+/**
+ * Aho–Corasick automaton over a dialogue's required words.
+ *
+ * Words and scanned text go through the same per-language folding (case, accents, Arabic
+ * letter variants, German ß, punctuation), so one pass over a text finds every required word
+ * it contains however many there are. Words match whole-word, except in Japanese and Chinese,
+ * which are written without spaces, and Arabic words may carry an attached article or
+ * conjunction. Immutable and safe to share once compiled.
+ */
+class VocabularyMatcher private constructor(
+    val language: Language,
+    val words: List<String>,
+    private val edges: EdgeTable,
+    private val fail: IntArray,
+    private val depth: IntArray,
+    private val wordAt: IntArray,
+    private val nextOutput: IntArray
+) {
+
+    private val wholeWords = language != Language.JAPANESE && language != Language.CHINESE
+
+    val size: Int
+        get() = words.size
+
+    /**
+     * Marks every word found in [text] in [found], indexed like [words]; returns how many were newly marked.
+     */
+    fun scan(text: CharSequence, found: BooleanArray): Int {
+        val folded = fold(text, language)
+        var newlyFound = 0
+        var node = ROOT
+
+        for (i in folded.indices) {
+            val char = folded[i]
+            var next = edges.get(node, char)
+            while (next < 0 && node != ROOT) {
+                node = fail[node]
+                next = edges.get(node, char)
+            }
+            node = if (next < 0) ROOT else next
+
+            var output = if (wordAt[node] >= 0) node else nextOutput[node]
+            while (output >= 0) {
+                val word = wordAt[output]
+                if (!found[word] && (!wholeWords || isWholeWord(folded, i + 1 - depth[output], i))) {
+                    found[word] = true
+                    newlyFound++
+                }
+                output = nextOutput[output]
+            }
+        }
+        return newlyFound
+    }
+
+    private fun isWholeWord(text: CharArray, start: Int, end: Int): Boolean {
+        if (end != text.size - 1 && text[end + 1] != ' ') return false
+        if (start == 0 || text[start - 1] == ' ') return true
+        if (language != Language.ARABIC) return false
+
+        var wordStart = start
+        while (wordStart > 0 && text[wordStart - 1] != ' ') wordStart--
+        return start - wordStart <= MAX_PREFIX_LENGTH && String(text, wordStart, start - wordStart) in ARABIC_PREFIXES
+    }
+
+    /**
+     * Open-addressed map from (node, char) to child node
+     */
+    private class EdgeTable(capacity: Int) {
+        private var keys = LongArray(tableSize(capacity)) { EMPTY }
+        private var values = IntArray(keys.size)
+        private var count = 0
+
+        fun get(node: Int, char: Char): Int {
+            val key = key(node, char)
+            var slot = slotOf(key)
+            while (true) {
+                val stored = keys[slot]
+                if (stored == EMPTY) return -1
+                if (stored == key) return values[slot]
+                slot = (slot + 1) and (keys.size - 1)
+            }
+        }
+
+        fun put(node: Int, char: Char, child: Int) {
+            if ((count + 1) * 2 > keys.size) grow()
+            val key = key(node, char)
+            var slot = slotOf(key)
+            while (keys[slot] != EMPTY && keys[slot] != key) slot = (slot + 1) and (keys.size - 1)
+            if (keys[slot] == EMPTY) count++
+            keys[slot] = key
+            values[slot] = child
+        }
+
+        private fun grow() {
+            val oldKeys = keys
+            val oldValues = values
+            keys = LongArray(oldKeys.size * 2) { EMPTY }
+            values = IntArray(keys.size)
+            for (i in oldKeys.indices) {
+                if (oldKeys[i] == EMPTY) continue
+                var slot = slotOf(oldKeys[i])
+                while (keys[slot] != EMPTY) slot = (slot + 1) and (keys.size - 1)
+                keys[slot] = oldKeys[i]
+                values[slot] = oldValues[i]
+            }
+        }
+
+        private fun slotOf(key: Long): Int = ((key * HASH_MULTIPLIER) ushr 32).toInt() and (keys.size - 1)
+
+        private companion object {
+            const val EMPTY = -1L
+            const val HASH_MULTIPLIER = -7046029254386353131L
+
+            fun key(node: Int, char: Char): Long = (node.toLong() shl 16) or char.code.toLong()
+
+            fun tableSize(capacity: Int): Int = Integer.highestOneBit(maxOf(capacity * 2, 8) - 1) shl 1
+        }
+    }
+
+    companion object {
+        private const val ROOT = 0
+        private const val KANA_VOICED_MARK = 0x3099
+        private const val KANA_SEMI_VOICED_MARK = 0x309A
+
+        // Article, conjunctions and prepositions written as part of the next word
+        private val ARABIC_PREFIXES = setOf("ال", "و", "ف", "ب", "ل", "ك", "وال", "فال", "بال", "كال", "لل", "ولل")
+        private const val MAX_PREFIX_LENGTH = 3
+
+        fun compile(language: Language, words: Collection<String>): VocabularyMatcher {
+            val kept = mutableListOf<String>()
+            val patterns = mutableListOf<CharArray>()
+            val seen = HashSet<String>()
+            words.forEach { word ->
+                val folded = fold(word, language)
+                if (folded.isNotEmpty() && seen.add(String(folded))) {
+                    kept.add(word.trim())
+                    patterns.add(folded)
+                }
+            }
+
+            val capacity = patterns.sumOf { it.size } + 1
+            val edges = EdgeTable(capacity)
+            val depth = IntArray(capacity)
+            val wordAt = IntArray(capacity) { -1 }
+            val children = ArrayList<MutableList<Pair<Char, Int>>>(capacity).apply { add(mutableListOf()) }
+
+            // Trie
+            var nodes = 1
+            patterns.forEachIndexed { index, pattern ->
+                var node = ROOT
+                for (char in pattern) {
+                    var child = edges.get(node, char)
+                    if (child < 0) {
+                        child = nodes++
+                        edges.put(node, char, child)
+                        depth[child] = depth[node] + 1
+                        children[node].add(char to child)
+                        children.add(mutableListOf())
+                    }
+                    node = child
+                }
+                wordAt[node] = index
+            }
+
+            // Failure and output links, breadth-first so parents are done before children
+            val fail = IntArray(nodes)
+            val nextOutput = IntArray(nodes) { -1 }
+            val queue = ArrayDeque<Int>()
+            children[ROOT].forEach { (_, child) -> queue.addLast(child) }
+            while (queue.isNotEmpty()) {
+                val node = queue.removeFirst()
+                for ((char, child) in children[node]) {
+                    var candidate = fail[node]
+                    var target = edges.get(candidate, char)
+                    while (target < 0 && candidate != ROOT) {
+                        candidate = fail[candidate]
+                        target = edges.get(candidate, char)
+                    }
+                    fail[child] = if (target < 0 || target == child) ROOT else target
+                    val suffix = fail[child]
+                    nextOutput[child] = if (wordAt[suffix] >= 0) suffix else nextOutput[suffix]
+                    queue.addLast(child)
+                }
+            }
+
+            return VocabularyMatcher(language, kept, edges, fail, depth.copyOf(nodes), wordAt.copyOf(nodes), nextOutput)
+        }
+
+        /**
+         * Lower-case letters and digits of [text] with single spaces between words;
+         * accents and harakat are dropped and letter variants unified per [language].
+         */
+        internal fun fold(text: CharSequence, language: Language): CharArray {
+            val decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD)
+            val out = StringBuilder(decomposed.length)
+            var pendingSpace = false
+            var i = 0
+            while (i < decomposed.length) {
+                val codePoint = decomposed.codePointAt(i)
+                i += Character.charCount(codePoint)
+
+                when {
+                    isMark(codePoint) -> {
+                        // Kana voicing marks change the letter; every other mark is folded away
+                        if (codePoint == KANA_VOICED_MARK || codePoint == KANA_SEMI_VOICED_MARK) out.appendCodePoint(codePoint)
+                    }
+                    Character.isLetterOrDigit(codePoint) -> {
+                        if (pendingSpace && out.isNotEmpty()) out.append(' ')
+                        pendingSpace = false
+                        appendFolded(out, Character.toLowerCase(codePoint), language)
+                    }
+                    else -> pendingSpace = true
+                }
+            }
+            return CharArray(out.length).also { out.getChars(0, out.length, it, 0) }
+        }
+
+        private fun appendFolded(out: StringBuilder, codePoint: Int, language: Language) {
+            when (language) {
+                Language.GERMAN -> if (codePoint == 'ß'.code) out.append("ss") else out.appendCodePoint(codePoint)
+                Language.ARABIC -> when (codePoint) {
+                    0x0640 -> Unit // tatweel
+                    0x0671 -> out.append('ا') // alef wasla
+                    0x0629 -> out.append('ه') // ta marbuta
+                    0x0649 -> out.append('ي') // alef maqsura
+                    else -> out.appendCodePoint(codePoint)
+                }
+                else -> out.appendCodePoint(codePoint)
+            }
+        }
+
+        private fun isMark(codePoint: Int): Boolean = when (Character.getType(codePoint)) {
+            Character.NON_SPACING_MARK.toInt(),
+            Character.COMBINING_SPACING_MARK.toInt(),
+            Character.ENCLOSING_MARK.toInt() -> true
+            else -> false
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.turi.languagelearning.features.conversation.domain
+
+import com.turi.languagelearning.domain.model.ConversationFlow
+import com.turi.languagelearning.domain.model.Dialogue
+import com.turi.languagelearning.domain.model.DialogueOption
+
+/**
+ * Indexed, read-only dialogue graph for walking a [ConversationFlow].
+ *
+ * Dialogues are numbered 0 until [size] and the options are stored as a CSR adjacency list:
+ * the edges of node n are `edgeTargets[edgeOffsets[n] until edgeOffsets[n + 1]]`, in option
+ * order, with -1 for an option that ends the flow. Resolving the next node is an array read,
+ * or one hash lookup when starting from an id. Dialogues come from [loader] and are kept once
+ * loaded, so a packed flow is only decoded for the nodes that are actually visited or preloaded.
+ */
+class ConversationGraph(
+    private val ids: Array<String>,
+    val startNode: Int,
+    private val edgeOffsets: IntArray,
+    private val edgeTargets: IntArray,
+    private val loader: (node: Int) -> Dialogue
+) {
+
+    private val nodeById = HashMap<String, Int>(ids.size * 2).apply {
+        ids.forEachIndexed { node, id -> put(id, node) }
+    }
+    private val dialogues = arrayOfNulls<Dialogue>(ids.size)
+
+    // BFS scratch, reused between walks
+    private var queue = IntArray(ids.size)
+    private val visitedStamp = IntArray(ids.size)
+    private var stamp = 0
+
+    val size: Int
+        get() = ids.size
+
+    /**
+     * Node for a dialogue id, or -1
+     */
+    fun nodeOf(dialogueId: String): Int = nodeById[dialogueId] ?: -1
+
+    fun dialogue(node: Int): Dialogue {
+        dialogues[node]?.let { return it }
+        return loader(node).also { dialogues[node] = it }
+    }
+
+    fun isLoaded(node: Int): Boolean = dialogues[node] != null
+
+    /**
+     * Node reached by the option at [optionIndex] of [node], or -1 when it ends the flow
+     */
+    fun next(node: Int, optionIndex: Int): Int {
+        val edge = edgeOffsets[node] + optionIndex
+        return if (edge < edgeOffsets[node + 1]) edgeTargets[edge] else -1
+    }
+
+    /**
+     * Node reached by [option] of [node]: by position when it is one of the node's options,
+     * otherwise by its [DialogueOption.nextDialogueId].
+     */
+    fun next(node: Int, option: DialogueOption): Int {
+        val index = dialogues[node]?.options?.indexOfFirst { it.id == option.id } ?: -1
+        if (index >= 0) return next(node, index)
+        return option.nextDialogueId?.let(::nodeOf) ?: -1
+    }
+
+    /**
+     * Nodes reachable from [node] within [steps] transitions, nearest first, excluding [node].
+     */
+    @Synchronized
+    fun reachableWithin(node: Int, steps: Int): IntArray {
+        stamp++
+        var head = 0
+        var tail = 0
+        var levelEnd: Int
+        queue[tail++] = node
+        visitedStamp[node] = stamp
+
+        for (depth in 0 until steps) {
+            levelEnd = tail
+            if (head == levelEnd) break
+            while (head < levelEnd) {
+                val current = queue[head++]
+                for (edge in edgeOffsets[current] until edgeOffsets[current + 1]) {
+                    val target = edgeTargets[edge]
+                    if (target < 0 || visitedStamp[target] == stamp) continue
+                    visitedStamp[target] = stamp
+                    queue[tail++] = target
+                }
+            }
+        }
+        return queue.copyOfRange(1, tail)
+    }
+
+    companion object {
+
+        /**
+         * Builds a graph over an already inflated flow
+         */
+        fun fromFlow(flow: ConversationFlow): ConversationGraph {
+            val dialogues = flow.dialogues.values.toList()
+            val ids = Array(dialogues.size) { dialogues[it].id }
+            val nodeById = ids.withIndex().associate { (node, id) -> id to node }
+
+            val edgeOffsets = IntArray(dialogues.size + 1)
+            dialogues.forEachIndexed { node, dialogue ->
+                edgeOffsets[node + 1] = edgeOffsets[node] + dialogue.options.size
+            }
+            val edgeTargets = IntArray(edgeOffsets[dialogues.size])
+            dialogues.forEachIndexed { node, dialogue ->
+                dialogue.options.forEachIndexed { i, option ->
+                    edgeTargets[edgeOffsets[node] + i] = option.nextDialogueId?.let { nodeById[it] } ?: -1
+                }
+            }
+
+            return ConversationGraph(
+                ids = ids,
+                startNode = nodeById[flow.startDialogueId] ?: 0,
+                edgeOffsets = edgeOffsets,
+                edgeTargets = edgeTargets,
+                loader = { node -> dialogues[node] }
+            )
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.turi.languagelearning.features.conversation.domain
 
 import com.turi.languagelearning.core.model.Language
+import kotlinx.coroutines.flow.Flow
 
 /**
  * Clean conversation service for Gemini AI integration
@@ -8,10 +9,13 @@ import com.turi.languagelearning.core.model.Language
 interface ConversationService {
     
     // Conversation Management
+    // With a [dialogueId], replies are steered to use the quiz words of that dialogue.
+    // No caller passes one yet: the dialogue screen is opened by character, not by Supabase dialogue
     suspend fun startConversation(
         characterName: String,
         language: Language,
-        userLevel: Int = 1
+        userLevel: Int = 1,
+        dialogueId: Int? = null
     ): ConversationResult
     
     suspend fun continueConversation(
@@ -20,26 +24,79 @@ interface ConversationService {
         language: Language
     ): ConversationResult
     
+    /**
+     * Streaming variant of [continueConversation].
+     * Emits the character message as it is generated, then the translation,
+     * response options and tips, and finally [ConversationChunk.Complete].
+     */
+    fun continueConversationStream(
+        conversationId: String,
+        userInput: String,
+        language: Language
+    ): Flow<ConversationChunk>
+    
+    /**
+     * Generates the reply to [userInput] without recording the turn.
+     * Used to pre-generate replies to displayed options; pair with [commitTurn].
+     */
+    suspend fun previewTurn(
+        conversationId: String,
+        userInput: String,
+        language: Language
+    ): ConversationResult
+    
+    /**
+     * Records a turn generated by [previewTurn] as if [continueConversation] had produced it.
+     */
+    suspend fun commitTurn(
+        conversationId: String,
+        userInput: String,
+        result: ConversationResult
+    )
+    
     suspend fun endConversation(conversationId: String)
     
     // Word Explanations
+    /**
+     * Explains [word], from cache when possible. Throws if no explanation could be generated,
+     * e.g. offline or without an API key.
+     */
     suspend fun explainWord(
         word: String,
         language: Language,
         context: String? = null
     ): WordExplanation
     
+    /**
+     * Explains several words of the same phrase with a single generation request.
+     * Results are keyed by the words as passed in; words that couldn't be explained are left out.
+     */
+    suspend fun explainWords(
+        words: List<String>,
+        language: Language,
+        context: String? = null
+    ): Map<String, WordExplanation>
+    
     // Grammar Help
+    /**
+     * Explains the grammar of [sentence], from the local store when possible. Throws if no
+     * explanation could be generated.
+     */
     suspend fun explainGrammar(
         sentence: String,
         language: Language
     ): GrammarExplanation
     
     // Progress Evaluation
+    /**
+     * [contentLevel] is the difficulty of the turn being answered, i.e. its
+     * [ConversationResult.difficulty]; the skill estimate weighs the answer against it.
+     */
     suspend fun evaluateResponse(
         userResponse: String,
         expectedResponse: String,
-        language: Language
+        language: Language,
+        contentLevel: Int? = null
     ): ResponseEvaluation
 }
 
@@ -57,6 +114,17 @@ data class ConversationResult(
     val isComplete: Boolean = false
 )
 
+/**
+ * Incremental pieces of a streamed conversation turn
+ */
+sealed class ConversationChunk {
+    data class MessageDelta(val text: String) : ConversationChunk()
+    data class Translation(val text: String) : ConversationChunk()
+    data class Option(val option: ResponseOption) : ConversationChunk()
+    data class LearningTip(val tip: String) : ConversationChunk()
+    data class Complete(val result: ConversationResult) : ConversationChunk()
+}
+
 data class ResponseOption(
     val id: String,
     val text: String,
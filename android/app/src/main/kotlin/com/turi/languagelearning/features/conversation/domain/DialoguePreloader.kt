@@ -0,0 +1,67 @@
+package com.turi.languagelearning.features.conversation.domain
+
+import android.util.Log
+import com.turi.languagelearning.domain.model.Phrase
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.launch
+
+/**
+ * Warms what the learner may need within [depth] steps of the current dialogue.
+ *
+ * Walking the [ConversationGraph] decodes the reachable phrases; then, nearest node first,
+ * [preloadAudio] and [explainWords] run for each phrase. Every [preloadAround] cancels the
+ * previous walk, so work always follows the learner's position. Failures only cost a cache miss.
+ */
+class DialoguePreloader(
+    private val scope: CoroutineScope,
+    private val depth: Int = DEFAULT_DEPTH,
+    private val preloadAudio: (suspend (phrase: Phrase) -> Unit)? = null,
+    private val explainWords: (suspend (words: List<String>, phrase: String) -> Unit)? = null
+) {
+
+    private val TAG = "DialoguePreloader"
+
+    private var job: Job? = null
+
+    fun preloadAround(graph: ConversationGraph, node: Int) {
+        job?.cancel()
+        if (node < 0) return
+
+        job = scope.launch(Dispatchers.Default) {
+            val nodes = graph.reachableWithin(node, depth)
+            val phrases = nodes.map { graph.dialogue(it).phrase }
+
+            for (phrase in phrases) {
+                preload("audio", phrase) { preloadAudio?.invoke(phrase) }
+
+                val words = TappableWords.extract(phrase.text)
+                if (words.isNotEmpty()) {
+                    preload("explanations", phrase) { explainWords?.invoke(words, phrase.text) }
+                }
+            }
+            Log.d(TAG, "Preloaded ${nodes.size} dialogues within $depth steps")
+        }
+    }
+
+    fun cancel() {
+        job?.cancel()
+        job = null
+    }
+
+    private suspend fun preload(what: String, phrase: Phrase, block: suspend () -> Unit) {
+        try {
+            block()
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            Log.d(TAG, "Skipped $what for ${phrase.id}: ${e.message}")
+        }
+    }
+
+    companion object {
+        const val DEFAULT_DEPTH = 2
+    }
+}
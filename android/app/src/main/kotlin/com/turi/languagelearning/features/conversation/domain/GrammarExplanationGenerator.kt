@@ -0,0 +1,21 @@
+package com.turi.languagelearning.features.conversation.domain
+
+import com.turi.languagelearning.core.model.Language
+import com.turi.languagelearning.core.network.RequestPriority
+
+/**
+ * Source of grammar explanations, used on demand and by background pre-generation.
+ */
+interface GrammarExplanationGenerator {
+
+    /**
+     * Bumped whenever the prompt or output format changes, so stored explanations are regenerated
+     */
+    val version: Int
+
+    /**
+     * [priority] is [RequestPriority.WORD] when a learner is waiting, [RequestPriority.PREFETCH] otherwise.
+     * Throws rather than returning stand-in content, since every result may be stored.
+     */
+    suspend fun generate(sentence: String, language: Language, priority: RequestPriority): GrammarExplanation
+}
@@ -0,0 +1,166 @@
+package com.turi.languagelearning.features.conversation.domain
+
+import android.os.SystemClock
+import android.util.Log
+import com.turi.languagelearning.core.model.Language
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.async
+
+/**
+ * Pre-generates the character's reply to every displayed response option.
+ *
+ * [speculate] starts one background branch per option through [ConversationService.previewTurn].
+ * When the learner picks an option, [awaitBranch] returns the matching branch (committing it to the
+ * conversation) and cancels the others, so the next turn is usually a state swap instead of a
+ * model round trip. A branch that is still running is claimed as an interactive turn, so the
+ * learner gets the turn deadline and fallback instead of waiting on a background request. [scope] should be supervised (e.g. viewModelScope) so a failing branch
+ * does not cancel its siblings.
+ */
+class SpeculativeTurnExecutor(
+    private val scope: CoroutineScope,
+    private val conversationService: ConversationService
+) {
+
+    private val TAG = "SpeculativeTurnExecutor"
+
+    private val lock = Any()
+    private var conversationId: String? = null
+    private var language: Language? = null
+    private val branches = mutableMapOf<String, Branch>()
+
+    private var launched = 0
+    private var hits = 0
+    private var misses = 0
+    private var discarded = 0
+    private var wastedMillis = 0L
+
+    /**
+     * Starts background replies for [options], replacing any branches from an earlier turn.
+     */
+    fun speculate(conversationId: String, options: List<String>, language: Language) {
+        synchronized(lock) {
+            discardAllLocked()
+            this.conversationId = conversationId
+            this.language = language
+
+            options.distinct().forEach { userInput ->
+                val deferred = scope.async {
+                    conversationService.previewTurn(conversationId, userInput, language)
+                }
+                branches[userInput] = Branch(deferred, SystemClock.elapsedRealtime())
+                launched++
+            }
+        }
+        Log.d(TAG, "Speculating ${options.size} replies for $conversationId")
+    }
+
+    /**
+     * Returns the pre-generated reply for [userInput] and commits it, or null when no usable
+     * branch exists and the caller has to generate the turn itself. An unfinished branch is claimed
+     * through [ConversationService.continueConversation]. Losing branches are cancelled.
+     */
+    suspend fun awaitBranch(conversationId: String, userInput: String): ConversationResult? {
+        var language: Language? = null
+        val branch = synchronized(lock) {
+            val winner = if (this.conversationId == conversationId) branches.remove(userInput) else null
+            language = this.language
+            discardAllLocked()
+            if (winner == null) misses++
+            winner
+        } ?: return null
+
+        if (!branch.deferred.isCompleted) {
+            return claimRunning(conversationId, userInput, language ?: return null, branch)
+        }
+
+        val result = try {
+            branch.deferred.await()
+        } catch (e: Exception) {
+            if (e is CancellationException && !branch.deferred.isCancelled) throw e
+            Log.w(TAG, "Speculative branch failed, falling back to a direct turn", e)
+            synchronized(lock) { misses++ }
+            return null
+        }
+
+        conversationService.commitTurn(conversationId, userInput, result)
+        synchronized(lock) { hits++ }
+        return result
+    }
+
+    /**
+     * Runs the turn interactively while [branch] is still generating. It shares the branch's
+     * request key, so it joins the running call and promotes it if still queued.
+     */
+    private suspend fun claimRunning(
+        conversationId: String,
+        userInput: String,
+        language: Language,
+        branch: Branch
+    ): ConversationResult {
+        try {
+            val result = conversationService.continueConversation(conversationId, userInput, language)
+            synchronized(lock) { hits++ }
+            return result
+        } finally {
+            branch.deferred.cancel()
+        }
+    }
+
+    fun cancelAll() {
+        synchronized(lock) {
+            discardAllLocked()
+            conversationId = null
+            language = null
+        }
+    }
+
+    fun stats(): SpeculationStats = synchronized(lock) {
+        SpeculationStats(
+            launched = launched,
+            hits = hits,
+            misses = misses,
+            discarded = discarded,
+            wastedMillis = wastedMillis
+        )
+    }
+
+    private fun discardAllLocked() {
+        val now = SystemClock.elapsedRealtime()
+        branches.values.forEach { branch ->
+            // Completed losers cost their full generation time, cancelled ones the time they ran
+            wastedMillis += (branch.completedAt ?: now) - branch.startedAt
+            branch.deferred.cancel()
+            discarded++
+        }
+        branches.clear()
+    }
+
+    private class Branch(
+        val deferred: Deferred<ConversationResult>,
+        val startedAt: Long
+    ) {
+        @Volatile
+        var completedAt: Long? = null
+
+        init {
+            deferred.invokeOnCompletion { completedAt = SystemClock.elapsedRealtime() }
+        }
+    }
+}
+
+/**
+ * Speculation metrics: hit rate shows how often a tap was served from a branch,
+ * [wastedMillis] the generation time spent on replies that were never shown.
+ */
+data class SpeculationStats(
+    val launched: Int,
+    val hits: Int,
+    val misses: Int,
+    val discarded: Int,
+    val wastedMillis: Long
+) {
+    val hitRate: Float
+        get() = if (hits + misses > 0) hits.toFloat() / (hits + misses) else 0f
+}
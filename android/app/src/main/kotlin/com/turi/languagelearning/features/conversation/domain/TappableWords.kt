@@ -0,0 +1,16 @@
+package com.turi.languagelearning.features.conversation.domain
+
+/**
+ * Splits a phrase into the words a learner can tap for an explanation
+ */
+object TappableWords {
+
+    private val WORD = Regex("[\\p{L}\\p{M}]+(?:['’-][\\p{L}\\p{M}]+)*")
+
+    fun extract(text: String): List<String> {
+        return WORD.findAll(text)
+            .map { it.value }
+            .distinctBy { it.lowercase() }
+            .toList()
+    }
+}
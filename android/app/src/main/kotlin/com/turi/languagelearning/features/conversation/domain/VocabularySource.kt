@@ -0,0 +1,14 @@
+package com.turi.languagelearning.features.conversation.domain
+
+import com.turi.languagelearning.core.model.Language
+
+/**
+ * Words a dialogue has to teach, as listed for its quiz.
+ */
+interface VocabularySource {
+
+    /**
+     * Empty when the dialogue has no quiz words or they couldn't be loaded
+     */
+    suspend fun requiredWords(dialogueId: Int, language: Language): List<String>
+}
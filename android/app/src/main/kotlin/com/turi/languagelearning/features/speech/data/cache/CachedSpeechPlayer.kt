@@ -0,0 +1,192 @@
+package com.turi.languagelearning.features.speech.data.cache
+
+import android.content.Context
+import android.net.Uri
+import android.os.Bundle
+import android.os.Handler
+import android.os.Looper
+import android.speech.tts.TextToSpeech
+import android.util.Log
+import androidx.media3.common.MediaItem
+import androidx.media3.common.PlaybackException
+import androidx.media3.common.Player
+import androidx.media3.exoplayer.ExoPlayer
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import kotlinx.coroutines.withTimeoutOrNull
+import java.io.File
+import java.io.IOException
+import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Replays speech from the [SpeechAudioCache] instead of synthesizing it again.
+ *
+ * A text is rendered once with [TextToSpeech.synthesizeToFile], ahead of time or after it was
+ * first spoken by the engine; every replay then goes through one ExoPlayer, so it starts at once
+ * and costs no synthesis.
+ * The owning service forwards its engine's utterance callbacks to [onUtteranceDone] and
+ * [onUtteranceError], which report whether the utterance was one of the renders.
+ */
+class CachedSpeechPlayer(
+    private val context: Context,
+    private val cache: SpeechAudioCache
+) {
+
+    private val TAG = "CachedSpeechPlayer"
+
+    private val renders = ConcurrentHashMap<String, CompletableDeferred<Boolean>>()
+    private val rendering = ConcurrentHashMap<String, CompletableDeferred<File?>>()
+    private val mainHandler = Handler(Looper.getMainLooper())
+
+    // Main thread only
+    private var player: ExoPlayer? = null
+    private var playback: Playback? = null
+
+    @Volatile
+    var isPlaying = false
+        private set
+
+    /**
+     * Cached audio for [text] as [tts] speaks it with its current voice, [rate] and [pitch],
+     * or null on a miss. Never renders.
+     */
+    suspend fun cached(tts: TextToSpeech, text: String, locale: Locale, rate: Float, pitch: Float): File? {
+        val key = SpeechAudioCache.key(text, locale, tts.voice?.name, rate, pitch)
+        // The lookup may index the cache directory and touches the file, keep it off the caller's thread
+        return withContext(Dispatchers.IO) { cache.get(key) }
+    }
+
+    /**
+     * As [cached], but rendered into the cache on a miss. A render already in progress for the
+     * same audio is joined rather than repeated. Null if the engine couldn't render it.
+     */
+    suspend fun audioFor(tts: TextToSpeech, text: String, locale: Locale, rate: Float, pitch: Float): File? {
+        val key = SpeechAudioCache.key(text, locale, tts.voice?.name, rate, pitch)
+        withContext(Dispatchers.IO) { cache.get(key) }?.let { return it }
+
+        val result = CompletableDeferred<File?>()
+        rendering.putIfAbsent(key, result)?.let { return it.await() }
+        try {
+            return render(tts, text, key).also { result.complete(it) }
+        } finally {
+            result.complete(null)
+            rendering.remove(key, result)
+        }
+    }
+
+    private suspend fun render(tts: TextToSpeech, text: String, key: String): File? {
+        return withContext(Dispatchers.IO) {
+            val staged = try {
+                cache.stagingFile(key)
+            } catch (e: IOException) {
+                Log.w(TAG, "No room to render speech", e)
+                return@withContext null
+            }
+            val utteranceId = "$RENDER_PREFIX${key}_${System.nanoTime()}"
+            val done = CompletableDeferred<Boolean>()
+            renders[utteranceId] = done
+
+            var cached: File? = null
+            try {
+                if (tts.synthesizeToFile(text, Bundle(), staged, utteranceId) == TextToSpeech.SUCCESS &&
+                    withTimeoutOrNull(RENDER_TIMEOUT_MS) { done.await() } == true
+                ) {
+                    cached = cache.commit(key, staged)
+                }
+                if (cached == null) Log.w(TAG, "Could not render \"$text\"")
+                cached
+            } finally {
+                renders.remove(utteranceId)
+                if (cached == null) staged.delete()
+            }
+        }
+    }
+
+    /**
+     * Plays [audio], replacing whatever was playing; the replaced playback gets [onInterrupted]
+     */
+    suspend fun play(
+        audio: File,
+        onStart: () -> Unit = {},
+        onComplete: () -> Unit = {},
+        onError: (String) -> Unit = {},
+        onInterrupted: () -> Unit = {}
+    ) = withContext(Dispatchers.Main) {
+        val exoPlayer = player ?: ExoPlayer.Builder(context).build().also {
+            it.addListener(listener)
+            player = it
+        }
+        playback?.onInterrupted?.invoke()
+        playback = Playback(onStart, onComplete, onError, onInterrupted)
+        exoPlayer.setMediaItem(MediaItem.fromUri(Uri.fromFile(audio)))
+        exoPlayer.prepare()
+        exoPlayer.play()
+    }
+
+    fun onUtteranceDone(utteranceId: String?): Boolean =
+        utteranceId != null && renders[utteranceId]?.complete(true) != null
+
+    fun onUtteranceError(utteranceId: String?): Boolean =
+        utteranceId != null && renders[utteranceId]?.complete(false) != null
+
+    fun isRender(utteranceId: String?): Boolean = utteranceId?.startsWith(RENDER_PREFIX) == true
+
+    fun stop() = onMain {
+        playback?.onInterrupted?.invoke()
+        playback = null
+        player?.stop()
+        isPlaying = false
+    }
+
+    fun release() = onMain {
+        playback?.onInterrupted?.invoke()
+        playback = null
+        player?.release()
+        player = null
+        isPlaying = false
+    }
+
+    private val listener = object : Player.Listener {
+        override fun onIsPlayingChanged(isPlaying: Boolean) {
+            this@CachedSpeechPlayer.isPlaying = isPlaying
+            val current = playback ?: return
+            if (isPlaying && !current.started) {
+                current.started = true
+                current.onStart()
+            }
+        }
+
+        override fun onPlaybackStateChanged(playbackState: Int) {
+            if (playbackState != Player.STATE_ENDED) return
+            playback?.onComplete?.invoke()
+            playback = null
+        }
+
+        override fun onPlayerError(error: PlaybackException) {
+            Log.e(TAG, "Cached audio playback failed", error)
+            isPlaying = false
+            playback?.onError?.invoke("Audio playback error")
+            playback = null
+        }
+    }
+
+    private fun onMain(action: () -> Unit) {
+        if (Looper.myLooper() == Looper.getMainLooper()) action() else mainHandler.post(action)
+    }
+
+    private class Playback(
+        val onStart: () -> Unit,
+        val onComplete: () -> Unit,
+        val onError: (String) -> Unit,
+        val onInterrupted: () -> Unit
+    ) {
+        var started = false
+    }
+
+    companion object {
+        private const val RENDER_PREFIX = "render_"
+        private const val RENDER_TIMEOUT_MS = 10_000L
+    }
+}
@@ -0,0 +1,143 @@
+package com.turi.languagelearning.features.speech.data.cache
+
+import android.content.Context
+import android.util.Log
+import dagger.hilt.android.qualifiers.ApplicationContext
+import java.io.File
+import java.security.MessageDigest
+import java.util.Locale
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Disk cache of synthesized utterances.
+ *
+ * Each file holds one rendering of a text with a given locale, voice, rate and pitch, named by
+ * a hash of all five. Files are kept in least-recently-played order within [BUDGET_BYTES]; a hit
+ * touches the file's modification time, so the order survives restarts.
+ */
+@Singleton
+class SpeechAudioCache @Inject constructor(
+    @ApplicationContext context: Context
+) {
+
+    private val TAG = "SpeechAudioCache"
+
+    private val directory = File(context.cacheDir, DIRECTORY_NAME)
+    private val lock = Any()
+
+    // Key to file size, least recently used first
+    private var entries: LinkedHashMap<String, Long>? = null
+    private var totalBytes = 0L
+
+    /**
+     * Cached audio for [key], marked as just used, or null on a miss
+     */
+    fun get(key: String): File? = synchronized(lock) {
+        val index = indexLocked()
+        if (index[key] == null) return null
+
+        val file = fileOf(key)
+        if (!file.exists()) {
+            totalBytes -= index.remove(key) ?: 0L
+            return null
+        }
+        file.setLastModified(System.currentTimeMillis())
+        file
+    }
+
+    /**
+     * A fresh file to render audio for [key] into before handing it to [commit]
+     */
+    fun stagingFile(key: String): File {
+        directory.mkdirs()
+        return File.createTempFile(key, STAGING_SUFFIX, directory)
+    }
+
+    /**
+     * Moves a finished rendering into the cache and trims it back to budget; returns the cached file
+     */
+    fun commit(key: String, staged: File): File? = synchronized(lock) {
+        val index = indexLocked()
+        val file = fileOf(key)
+        if (staged.length() == 0L || !staged.renameTo(file)) {
+            staged.delete()
+            return null
+        }
+
+        totalBytes -= index.remove(key) ?: 0L
+        index[key] = file.length()
+        totalBytes += file.length()
+        trimLocked(keep = key)
+        file
+    }
+
+    /**
+     * False when the device is short of storage, so speculative renders should be skipped
+     */
+    fun hasRoomToPrefetch(): Boolean = directory.parentFile?.usableSpace?.let { it > MIN_FREE_BYTES } ?: false
+
+    fun clear() = synchronized(lock) {
+        directory.listFiles()?.forEach { it.delete() }
+        entries = LinkedHashMap(16, 0.75f, true)
+        totalBytes = 0L
+    }
+
+    private fun trimLocked(keep: String) {
+        val index = indexLocked()
+        val iterator = index.entries.iterator()
+        while (totalBytes > BUDGET_BYTES && iterator.hasNext()) {
+            val (key, size) = iterator.next()
+            if (key == keep) continue
+            fileOf(key).delete()
+            iterator.remove()
+            totalBytes -= size
+        }
+    }
+
+    /**
+     * Built from the directory on first use; leftovers of interrupted renderings are dropped
+     */
+    private fun indexLocked(): LinkedHashMap<String, Long> {
+        entries?.let { return it }
+
+        val index = LinkedHashMap<String, Long>(16, 0.75f, true)
+        totalBytes = 0L
+        directory.listFiles()
+            ?.filter { file ->
+                if (file.name.endsWith(STAGING_SUFFIX)) {
+                    file.delete()
+                    false
+                } else {
+                    file.name.endsWith(AUDIO_SUFFIX)
+                }
+            }
+            ?.sortedBy { it.lastModified() }
+            ?.forEach { file ->
+                index[file.name.removeSuffix(AUDIO_SUFFIX)] = file.length()
+                totalBytes += file.length()
+            }
+        Log.i(TAG, "Indexed ${index.size} cached utterances, $totalBytes bytes")
+
+        entries = index
+        return index
+    }
+
+    private fun fileOf(key: String) = File(directory, "$key$AUDIO_SUFFIX")
+
+    companion object {
+        const val BUDGET_BYTES = 32L * 1024 * 1024
+        const val MIN_FREE_BYTES = 256L * 1024 * 1024
+
+        private const val DIRECTORY_NAME = "tts"
+        private const val AUDIO_SUFFIX = ".wav"
+        private const val STAGING_SUFFIX = ".part"
+        private const val KEY_LENGTH = 40
+
+        fun key(text: String, locale: Locale, voice: String?, rate: Float, pitch: Float): String {
+            val digest = MessageDigest.getInstance("SHA-256")
+                .digest("${locale.toLanguageTag()}|${voice.orEmpty()}|$rate|$pitch|${text.trim()}".toByteArray())
+            return digest.joinToString("") { "%02x".format(it) }.substring(0, KEY_LENGTH)
+        }
+    }
+}
@@ -0,0 +1,673 @@
+package com.turi.languagelearning.features.speech.data.engine
+
+import android.content.Context
+import android.content.Intent
+import android.os.Bundle
+import android.speech.RecognitionListener
+import android.speech.RecognizerIntent
+import android.speech.SpeechRecognizer
+import android.speech.tts.TextToSpeech
+import android.speech.tts.UtteranceProgressListener
+import android.speech.tts.Voice
+import android.util.Log
+import com.turi.languagelearning.features.speech.data.cache.CachedSpeechPlayer
+import com.turi.languagelearning.features.speech.data.cache.SpeechAudioCache
+import com.turi.languagelearning.features.speech.data.utterance.UtteranceManager
+import com.turi.languagelearning.features.speech.data.warmup.TtsCapabilities
+import com.turi.languagelearning.features.speech.data.warmup.TtsWarmup
+import com.turi.languagelearning.features.speech.domain.PreSynthesis
+import com.turi.languagelearning.features.speech.domain.QueuePolicy
+import com.turi.languagelearning.features.speech.domain.SpeechResult
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.ProducerScope
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import java.io.File
+import java.util.Locale
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * The app's one TextToSpeech and one SpeechRecognizer, shared by every speech service.
+ *
+ * All engine state lives in a single actor coroutine on the main thread, which works through a
+ * command channel in order; callers and engine callbacks only send commands, so nothing is shared
+ * between threads but the channel and the published [state]. Utterances are spoken one at a time
+ * from the actor's queue, each on a child job, so a stop or a flush never waits behind playback.
+ * Disk work of the audio cache runs on the IO dispatcher, never on the actor's thread.
+ *
+ * Every front end holds the engines from its [initialize] until its [release]; they are freed
+ * when the last holder lets go, so one service cleaning up doesn't silence the others.
+ */
+@Singleton
+class SpeechEngine @Inject constructor(
+    @ApplicationContext private val context: Context,
+    private val audioCache: SpeechAudioCache,
+    capabilities: TtsCapabilities
+) {
+
+    private val TAG = "SpeechEngine"
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Main.immediate)
+    private val commands = Channel<Command>(Channel.UNLIMITED)
+
+    // Thread-safe helpers, called from the actor, its jobs and the engine's callback threads
+    private val cachedSpeech = CachedSpeechPlayer(context, audioCache)
+    private val warmup = TtsWarmup(capabilities)
+    private val utterances = UtteranceManager()
+
+    private val _state = MutableStateFlow(State())
+    val state: StateFlow<State> = _state.asStateFlow()
+
+    // Actor state: only touched by [handle]
+    private var tts: TextToSpeech? = null
+    private var recognizer: SpeechRecognizer? = null
+    private var engineLocale: Locale? = null
+    private var warmVoices: Map<Locale, Voice?> = emptyMap()
+    private var warmupLocales: Pair<Locale, Locale>? = null
+    private var warmupPending = false
+    private var speechRate = 1.0f
+    private var pitch = 1.0f
+    private val queue = ArrayDeque<Utterance>()
+    private var current: Utterance? = null
+    private val pendingRenders = ArrayDeque<Command.RenderForReplay>()
+    private var rendering = false
+    private var listening: ListenSession? = null
+    private val holders = mutableSetOf<Any>()
+
+    init {
+        scope.launch {
+            for (command in commands) {
+                try {
+                    handle(command)
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    Log.e(TAG, "Speech command failed: $command", e)
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts both engines once and holds them for [holder]; later calls only probe [locales]
+     * not seen yet
+     */
+    fun initialize(holder: Any, locales: Collection<Locale>) {
+        commands.trySend(Command.Initialize(holder, locales.toList()))
+    }
+
+    /**
+     * Loads both voices ahead of the first utterance and leaves the engine on [targetLocale]
+     */
+    fun warmUp(motherLocale: Locale, targetLocale: Locale) {
+        commands.trySend(Command.WarmUp(motherLocale, targetLocale))
+    }
+
+    /**
+     * Queues [text] under [queue] without waiting for it
+     */
+    fun say(
+        text: String,
+        locale: Locale,
+        queue: QueuePolicy = QueuePolicy.FLUSH,
+        onStart: () -> Unit = {}
+    ): Deferred<UtteranceManager.Outcome> {
+        val utterance = Utterance(text, locale, queue, onStart)
+        if (commands.trySend(Command.Speak(utterance)).isFailure) {
+            utterance.result.complete(UtteranceManager.Outcome.FAILED)
+        }
+        return utterance.result
+    }
+
+    /**
+     * Speaks [text] and suspends until it has ended; cancelling the caller stops it
+     */
+    suspend fun speak(
+        text: String,
+        locale: Locale,
+        queue: QueuePolicy = QueuePolicy.ADD,
+        onStart: () -> Unit = {}
+    ): UtteranceManager.Outcome {
+        val utterance = Utterance(text, locale, queue, onStart)
+        commands.send(Command.Speak(utterance))
+        return try {
+            utterance.result.await()
+        } catch (e: CancellationException) {
+            commands.trySend(Command.Cancel(utterance))
+            throw e
+        }
+    }
+
+    /**
+     * Renders [text] into the audio cache without playing it
+     */
+    suspend fun preSynthesize(text: String, locale: Locale): PreSynthesis {
+        val reply = CompletableDeferred<Deferred<PreSynthesis>?>()
+        commands.send(Command.PreSynthesize(text, locale, reply))
+        val render = reply.await() ?: return PreSynthesis.FAILED
+        return try {
+            render.await()
+        } catch (e: CancellationException) {
+            render.cancel()
+            throw e
+        }
+    }
+
+    fun stopSpeaking() {
+        commands.trySend(Command.Stop)
+    }
+
+    fun setSpeechRate(rate: Float) {
+        commands.trySend(Command.SetSpeechRate(rate))
+    }
+
+    fun setPitch(pitch: Float) {
+        commands.trySend(Command.SetPitch(pitch))
+    }
+
+    /**
+     * Recognizes speech in [locale] until the collector stops; starting another session ends this one
+     */
+    fun listen(locale: Locale): Flow<SpeechResult> = callbackFlow {
+        val session = ListenSession(this)
+        commands.send(Command.Listen(session, locale))
+        awaitClose { commands.trySend(Command.EndListening(session)) }
+    }
+
+    /**
+     * Stops listening; with [cancel] the pending result is dropped too
+     */
+    fun stopListening(cancel: Boolean = false) {
+        commands.trySend(Command.StopListening(cancel))
+    }
+
+    /**
+     * Lets go of [holder]'s hold on the engines. Both are freed once nobody holds them, and a
+     * later [initialize] starts them again.
+     */
+    fun release(holder: Any) {
+        commands.trySend(Command.Release(holder))
+    }
+
+    private suspend fun handle(command: Command) {
+        when (command) {
+            is Command.Initialize -> {
+                holders += command.holder
+                initializeEngines(command.locales)
+            }
+            is Command.WarmUp -> {
+                warmupLocales = command.motherLocale to command.targetLocale
+                warmupPending = true
+                warmUpIfIdle()
+            }
+            is Command.Speak -> {
+                if (command.utterance.queue == QueuePolicy.FLUSH) interrupt()
+                queue.addLast(command.utterance)
+                startNext()
+            }
+            is Command.Finished -> if (current === command.utterance) {
+                current = null
+                command.utterance.result.complete(command.outcome)
+                startNext()
+            }
+            is Command.Cancel -> {
+                if (current === command.utterance) {
+                    stopCurrent()
+                    startNext()
+                } else {
+                    queue.remove(command.utterance)
+                }
+            }
+            is Command.PreSynthesize -> command.reply.complete(preSynthesizeJob(command.text, command.locale))
+            is Command.RenderForReplay -> {
+                if (pendingRenders.size == MAX_PENDING_RENDERS) pendingRenders.removeFirst()
+                pendingRenders.addLast(command)
+                renderIfIdle()
+            }
+            Command.ReplayRendered -> {
+                rendering = false
+                renderIfIdle()
+            }
+            Command.Stop -> interrupt()
+            is Command.SetSpeechRate -> speechRate = command.rate.coerceIn(0.1f, 3.0f)
+            is Command.SetPitch -> pitch = command.pitch.coerceIn(0.1f, 2.0f)
+            is Command.Listen -> startListening(command.session, command.locale)
+            is Command.ListeningChanged -> if (listening === command.session) {
+                _state.value = _state.value.copy(isListening = command.isListening)
+            }
+            is Command.StopListening -> {
+                if (command.cancel) recognizer?.cancel() else recognizer?.stopListening()
+                _state.value = _state.value.copy(isListening = false)
+            }
+            is Command.EndListening -> if (listening === command.session) {
+                recognizer?.stopListening()
+                listening = null
+                _state.value = _state.value.copy(isListening = false)
+            }
+            is Command.Release -> if (holders.remove(command.holder) && holders.isEmpty()) releaseEngines()
+        }
+    }
+
+    private suspend fun initializeEngines(locales: List<Locale>) {
+        if (recognizer == null && SpeechRecognizer.isRecognitionAvailable(context)) {
+            recognizer = SpeechRecognizer.createSpeechRecognizer(context)
+            _state.value = _state.value.copy(isRecognitionAvailable = true)
+            Log.i(TAG, "Speech recognition initialized successfully")
+        }
+
+        val textToSpeech = tts ?: createTts() ?: return
+        // Probed in parallel and remembered per engine version
+        val probed = warmup.probe(textToSpeech, locales.filter { it !in _state.value.ttsCapabilities })
+        _state.value = _state.value.copy(ttsCapabilities = _state.value.ttsCapabilities + probed)
+
+        warmUpIfIdle()
+    }
+
+    /**
+     * Binds the engine off the main thread and waits for it; null if it failed to start
+     */
+    private suspend fun createTts(): TextToSpeech? {
+        val initStatus = CompletableDeferred<Int>()
+        val textToSpeech = withContext(Dispatchers.Default) {
+            TextToSpeech(context) { status -> initStatus.complete(status) }
+        }
+
+        if (initStatus.await() != TextToSpeech.SUCCESS) {
+            textToSpeech.shutdown()
+            _state.value = _state.value.copy(error = "TTS initialization failed")
+            Log.e(TAG, "TTS initialization failed")
+            return null
+        }
+
+        textToSpeech.setOnUtteranceProgressListener(utteranceListener)
+        tts = textToSpeech
+        _state.value = _state.value.copy(isTtsReady = true, error = null)
+        Log.i(TAG, "TTS initialized successfully")
+        return textToSpeech
+    }
+
+    /**
+     * Priming selects voices and queues silent utterances, so it waits until nothing is speaking
+     */
+    private suspend fun warmUpIfIdle() {
+        val textToSpeech = tts ?: return
+        val (mother, target) = warmupLocales ?: return
+        if (!warmupPending || current != null) return
+
+        warmupPending = false
+        val voices = warmup.warmUp(textToSpeech, mother, target)
+        warmVoices = warmVoices + voices
+        if (target in voices) setEngineLocale(target)
+    }
+
+    private suspend fun startNext() {
+        while (current == null) {
+            val next = queue.removeFirstOrNull() ?: break
+            val textToSpeech = prepareTts(next.locale)
+            if (textToSpeech == null) {
+                next.result.complete(UtteranceManager.Outcome.FAILED)
+                continue
+            }
+
+            current = next
+            val rate = speechRate
+            val utterancePitch = pitch
+            next.job = scope.launch {
+                val outcome = utter(textToSpeech, next, rate, utterancePitch)
+                commands.send(Command.Finished(next, outcome))
+            }
+        }
+
+        _state.value = _state.value.copy(isSpeaking = current != null)
+        if (current == null) {
+            warmUpIfIdle()
+            renderIfIdle()
+        }
+    }
+
+    /**
+     * Renders run in the engine's own queue, so one only starts while nothing is speaking or
+     * waiting to, and never more than one at a time, to stay out of the way of the next line
+     */
+    private fun renderIfIdle() {
+        while (!rendering && current == null && queue.isEmpty()) {
+            val render = pendingRenders.removeFirstOrNull() ?: return
+            val job = preSynthesizeJob(render.text, render.locale) ?: continue
+            rendering = true
+            job.invokeOnCompletion { commands.trySend(Command.ReplayRendered) }
+        }
+    }
+
+    /**
+     * Runs on its own job, so it reads nothing of the actor's state
+     */
+    private suspend fun utter(
+        textToSpeech: TextToSpeech,
+        utterance: Utterance,
+        rate: Float,
+        pitch: Float
+    ): UtteranceManager.Outcome {
+        // Phrases replay from the audio cache; a miss is spoken at once rather than after a render
+        val audio = cachedSpeech.cached(textToSpeech, utterance.text, utterance.locale, rate, pitch)
+        Log.i(TAG, "Speaking in ${utterance.locale}: ${utterance.text}")
+        if (audio != null) return playCached(audio, utterance.onStart)
+
+        val outcome = utterances.await(utterance.onStart) { utteranceId ->
+            // The engine's queue only holds warm-up primes and renders here, a flush has already cleared the rest
+            val params = Bundle().apply {
+                putString(TextToSpeech.Engine.KEY_PARAM_UTTERANCE_ID, utteranceId)
+            }
+            textToSpeech.speak(utterance.text, TextToSpeech.QUEUE_ADD, params, utteranceId) == TextToSpeech.SUCCESS
+        }
+        // Rendered once it has been heard, so the engine isn't busy with it while it speaks
+        if (outcome == UtteranceManager.Outcome.COMPLETED) {
+            commands.send(Command.RenderForReplay(utterance.text, utterance.locale))
+        }
+        return outcome
+    }
+
+    private suspend fun playCached(audio: File, onStart: () -> Unit): UtteranceManager.Outcome {
+        val outcome = CompletableDeferred<UtteranceManager.Outcome>()
+        cachedSpeech.play(
+            audio,
+            onStart = onStart,
+            onComplete = { outcome.complete(UtteranceManager.Outcome.COMPLETED) },
+            onError = { outcome.complete(UtteranceManager.Outcome.FAILED) },
+            onInterrupted = { outcome.complete(UtteranceManager.Outcome.INTERRUPTED) }
+        )
+        return outcome.await()
+    }
+
+    /**
+     * Null while the engine can't render [text] as it would speak it
+     */
+    private fun preSynthesizeJob(text: String, locale: Locale): Deferred<PreSynthesis>? {
+        // Switching the engine's language here could change the voice of a line being spoken
+        if (engineLocale != locale) return null
+        val textToSpeech = tts ?: return null
+        val rate = speechRate
+        val renderPitch = pitch
+
+        return scope.async {
+            when {
+                !withContext(Dispatchers.IO) { audioCache.hasRoomToPrefetch() } -> PreSynthesis.NO_ROOM
+                // Also null when a stop aborted the render
+                cachedSpeech.audioFor(textToSpeech, text, locale, rate, renderPitch) == null -> PreSynthesis.FAILED
+                else -> PreSynthesis.RENDERED
+            }
+        }
+    }
+
+    /**
+     * The engine set to [locale] with the current rate and pitch, or null if it can't speak it
+     */
+    private fun prepareTts(locale: Locale): TextToSpeech? {
+        val textToSpeech = tts ?: run {
+            Log.w(TAG, "TTS not initialized")
+            return null
+        }
+
+        if (engineLocale != locale) {
+            // A warmed-up voice is already loaded, selecting it is cheap
+            val result = warmVoices[locale]
+                ?.takeIf { textToSpeech.setVoice(it) == TextToSpeech.SUCCESS }
+                ?.let { TextToSpeech.LANG_AVAILABLE }
+                ?: textToSpeech.setLanguage(locale)
+            if (result == TextToSpeech.LANG_MISSING_DATA || result == TextToSpeech.LANG_NOT_SUPPORTED) {
+                Log.e(TAG, "Language not supported: $locale")
+                return null
+            }
+            setEngineLocale(locale)
+        }
+
+        textToSpeech.setSpeechRate(speechRate)
+        textToSpeech.setPitch(pitch)
+        return textToSpeech
+    }
+
+    private fun setEngineLocale(locale: Locale) {
+        engineLocale = locale
+        _state.value = _state.value.copy(ttsLocale = locale)
+    }
+
+    /**
+     * Stops what's speaking and drops what's waiting
+     */
+    private fun interrupt() {
+        queue.forEach { it.result.complete(UtteranceManager.Outcome.INTERRUPTED) }
+        queue.clear()
+        stopCurrent()
+        utterances.interruptAll()
+    }
+
+    private fun stopCurrent() {
+        val utterance = current ?: return
+        current = null
+        utterance.job?.cancel()
+        tts?.stop()
+        cachedSpeech.stop()
+        utterance.result.complete(UtteranceManager.Outcome.INTERRUPTED)
+        _state.value = _state.value.copy(isSpeaking = false)
+    }
+
+    private fun startListening(session: ListenSession, locale: Locale) {
+        val speechRecognizer = recognizer ?: run {
+            session.results.trySend(SpeechResult.Error("Speech recognition not available", -1))
+            session.results.close()
+            return
+        }
+
+        // One recognizer, one session: a new one takes over
+        listening?.let {
+            speechRecognizer.cancel()
+            it.results.close()
+        }
+        listening = session
+        speechRecognizer.setRecognitionListener(RecognitionCallbacks(session))
+
+        val intent = Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH).apply {
+            putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM)
+            putExtra(RecognizerIntent.EXTRA_LANGUAGE, locale.toLanguageTag())
+            putExtra(RecognizerIntent.EXTRA_LANGUAGE_PREFERENCE, locale.toLanguageTag())
+            putExtra(RecognizerIntent.EXTRA_CALLING_PACKAGE, context.packageName)
+            putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, true)
+            putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, 3)
+        }
+
+        try {
+            speechRecognizer.startListening(intent)
+            Log.i(TAG, "Started listening in $locale")
+        } catch (e: Exception) {
+            session.results.trySend(SpeechResult.Error("Failed to start listening: ${e.message}", -1))
+            session.results.close()
+            listening = null
+        }
+    }
+
+    private fun releaseEngines() {
+        interrupt()
+        listening?.results?.close()
+        listening = null
+        pendingRenders.clear()
+        rendering = false
+
+        tts?.shutdown()
+        recognizer?.destroy()
+        cachedSpeech.release()
+        tts = null
+        recognizer = null
+        engineLocale = null
+        warmVoices = emptyMap()
+        warmupPending = warmupLocales != null
+        _state.value = State()
+
+        Log.i(TAG, "Speech engine released")
+    }
+
+    private val utteranceListener = object : UtteranceProgressListener() {
+        override fun onStart(utteranceId: String?) {
+            if (cachedSpeech.isRender(utteranceId) || warmup.isWarmup(utteranceId)) return
+            utterances.onStart(utteranceId)
+        }
+
+        override fun onDone(utteranceId: String?) {
+            if (cachedSpeech.onUtteranceDone(utteranceId) || warmup.isWarmup(utteranceId)) return
+            utterances.onDone(utteranceId)
+        }
+
+        override fun onError(utteranceId: String?) {
+            if (cachedSpeech.onUtteranceError(utteranceId) || warmup.isWarmup(utteranceId)) return
+            utterances.onError(utteranceId)
+            Log.e(TAG, "TTS error: $utteranceId")
+        }
+
+        override fun onStop(utteranceId: String?, interrupted: Boolean) {
+            if (cachedSpeech.onUtteranceError(utteranceId)) return
+            utterances.onStop(utteranceId)
+        }
+    }
+
+    /**
+     * Forwards one session's recognizer callbacks; they arrive on the main thread
+     */
+    private inner class RecognitionCallbacks(private val session: ListenSession) : RecognitionListener {
+        override fun onReadyForSpeech(params: Bundle?) {
+            commands.trySend(Command.ListeningChanged(session, true))
+            session.results.trySend(SpeechResult.Listening)
+        }
+
+        override fun onBeginningOfSpeech() {
+            Log.d(TAG, "Speech input started")
+        }
+
+        override fun onRmsChanged(rmsdB: Float) {
+            // Audio level changed
+        }
+
+        override fun onBufferReceived(buffer: ByteArray?) {
+            // Audio buffer received
+        }
+
+        override fun onEndOfSpeech() {
+            commands.trySend(Command.ListeningChanged(session, false))
+            Log.d(TAG, "Speech input ended")
+        }
+
+        override fun onError(error: Int) {
+            commands.trySend(Command.ListeningChanged(session, false))
+            val errorMessage = speechErrorMessage(error)
+            session.results.trySend(SpeechResult.Error(errorMessage, error))
+            Log.e(TAG, "Speech recognition error: $errorMessage")
+        }
+
+        override fun onResults(results: Bundle?) {
+            commands.trySend(Command.ListeningChanged(session, false))
+            val matches = results?.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION)
+            val confidence = results?.getFloatArray(SpeechRecognizer.CONFIDENCE_SCORES)
+
+            if (!matches.isNullOrEmpty()) {
+                val text = matches[0]
+                val conf = confidence?.getOrNull(0) ?: 0.5f
+                session.results.trySend(SpeechResult.FinalResult(text, conf))
+                Log.i(TAG, "Speech result: $text (confidence: $conf)")
+            }
+        }
+
+        override fun onPartialResults(partialResults: Bundle?) {
+            val matches = partialResults?.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION)
+            if (!matches.isNullOrEmpty()) {
+                session.results.trySend(SpeechResult.PartialResult(matches[0], 0.5f))
+            }
+        }
+
+        override fun onEvent(eventType: Int, params: Bundle?) {
+            // Additional events
+        }
+    }
+
+    private fun speechErrorMessage(error: Int): String {
+        return when (error) {
+            SpeechRecognizer.ERROR_AUDIO -> "Audio recording error"
+            SpeechRecognizer.ERROR_CLIENT -> "Client side error"
+            SpeechRecognizer.ERROR_INSUFFICIENT_PERMISSIONS -> "Insufficient permissions"
+            SpeechRecognizer.ERROR_NETWORK -> "Network error"
+            SpeechRecognizer.ERROR_NETWORK_TIMEOUT -> "Network timeout"
+            SpeechRecognizer.ERROR_NO_MATCH -> "No speech input matched"
+            SpeechRecognizer.ERROR_RECOGNIZER_BUSY -> "Recognition service busy"
+            SpeechRecognizer.ERROR_SERVER -> "Server error"
+            SpeechRecognizer.ERROR_SPEECH_TIMEOUT -> "No speech input"
+            else -> "Unknown error ($error)"
+        }
+    }
+
+    /**
+     * What the engine is doing, published by the actor
+     */
+    data class State(
+        val isTtsReady: Boolean = false,
+        val isSpeaking: Boolean = false,
+        val ttsLocale: Locale? = null,
+        val ttsCapabilities: Map<Locale, TtsCapabilities.Capability> = emptyMap(),
+        val isRecognitionAvailable: Boolean = false,
+        val isListening: Boolean = false,
+        val error: String? = null
+    ) {
+        fun isTtsSupported(locale: Locale): Boolean = ttsCapabilities[locale]?.isSupported == true
+    }
+
+    private class Utterance(
+        val text: String,
+        val locale: Locale,
+        val queue: QueuePolicy,
+        val onStart: () -> Unit
+    ) {
+        val result = CompletableDeferred<UtteranceManager.Outcome>()
+        var job: Job? = null
+    }
+
+    private class ListenSession(val results: ProducerScope<SpeechResult>)
+
+    private companion object {
+        // Lines heard while the engine was busy; older ones are dropped rather than rendered late
+        const val MAX_PENDING_RENDERS = 8
+    }
+
+    private sealed class Command {
+        class Initialize(val holder: Any, val locales: List<Locale>) : Command()
+        data class WarmUp(val motherLocale: Locale, val targetLocale: Locale) : Command()
+        class Speak(val utterance: Utterance) : Command()
+        class Finished(val utterance: Utterance, val outcome: UtteranceManager.Outcome) : Command()
+        class Cancel(val utterance: Utterance) : Command()
+        class PreSynthesize(
+            val text: String,
+            val locale: Locale,
+            val reply: CompletableDeferred<Deferred<PreSynthesis>?>
+        ) : Command()
+        class RenderForReplay(val text: String, val locale: Locale) : Command()
+        object ReplayRendered : Command()
+        object Stop : Command()
+        data class SetSpeechRate(val rate: Float) : Command()
+        data class SetPitch(val pitch: Float) : Command()
+        class Listen(val session: ListenSession, val locale: Locale) : Command()
+        class ListeningChanged(val session: ListenSession, val isListening: Boolean) : Command()
+        data class StopListening(val cancel: Boolean) : Command()
+        class EndListening(val session: ListenSession) : Command()
+        class Release(val holder: Any) : Command()
+    }
+}
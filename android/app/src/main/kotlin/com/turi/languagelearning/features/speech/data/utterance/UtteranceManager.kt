@@ -0,0 +1,71 @@
+package com.turi.languagelearning.features.speech.data.utterance
+
+import kotlinx.coroutines.CancellableContinuation
+import kotlinx.coroutines.suspendCancellableCoroutine
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.coroutines.resume
+
+/**
+ * Routes the engine's utterance callbacks to the call that queued each utterance.
+ *
+ * Every utterance gets its own id and a continuation waiting for it, so the one engine-wide
+ * listener never has to be swapped and overlapping utterances can't receive each other's
+ * completions. The owning service forwards [onStart], [onDone], [onError] and [onStop] from its
+ * listener; each returns whether the id was one of ours.
+ */
+class UtteranceManager {
+
+    private val pending = ConcurrentHashMap<String, Pending>()
+    private val ids = AtomicLong()
+
+    /**
+     * Queues an utterance through [start], which gets its id and returns whether the engine took
+     * it, then suspends until the utterance ends. Cancelling the caller only forgets the
+     * utterance; stopping the engine is up to the caller.
+     */
+    suspend fun await(onStart: () -> Unit = {}, start: (utteranceId: String) -> Boolean): Outcome =
+        suspendCancellableCoroutine { continuation ->
+            val utteranceId = "$PREFIX${ids.incrementAndGet()}"
+            pending[utteranceId] = Pending(continuation, onStart)
+            continuation.invokeOnCancellation { pending.remove(utteranceId) }
+
+            if (!start(utteranceId)) finish(utteranceId, Outcome.FAILED)
+        }
+
+    fun onStart(utteranceId: String?): Boolean {
+        val utterance = utteranceId?.let { pending[it] } ?: return false
+        utterance.onStart()
+        return true
+    }
+
+    fun onDone(utteranceId: String?): Boolean = finish(utteranceId, Outcome.COMPLETED)
+
+    fun onError(utteranceId: String?): Boolean = finish(utteranceId, Outcome.FAILED)
+
+    fun onStop(utteranceId: String?): Boolean = finish(utteranceId, Outcome.INTERRUPTED)
+
+    /**
+     * Ends every waiting utterance, e.g. after the engine was stopped
+     */
+    fun interruptAll() {
+        pending.keys.forEach { finish(it, Outcome.INTERRUPTED) }
+    }
+
+    private fun finish(utteranceId: String?, outcome: Outcome): Boolean {
+        val utterance = utteranceId?.let { pending.remove(it) } ?: return false
+        if (utterance.continuation.isActive) utterance.continuation.resume(outcome)
+        return true
+    }
+
+    enum class Outcome { COMPLETED, FAILED, INTERRUPTED }
+
+    private class Pending(
+        val continuation: CancellableContinuation<Outcome>,
+        val onStart: () -> Unit
+    )
+
+    private companion object {
+        const val PREFIX = "utterance_"
+    }
+}
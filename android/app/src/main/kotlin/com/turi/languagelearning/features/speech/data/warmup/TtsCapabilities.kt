@@ -0,0 +1,73 @@
+package com.turi.languagelearning.features.speech.data.warmup
+
+import android.content.Context
+import android.content.pm.PackageManager
+import android.os.Build
+import android.speech.tts.TextToSpeech
+import dagger.hilt.android.qualifiers.ApplicationContext
+import java.util.Locale
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * What the installed TTS engine can do per locale, remembered across launches.
+ *
+ * Entries are keyed by engine package and version, so an engine update or switch re-probes
+ * instead of trusting old answers. Only supported locales are kept: voice data can be downloaded
+ * without the engine version changing, so a missing or unsupported locale is probed again on
+ * the next initialization.
+ */
+@Singleton
+class TtsCapabilities @Inject constructor(
+    @ApplicationContext private val context: Context
+) {
+
+    private val preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE)
+
+    fun get(engine: String, locale: Locale): Capability? {
+        val stored = preferences.getString(key(engine, locale), null) ?: return null
+        val availability = stored.substringBefore(SEPARATOR).toIntOrNull() ?: return null
+        // Negative answers stored by older builds are probed again as well
+        return Capability(availability, stored.substringAfter(SEPARATOR, "").ifEmpty { null })
+            .takeIf { it.isSupported }
+    }
+
+    fun put(engine: String, locale: Locale, capability: Capability) {
+        if (!capability.isSupported) {
+            preferences.edit().remove(key(engine, locale)).apply()
+            return
+        }
+        preferences.edit()
+            .putString(key(engine, locale), "${capability.availability}$SEPARATOR${capability.voiceName.orEmpty()}")
+            .apply()
+    }
+
+    private fun key(engine: String, locale: Locale): String =
+        "$engine@${engineVersion(engine)}|${locale.toLanguageTag()}"
+
+    @Suppress("DEPRECATION")
+    private fun engineVersion(engine: String): Long = try {
+        val info = context.packageManager.getPackageInfo(engine, 0)
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) info.longVersionCode else info.versionCode.toLong()
+    } catch (e: PackageManager.NameNotFoundException) {
+        0L
+    }
+
+    /**
+     * [availability] is a [TextToSpeech.isLanguageAvailable] result; [voiceName] the voice chosen for the locale
+     */
+    data class Capability(
+        val availability: Int,
+        val voiceName: String?
+    ) {
+        val isSupported: Boolean
+            get() = availability == TextToSpeech.LANG_AVAILABLE ||
+                availability == TextToSpeech.LANG_COUNTRY_AVAILABLE ||
+                availability == TextToSpeech.LANG_COUNTRY_VAR_AVAILABLE
+    }
+
+    private companion object {
+        const val PREFERENCES_NAME = "tts_capabilities"
+        const val SEPARATOR = '|'
+    }
+}
@@ -0,0 +1,120 @@
+package com.turi.languagelearning.features.speech.data.warmup
+
+import android.os.Bundle
+import android.speech.tts.TextToSpeech
+import android.speech.tts.Voice
+import android.util.Log
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.withContext
+import java.util.Locale
+
+/**
+ * Gets a freshly initialized engine ready to speak the learner's languages without a stall.
+ *
+ * Locales are probed in parallel, or answered from [TtsCapabilities], and a voice is resolved for
+ * each. [warmUp] then selects every supported voice once and queues a silent utterance with it, so
+ * the engine loads the voice data before the first Speak; the target locale goes last and the
+ * engine is left on it.
+ */
+class TtsWarmup(private val capabilities: TtsCapabilities) {
+
+    private val TAG = "TtsWarmup"
+
+    /**
+     * Capabilities of all [locales], probing only those not cached for the current engine
+     */
+    suspend fun probe(tts: TextToSpeech, locales: Collection<Locale>): Map<Locale, TtsCapabilities.Capability> =
+        coroutineScope {
+            locales.distinct()
+                .map { locale -> async(Dispatchers.IO) { locale to capability(tts, locale) } }
+                .awaitAll()
+                .toMap()
+        }
+
+    fun capability(tts: TextToSpeech, locale: Locale): TtsCapabilities.Capability {
+        val engine = tts.defaultEngine.orEmpty()
+        capabilities.get(engine, locale)?.let { return it }
+
+        val availability = tts.isLanguageAvailable(locale)
+        val voice = if (availability >= TextToSpeech.LANG_AVAILABLE) resolveVoice(tts, locale, null) else null
+        return TtsCapabilities.Capability(availability, voice?.name).also { capabilities.put(engine, locale, it) }
+    }
+
+    /**
+     * Primes [motherLocale] and then [targetLocale]; returns the primed locales with the voice selected for each
+     */
+    suspend fun warmUp(tts: TextToSpeech, motherLocale: Locale, targetLocale: Locale): Map<Locale, Voice?> =
+        withContext(Dispatchers.Default) {
+            val locales = listOf(motherLocale, targetLocale).distinct()
+            val probed = probe(tts, locales)
+            val voices = LinkedHashMap<Locale, Voice?>()
+
+            for (locale in locales) {
+                val capability = probed[locale]
+                if (capability == null || !capability.isSupported) {
+                    Log.w(TAG, "No TTS voice for $locale")
+                    continue
+                }
+
+                val voice = resolveVoice(tts, locale, capability.voiceName)
+                val selected = if (voice != null) {
+                    tts.setVoice(voice) == TextToSpeech.SUCCESS
+                } else {
+                    tts.setLanguage(locale) >= TextToSpeech.LANG_AVAILABLE
+                }
+                if (!selected) continue
+
+                voices[locale] = voice
+                prime(tts)
+            }
+            Log.i(TAG, "Warmed up ${voices.size} voices for $locales")
+            voices
+        }
+
+    fun isWarmup(utteranceId: String?): Boolean = utteranceId?.startsWith(WARMUP_PREFIX) == true
+
+    /**
+     * Queues an inaudible utterance, which makes the engine load the selected voice
+     */
+    private fun prime(tts: TextToSpeech) {
+        val params = Bundle().apply { putFloat(TextToSpeech.Engine.KEY_PARAM_VOLUME, 0f) }
+        tts.speak(PRIME_TEXT, TextToSpeech.QUEUE_ADD, params, "$WARMUP_PREFIX${System.nanoTime()}")
+    }
+
+    /**
+     * [preferred] if the engine still has it, otherwise the best installed voice for the locale:
+     * same country, offline, highest quality, lowest latency
+     */
+    private fun resolveVoice(tts: TextToSpeech, locale: Locale, preferred: String?): Voice? {
+        val voices = try {
+            tts.voices
+        } catch (e: Exception) {
+            null
+        } ?: return null
+
+        preferred?.let { name -> voices.firstOrNull { it.name == name }?.let { return it } }
+
+        return voices
+            .filter { voice ->
+                voice.locale.language == locale.language &&
+                    voice.features?.contains(TextToSpeech.Engine.KEY_FEATURE_NOT_INSTALLED) != true
+            }
+            .sortedWith(
+                compareBy<Voice>(
+                    { it.locale.country != locale.country },
+                    { it.isNetworkConnectionRequired },
+                    { -it.quality },
+                    { it.latency }
+                )
+            )
+            .firstOrNull()
+    }
+
+    private companion object {
+        const val WARMUP_PREFIX = "warmup_"
+        const val PRIME_TEXT = "a"
+    }
+}
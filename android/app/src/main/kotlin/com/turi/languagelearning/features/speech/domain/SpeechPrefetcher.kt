@@ -0,0 +1,111 @@
+package com.turi.languagelearning.features.speech.domain
+
+import android.util.Log
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import java.util.concurrent.ConcurrentLinkedQueue
+
+/**
+ * Renders the lines on screen into the speech cache before the learner presses Speak.
+ *
+ * Every [prefetch] replaces the previous batch, since lines of an earlier turn won't be spoken
+ * any more. A batch is capped at [maxLines] texts, and at most [concurrency] render at a time, so
+ * the engine is never far ahead of a line the learner asks for. [cancel] drops everything, e.g.
+ * when the learner leaves the dialogue. A line [synthesize] couldn't render, e.g. while the
+ * engine was starting or speaking another language, is skipped and tried once more after the
+ * rest of the batch; only [PreSynthesis.NO_ROOM] ends the batch.
+ */
+class SpeechPrefetcher(
+    private val scope: CoroutineScope,
+    private val concurrency: Int = DEFAULT_CONCURRENCY,
+    private val maxLines: Int = DEFAULT_MAX_LINES,
+    private val retryDelayMs: Long = DEFAULT_RETRY_DELAY_MS,
+    private val synthesize: suspend (text: String) -> PreSynthesis
+) {
+
+    private val TAG = "SpeechPrefetcher"
+
+    private val permits = Semaphore(concurrency)
+    private var job: Job? = null
+
+    fun prefetch(texts: List<String>) {
+        job?.cancel()
+        val batch = texts.map { it.trim() }.filter { it.isNotEmpty() }.distinct().take(maxLines)
+        if (batch.isEmpty()) return
+
+        job = scope.launch(Dispatchers.Default) {
+            val failed = renderAll(batch) ?: return@launch
+            if (failed.isEmpty()) return@launch
+
+            delay(retryDelayMs)
+            renderAll(failed)
+        }
+        Log.d(TAG, "Pre-synthesizing ${batch.size} lines")
+    }
+
+    fun cancel() {
+        job?.cancel()
+        job = null
+    }
+
+    /**
+     * Renders [lines] and returns the ones that failed, or null once storage ran low
+     */
+    private suspend fun renderAll(lines: List<String>): List<String>? = coroutineScope {
+        val queue = Channel<String>(Channel.UNLIMITED)
+        lines.forEach { queue.trySend(it) }
+        queue.close()
+
+        val failed = ConcurrentLinkedQueue<String>()
+        var outOfRoom = false
+
+        val workers = List(minOf(concurrency, lines.size)) {
+            launch {
+                for (text in queue) {
+                    when (permits.withPermit { render(text) }) {
+                        PreSynthesis.RENDERED -> Unit
+                        PreSynthesis.FAILED -> failed += text
+                        PreSynthesis.NO_ROOM -> {
+                            outOfRoom = true
+                            queue.cancel()
+                            break
+                        }
+                    }
+                }
+            }
+        }
+        workers.forEach { it.join() }
+
+        if (outOfRoom) {
+            Log.d(TAG, "Storage low, stopped pre-synthesis")
+            null
+        } else {
+            failed.toList()
+        }
+    }
+
+    private suspend fun render(text: String): PreSynthesis {
+        return try {
+            synthesize(text)
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            Log.d(TAG, "Pre-synthesis of \"$text\" failed: ${e.message}")
+            PreSynthesis.FAILED
+        }
+    }
+
+    companion object {
+        const val DEFAULT_CONCURRENCY = 1
+        const val DEFAULT_MAX_LINES = 8
+        const val DEFAULT_RETRY_DELAY_MS = 1_000L
+    }
+}
@@ -10,14 +10,25 @@ import kotlinx.coroutines.flow.Flow
 interface SpeechService {
     
     // Text-to-Speech
-    suspend fun speak(text: String, language: Language = Language.ENGLISH)
+    suspend fun speak(text: String, language: Language = Language.ENGLISH, queue: QueuePolicy = QueuePolicy.FLUSH)
     suspend fun speakWithCallback(
         text: String, 
         language: Language = Language.ENGLISH,
         onStart: () -> Unit = {},
         onComplete: () -> Unit = {},
-        onError: (String) -> Unit = {}
+        onError: (String) -> Unit = {},
+        queue: QueuePolicy = QueuePolicy.FLUSH
     )
+    // Suspends until the text has been spoken; true if it played to the end. Cancelling stops it
+    suspend fun speakAndAwait(
+        text: String,
+        language: Language = Language.ENGLISH,
+        queue: QueuePolicy = QueuePolicy.ADD
+    ): Boolean
+    // Renders into the audio cache without playing
+    suspend fun preSynthesize(text: String, language: Language = Language.ENGLISH): PreSynthesis
+    // Loads both voices ahead of the first utterance and leaves the engine on the target language
+    fun warmUp(motherLanguage: Language, targetLanguage: Language)
     fun stopSpeaking()
     fun isSpeaking(): Boolean
     
@@ -40,6 +51,27 @@ interface SpeechService {
     fun cleanup()
 }
 
+/**
+ * What a new utterance does to the ones already speaking or waiting
+ */
+enum class QueuePolicy {
+    // Interrupts them and speaks at once
+    FLUSH,
+    // Speaks after them
+    ADD
+}
+
+/**
+ * Outcome of rendering a line into the audio cache ahead of time
+ */
+enum class PreSynthesis {
+    RENDERED,
+    // Not rendered this time, e.g. the engine wasn't ready, was on another language or was stopped
+    FAILED,
+    // The device is short of storage, so nothing more should be rendered
+    NO_ROOM
+}
+
 /**
  * Speech recognition result
  */
@@ -12,12 +12,14 @@ import androidx.compose.ui.Alignment
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.draw.clip
 import androidx.compose.ui.graphics.Color
+import androidx.compose.ui.platform.LocalContext
 import androidx.compose.ui.text.font.FontWeight
 import androidx.compose.ui.text.style.TextAlign
 import androidx.compose.ui.unit.dp
 import androidx.hilt.navigation.compose.hiltViewModel
 import com.turi.languagelearning.domain.model.Dialogue
 import com.turi.languagelearning.domain.model.DialogueOption
+import com.turi.languagelearning.features.conversation.data.grammar.GrammarPregenerationWorker
 
 @Composable
 fun DialogueScreen(
@@ -27,9 +29,12 @@ fun DialogueScreen(
     viewModel: DialogueViewModel = hiltViewModel()
 ) {
     val uiState by viewModel.uiState.collectAsState()
+    val context = LocalContext.current
     
     LaunchedEffect(characterId) {
         viewModel.startDialogue(characterId, characterName)
+        // Grammar explanations for the learner's upcoming dialogues, generated while charging on Wi-Fi
+        GrammarPregenerationWorker.schedule(context.applicationContext, viewModel.language, characterId)
     }
     
     Column(
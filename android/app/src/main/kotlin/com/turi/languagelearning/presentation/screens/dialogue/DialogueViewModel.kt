@@ -2,9 +2,25 @@ package com.turi.languagelearning.presentation.screens.dialogue
 
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
+import com.turi.languagelearning.core.model.Language
+import com.turi.languagelearning.data.local.pack.DialoguePackRepository
+import com.turi.languagelearning.domain.model.ConversationFlow
 import com.turi.languagelearning.domain.model.Dialogue
 import com.turi.languagelearning.domain.model.DialogueOption
 import com.turi.languagelearning.domain.model.DialogueSession
+import com.turi.languagelearning.domain.model.Phrase
+import com.turi.languagelearning.features.conversation.domain.ConversationChunk
+import com.turi.languagelearning.features.conversation.domain.ConversationGraph
+import com.turi.languagelearning.features.conversation.domain.ConversationResult
+import com.turi.languagelearning.features.conversation.domain.ConversationService
+import com.turi.languagelearning.features.conversation.domain.DialoguePreloader
+import com.turi.languagelearning.features.conversation.domain.ResponseOption
+import com.turi.languagelearning.features.conversation.domain.SpeculationStats
+import com.turi.languagelearning.features.conversation.domain.SpeculativeTurnExecutor
+import com.turi.languagelearning.features.conversation.domain.TappableWords
+import com.turi.languagelearning.features.conversation.domain.WordExplanation
+import com.turi.languagelearning.features.speech.domain.PreSynthesis
+import com.turi.languagelearning.features.speech.domain.SpeechPrefetcher
 import com.turi.languagelearning.services.TextToSpeechService
 import com.turi.languagelearning.services.GeminiService
 import dagger.hilt.android.lifecycle.HiltViewModel
@@ -25,29 +41,54 @@ data class DialogueUiState(
 // @HiltViewModel // Temporarily disabled
 class DialogueViewModel /* @Inject constructor(
     private val ttsService: TextToSpeechService,
-    private val geminiService: GeminiService
+    private val geminiService: GeminiService,
+    private val conversationService: ConversationService,
+    private val dialoguePacks: DialoguePackRepository
 ) */ : ViewModel() {
     // Temporary mock dependencies
     private val ttsService: TextToSpeechService? = null
     private val geminiService: GeminiService? = null
+    private val conversationService: ConversationService? = null
+    private val dialoguePacks: DialoguePackRepository? = null
+    
+    val language = Language.SPANISH // TODO: Get from user preferences
+    
+    // Pre-generates replies to the displayed options so a tap is a state swap
+    private val speculativeTurns = conversationService?.let { SpeculativeTurnExecutor(viewModelScope, it) }
+    var speculativeRepliesEnabled = true
+    
+    // Offline conversations walk an authored dialogue graph, preloading a few steps ahead
+    private var graph: ConversationGraph? = null
+    private val preloader = DialoguePreloader(viewModelScope, preloadAudio = ::prewarmAudio, explainWords = ::prewarmWords)
+    
+    // Renders the lines on screen so Speak plays from the audio cache
+    private val speechPrefetcher = SpeechPrefetcher(viewModelScope) { text ->
+        ttsService?.preSynthesize(text) ?: PreSynthesis.FAILED
+    }
     
     private val _uiState = MutableStateFlow<DialogueUiState>(DialogueUiState())
     val uiState: StateFlow<DialogueUiState> = _uiState.asStateFlow()
     
     fun startDialogue(characterId: String, characterName: String) {
+        // Voices load while the greeting is generated
+        ttsService?.warmUp(Language.ENGLISH.displayName, language.displayName)
+        
         viewModelScope.launch {
             _uiState.value = _uiState.value.copy(isLoading = true, error = null)
             
             try {
                 // Generate initial dialogue using Gemini AI
-                val initialDialogue = generateInitialDialogue(characterId, characterName)
+                // Without a Supabase dialogue id for the character, replies aren't steered to quiz words
+                val greeting = conversationService?.startConversation(characterName, language)
+                val initialDialogue = greeting?.toDialogue()
+                    ?: generateInitialDialogue(characterId, characterName)
                 
                 val session = DialogueSession(
-                    sessionId = "session_${System.currentTimeMillis()}",
+                    sessionId = greeting?.conversationId ?: "session_${System.currentTimeMillis()}",
                     characterId = characterId,
                     characterName = characterName,
                     currentDialogueId = initialDialogue.id,
-                    language = "spanish", // TODO: Get from user preferences
+                    language = language.code,
                     startTime = System.currentTimeMillis()
                 )
                 
@@ -57,6 +98,10 @@ class DialogueViewModel /* @Inject constructor(
                     dialogueSession = session
                 )
                 
+                if (greeting != null) speculateReplies(session, initialDialogue)
+                prewarmExplanations(initialDialogue)
+                prewarmSpeech(initialDialogue)
+                
             } catch (e: Exception) {
                 _uiState.value = _uiState.value.copy(
                     isLoading = false,
@@ -72,13 +117,18 @@ class DialogueViewModel /* @Inject constructor(
             
             try {
                 val currentSession = _uiState.value.dialogueSession
-                if (currentSession != null) {
-                    // Generate next dialogue based on user's choice
-                    val nextDialogue = generateNextDialogue(
-                        currentSession.characterName,
-                        option.text,
-                        currentSession.language
-                    )
+                val service = conversationService
+                if (currentSession != null && service != null) {
+                    val speculated = speculativeTurns?.awaitBranch(currentSession.sessionId, option.text)
+                    if (speculated != null) {
+                        showTurn(currentSession, option, speculated.toDialogue())
+                    } else {
+                        // Stream the reply so the first words replace the spinner right away
+                        streamNextDialogue(service, currentSession, option)
+                    }
+                } else if (currentSession != null) {
+                    // Follow the chosen option through the dialogue graph
+                    val nextDialogue = generateNextDialogue(currentSession, option)
                     
                     _uiState.value = _uiState.value.copy(
                         isLoading = false,
@@ -88,6 +138,7 @@ class DialogueViewModel /* @Inject constructor(
                             dialogueHistory = currentSession.dialogueHistory + option.id
                         )
                     )
+                    prewarmSpeech(nextDialogue)
                 }
                 
             } catch (e: Exception) {
@@ -99,17 +150,111 @@ class DialogueViewModel /* @Inject constructor(
         }
     }
     
+    private suspend fun streamNextDialogue(
+        service: ConversationService,
+        session: DialogueSession,
+        option: DialogueOption
+    ) {
+        val dialogueId = "turn_${System.currentTimeMillis()}"
+        val message = StringBuilder()
+        var translation = ""
+        val options = mutableListOf<DialogueOption>()
+        val tips = mutableListOf<String>()
+        
+        service.continueConversationStream(session.sessionId, option.text, language).collect { chunk ->
+            var completed: Dialogue? = null
+            when (chunk) {
+                is ConversationChunk.MessageDelta -> message.append(chunk.text)
+                is ConversationChunk.Translation -> translation = chunk.text
+                is ConversationChunk.Option -> options.add(chunk.option.toDialogueOption())
+                is ConversationChunk.LearningTip -> tips.add(chunk.tip)
+                is ConversationChunk.Complete -> completed = chunk.result.toDialogue(dialogueId)
+            }
+            
+            val dialogue = completed ?: Dialogue(
+                id = dialogueId,
+                characterName = session.characterName,
+                phrase = Phrase(
+                    id = "phrase_$dialogueId",
+                    text = message.toString(),
+                    translation = translation
+                ),
+                options = options.toList(),
+                learningPoints = tips.toList()
+            )
+            
+            showTurn(session, option, dialogue, isFinal = completed != null)
+        }
+    }
+    
+    private fun showTurn(
+        session: DialogueSession,
+        option: DialogueOption,
+        dialogue: Dialogue,
+        isFinal: Boolean = true
+    ) {
+        val nextSession = session.copy(
+            currentDialogueId = dialogue.id,
+            dialogueHistory = session.dialogueHistory + option.id
+        )
+        
+        _uiState.value = _uiState.value.copy(
+            isLoading = false,
+            currentDialogue = dialogue,
+            dialogueSession = nextSession
+        )
+        
+        if (isFinal) {
+            speculateReplies(nextSession, dialogue)
+            prewarmExplanations(dialogue)
+            prewarmSpeech(dialogue)
+        }
+    }
+    
+    private fun speculateReplies(session: DialogueSession, dialogue: Dialogue) {
+        if (!speculativeRepliesEnabled || dialogue.options.isEmpty()) return
+        speculativeTurns?.speculate(session.sessionId, dialogue.options.map { it.text }, language)
+    }
+    
+    /**
+     * Resolves every tappable word of the displayed phrase in one background request,
+     * so the explanation modal opens from cache.
+     */
+    private fun prewarmExplanations(dialogue: Dialogue) {
+        val service = conversationService ?: return
+        val words = TappableWords.extract(dialogue.phrase.text)
+        if (words.isEmpty()) return
+        
+        viewModelScope.launch {
+            try {
+                service.explainWords(words, language, dialogue.phrase.text)
+            } catch (e: Exception) {
+                // Tapping a word will simply fetch it on demand
+            }
+        }
+    }
+    
+    private fun prewarmSpeech(dialogue: Dialogue) {
+        speechPrefetcher.prefetch(listOf(dialogue.phrase.text) + dialogue.options.map { it.text })
+    }
+    
+    fun speculationStats(): SpeculationStats? = speculativeTurns?.stats()
+    
     fun speakCurrentDialogue() {
         val currentDialogue = _uiState.value.currentDialogue
         if (currentDialogue != null) {
-            ttsService.speak(currentDialogue.phrase.text)
+            ttsService?.speak(currentDialogue.phrase.text)
         }
     }
     
     fun explainWord(word: String) {
         viewModelScope.launch {
             try {
-                val explanation = geminiService.explainWord(word, "spanish") // TODO: Use current language
+                val phrase = _uiState.value.currentDialogue?.phrase?.text
+                val explanation = conversationService
+                    ?.explainWord(word, language, phrase)
+                    ?.toDisplayText()
+                    ?: geminiService?.explainWord(word, language.displayName.lowercase())
                 _uiState.value = _uiState.value.copy(wordExplanation = explanation)
             } catch (e: Exception) {
                 _uiState.value = _uiState.value.copy(
@@ -123,39 +268,59 @@ class DialogueViewModel /* @Inject constructor(
         _uiState.value = _uiState.value.copy(wordExplanation = null)
     }
     
+    override fun onCleared() {
+        speculativeTurns?.cancelAll()
+        preloader.cancel()
+        speechPrefetcher.cancel()
+        super.onCleared()
+    }
+    
     private suspend fun generateInitialDialogue(characterId: String, characterName: String): Dialogue {
-        // Create a greeting dialogue based on character
-        val greetingPrompt = """
-            Create a greeting dialogue for a Spanish language learning conversation.
-            Character: $characterName
-            Context: This is the first interaction with this character in a language learning app.
-            
-            Provide:
-            1. A natural Spanish greeting phrase
-            2. English translation
-            3. 2-3 response options for the learner
-            4. Keep it beginner-friendly
-        """.trimIndent()
+        // Offline: walk the shipped dialogue pack, the sample only covers a missing pack
+        val graph = dialoguePacks?.graph(characterId, language)
+            ?: ConversationGraph.fromFlow(createSampleFlow(characterId, characterName))
+        this.graph = graph
+        
+        preloader.preloadAround(graph, graph.startNode)
+        return graph.dialogue(graph.startNode).copy(characterName = characterName)
+    }
+    
+    private fun generateNextDialogue(session: DialogueSession, option: DialogueOption): Dialogue {
+        val graph = graph ?: throw IllegalStateException("No dialogue graph loaded")
+        val node = graph.nodeOf(session.currentDialogueId)
+        val next = if (node >= 0) graph.next(node, option) else -1
         
-        // For now, return a hardcoded example - in production, use Gemini
-        return createSampleDialogue(characterId, characterName)
+        // An option that ends the flow starts the conversation over
+        val target = if (next >= 0) next else graph.startNode
+        preloader.preloadAround(graph, target)
+        return graph.dialogue(target).copy(characterName = session.characterName)
     }
     
-    private suspend fun generateNextDialogue(
-        characterName: String,
-        userResponse: String,
-        language: String
-    ): Dialogue {
-        // Generate contextual response based on user's choice
-        // For now, return a sample follow-up
-        return createSampleFollowUpDialogue(characterName, userResponse)
+    private suspend fun prewarmAudio(phrase: Phrase) {
+        ttsService?.preSynthesize(phrase.text)
+    }
+    
+    private suspend fun prewarmWords(words: List<String>, phrase: String) {
+        conversationService?.explainWords(words, language, phrase)
+    }
+    
+    private fun createSampleFlow(characterId: String, characterName: String): ConversationFlow {
+        val dialogue = createSampleDialogue(characterId, characterName)
+        return ConversationFlow(
+            characterId = characterId,
+            characterName = characterName,
+            language = language.code,
+            dialogues = mapOf(dialogue.id to dialogue),
+            startDialogueId = dialogue.id,
+            description = "Sample greeting"
+        )
     }
     
     private fun createSampleDialogue(characterId: String, characterName: String): Dialogue {
         return Dialogue(
             id = "greeting_$characterId",
             characterName = characterName,
-            phrase = com.turi.languagelearning.domain.model.Phrase(
+            phrase = Phrase(
                 id = "phrase_greeting",
                 text = "¡Hola! ¿Cómo estás?",
                 translation = "Hello! How are you?"
@@ -186,33 +351,37 @@ class DialogueViewModel /* @Inject constructor(
         )
     }
     
-    private fun createSampleFollowUpDialogue(characterName: String, userResponse: String): Dialogue {
+    private fun ConversationResult.toDialogue(dialogueId: String = "turn_${System.currentTimeMillis()}"): Dialogue {
         return Dialogue(
-            id = "followup_${System.currentTimeMillis()}",
+            id = dialogueId,
             characterName = characterName,
-            phrase = com.turi.languagelearning.domain.model.Phrase(
-                id = "phrase_followup",
-                text = "¡Excelente! Me alegra conocerte.",
-                translation = "Excellent! I'm happy to meet you."
-            ),
-            options = listOf(
-                DialogueOption(
-                    id = "continue_conversation",
-                    text = "Igualmente",
-                    translation = "Likewise"
-                ),
-                DialogueOption(
-                    id = "ask_question",
-                    text = "¿De dónde eres?",
-                    translation = "Where are you from?"
-                )
+            phrase = Phrase(
+                id = "phrase_$dialogueId",
+                text = characterMessage,
+                translation = translation,
+                difficulty = difficulty
             ),
-            isQuestion = false,
-            context = "Follow-up conversation",
-            learningPoints = listOf(
-                "Me alegra means 'I'm happy' or 'it makes me happy'",
-                "Conocerte means 'to meet you'"
-            )
+            options = responseOptions.map { it.toDialogueOption() },
+            isQuestion = characterMessage.trimEnd().endsWith("?"),
+            learningPoints = learningTips
+        )
+    }
+    
+    private fun WordExplanation.toDisplayText(): String = buildString {
+        append("$word: $translation")
+        if (pronunciation.isNotBlank()) append(" ($pronunciation)")
+        if (partOfSpeech.isNotBlank()) append("\n$partOfSpeech")
+        if (definition.isNotBlank()) append("\n$definition")
+        examples.forEach { append("\n• $it") }
+        grammarNotes?.let { append("\n$it") }
+    }
+    
+    private fun ResponseOption.toDialogueOption(): DialogueOption {
+        return DialogueOption(
+            id = id,
+            text = text,
+            translation = translation,
+            isCorrect = isCorrect
         )
     }
-}
\ No newline at end of file
+}
@@ -1,23 +1,38 @@
 package com.turi.languagelearning.services
 
 import android.util.Log
+import com.turi.languagelearning.core.network.GeminiApiClient
+import com.turi.languagelearning.core.network.PromptSlot
+import com.turi.languagelearning.core.network.PromptTemplate
+import com.turi.languagelearning.core.network.RequestPriority
+import com.turi.languagelearning.features.conversation.data.TurnJsonParser
+import com.turi.languagelearning.features.conversation.data.cache.ExplanationCache
+import com.turi.languagelearning.features.conversation.data.evaluation.LocalResponseEvaluator
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
 import javax.inject.Inject
 import javax.inject.Singleton
 
 @Singleton
-class GeminiService @Inject constructor() {
+class GeminiService @Inject constructor(
+    private val geminiClient: GeminiApiClient,
+    private val explanationCache: ExplanationCache,
+    private val responseEvaluator: LocalResponseEvaluator
+) {
     
     private val TAG = "GeminiService"
     
     suspend fun explainWord(word: String, language: String): String = withContext(Dispatchers.IO) {
         try {
-            // TODO: Implement actual Gemini API call
-            // For now, return a sample explanation
             Log.i(TAG, "Explaining word: $word in language: $language")
             
-            generateWordExplanation(word, language)
+            val key = ExplanationCache.wordKey("legacy_word", word, language)
+            explanationCache.getOrLoad(key, String::class.java) {
+                // Throwing keeps the cache free of anything but model explanations
+                check(geminiClient.isConfigured) { "Gemini API key not configured" }
+                val prompt = WORD_EXPLANATION_PROMPT.render(WORD of word, LANGUAGE of language)
+                geminiClient.generateContent(prompt, RequestPriority.WORD)
+            }
         } catch (e: Exception) {
             Log.e(TAG, "Failed to explain word: $word", e)
             throw e
@@ -33,8 +48,23 @@ class GeminiService @Inject constructor() {
         try {
             Log.i(TAG, "Generating dialogue for character: $characterName")
             
-            // TODO: Implement actual Gemini API call
-            generateSampleDialogue(characterName, context, language, difficulty)
+            if (geminiClient.isConfigured) {
+                // Only the character's line is returned, parsed from the JSON as it streams
+                val prompt = DIALOGUE_GENERATION_PROMPT.render(
+                    LANGUAGE of language,
+                    CHARACTER of characterName,
+                    CONTEXT of context,
+                    DIFFICULTY of difficulty
+                )
+                val parser = TurnJsonParser()
+                geminiClient.streamGenerateContent(prompt, RequestPriority.INTERACTIVE).collect { delta ->
+                    parser.feed(delta)
+                }
+                parser.finish()
+                parser.message.toString().trim()
+            } else {
+                generateSampleDialogue(characterName, context, language, difficulty)
+            }
         } catch (e: Exception) {
             Log.e(TAG, "Failed to generate dialogue", e)
             throw e
@@ -49,7 +79,6 @@ class GeminiService @Inject constructor() {
         try {
             Log.i(TAG, "Evaluating user response: $userResponse")
             
-            // TODO: Implement actual Gemini API call
             evaluateUserResponse(userResponse, expectedResponse, language)
         } catch (e: Exception) {
             Log.e(TAG, "Failed to evaluate response", e)
@@ -57,20 +86,6 @@ class GeminiService @Inject constructor() {
         }
     }
     
-    private fun generateWordExplanation(word: String, language: String): String {
-        // Sample word explanations - in production, this would call Gemini API
-        val explanations = mapOf(
-            "hola" to "A common Spanish greeting meaning 'hello'. Used in both formal and informal situations. Pronunciation: OH-lah",
-            "gracias" to "Spanish word for 'thank you'. One of the most important words to know. Pronunciation: GRAH-see-ahs",
-            "cómo" to "Spanish word meaning 'how' or 'what'. Used in questions like '¿Cómo estás?' (How are you?). Pronunciation: KOH-moh",
-            "estás" to "Second person singular form of the verb 'estar' (to be). Used for temporary states. Pronunciation: ehs-TAHS",
-            "bien" to "Spanish word meaning 'well' or 'good'. Often used in responses like 'Muy bien' (Very well). Pronunciation: bee-EHN"
-        )
-        
-        return explanations[word.lowercase()] ?: 
-            "This word '$word' is a $language term. Tap on more words to learn their meanings and usage in context!"
-    }
-    
     private fun generateSampleDialogue(
         characterName: String,
         context: String,
@@ -91,8 +106,7 @@ class GeminiService @Inject constructor() {
         expectedResponse: String,
         language: String
     ): String {
-        // Sample response evaluation - in production, this would call Gemini API
-        val similarity = calculateSimilarity(userResponse, expectedResponse)
+        val similarity = responseEvaluator.score(userResponse, expectedResponse).similarity
         
         return when {
             similarity > 0.8 -> "¡Excelente! Your pronunciation and grammar are very good."
@@ -102,53 +116,51 @@ class GeminiService @Inject constructor() {
         }
     }
     
-    private fun calculateSimilarity(response1: String, response2: String): Double {
-        // Simple similarity calculation - in production, use more sophisticated NLP
-        val words1 = response1.lowercase().split(" ")
-        val words2 = response2.lowercase().split(" ")
+    // Prompt templates for Gemini API, compiled once; the stable rules travel as a shared prefix
+    private companion object {
+        val WORD = PromptSlot<String>("word")
+        val LANGUAGE = PromptSlot<String>("language")
+        val CHARACTER = PromptSlot<String>("character")
+        val CONTEXT = PromptSlot<String>("context")
+        val DIFFICULTY = PromptSlot<String>("difficulty")
         
-        val commonWords = words1.intersect(words2.toSet()).size
-        val totalWords = maxOf(words1.size, words2.size)
+        val WORD_EXPLANATION_PROMPT = PromptTemplate.compile(
+            prefix = """
+                You explain words to language learners:
+                
+                1. Provide the English translation
+                2. Explain the pronunciation (phonetic guide)
+                3. Give 2-3 example sentences in the word's language with English translations
+                4. Mention any important grammar rules or cultural context
+                5. Keep the explanation clear and beginner-friendly
+                
+                Format the response in a conversational, encouraging tone.
+            """.trimIndent(),
+            body = "Explain the {language} word \"{word}\".",
+            WORD, LANGUAGE
+        )
         
-        return if (totalWords > 0) commonWords.toDouble() / totalWords else 0.0
-    }
-    
-    // Prompt templates for Gemini API (to be used when implementing actual API calls)
-    private fun getWordExplanationPrompt(word: String, language: String): String {
-        return """
-            Explain the $language word "$word" for a language learner:
-            
-            1. Provide the English translation
-            2. Explain the pronunciation (phonetic guide)
-            3. Give 2-3 example sentences in $language with English translations
-            4. Mention any important grammar rules or cultural context
-            5. Keep the explanation clear and beginner-friendly
-            
-            Format the response in a conversational, encouraging tone.
-        """.trimIndent()
-    }
-    
-    private fun getDialogueGenerationPrompt(
-        characterName: String,
-        context: String,
-        language: String,
-        difficulty: String
-    ): String {
-        return """
-            Generate a natural $language dialogue for a language learning app:
-            
-            Character: $characterName
-            Context: $context
-            Difficulty: $difficulty
-            
-            Requirements:
-            1. Create a realistic, engaging conversation starter
-            2. Include cultural context appropriate for $language speakers
-            3. Match the difficulty level ($difficulty)
-            4. Provide 2-3 response options for the learner
-            5. Include pronunciation guides for difficult words
-            
-            Return JSON format with dialogue text, translation, and response options.
-        """.trimIndent()
+        val DIALOGUE_GENERATION_PROMPT = PromptTemplate.compile(
+            prefix = """
+                You write natural dialogue for a language learning app.
+                
+                Requirements:
+                1. Create a realistic, engaging conversation starter
+                2. Include cultural context appropriate for speakers of the language
+                3. Match the requested difficulty level
+                4. Provide 2-3 response options for the learner
+                5. Include pronunciation guides for difficult words
+                
+                Return only this JSON object, without code fences:
+                ${TurnJsonParser.FORMAT}
+            """.trimIndent(),
+            body = """
+                Language: {language}
+                Character: {character}
+                Context: {context}
+                Difficulty: {difficulty}
+            """.trimIndent(),
+            LANGUAGE, CHARACTER, CONTEXT, DIFFICULTY
+        )
     }
-}
\ No newline at end of file
+}
@@ -1,16 +1,17 @@
 package com.turi.languagelearning.services
 
-import android.content.Context
-import android.content.Intent
-import android.os.Bundle
-import android.speech.RecognitionListener
-import android.speech.RecognizerIntent
-import android.speech.SpeechRecognizer
 import android.util.Log
-import dagger.hilt.android.qualifiers.ApplicationContext
+import com.turi.languagelearning.features.speech.data.engine.SpeechEngine
+import com.turi.languagelearning.features.speech.domain.SpeechResult
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.update
+import kotlinx.coroutines.launch
 import java.util.*
 import javax.inject.Inject
 import javax.inject.Singleton
@@ -27,12 +28,14 @@ data class SpeechRecognitionState(
 
 // @Singleton // Temporarily disabled
 class SpeechRecognitionService /* @Inject constructor(
-    @ApplicationContext private val context: Context
+    private val engine: SpeechEngine
 ) */ {
     // Temporary mock dependency
-    private val context: Context? = null
+    private val engine: SpeechEngine? = null
     
-    private var speechRecognizer: SpeechRecognizer? = null
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Main.immediate)
+    // Main thread only, like the callers
+    private var session: Job? = null
     private val _state = MutableStateFlow<SpeechRecognitionState>(SpeechRecognitionState())
     val state: StateFlow<SpeechRecognitionState> = _state.asStateFlow()
     
@@ -45,110 +48,27 @@ class SpeechRecognitionService /* @Inject constructor(
         "english" to "en-US"
     )
     
-    private var onResultCallback: ((String, Float) -> Unit)? = null
-    private var onErrorCallback: ((String) -> Unit)? = null
-    
     init {
         initializeSpeechRecognizer()
     }
     
     private fun initializeSpeechRecognizer() {
-        if (SpeechRecognizer.isRecognitionAvailable(context)) {
-            speechRecognizer = SpeechRecognizer.createSpeechRecognizer(context)
-            speechRecognizer?.setRecognitionListener(recognitionListener)
-            
-            _state.value = _state.value.copy(isAvailable = true)
-            Log.i("SpeechRecognition", "Speech recognition initialized successfully")
-        } else {
+        val speechEngine = engine ?: run {
             _state.value = _state.value.copy(
                 isAvailable = false,
                 error = "Speech recognition not available on this device"
             )
             Log.e("SpeechRecognition", "Speech recognition not available")
-        }
-    }
-    
-    private val recognitionListener = object : RecognitionListener {
-        override fun onReadyForSpeech(params: Bundle?) {
-            _state.value = _state.value.copy(
-                isListening = true,
-                error = null,
-                recognizedText = "",
-                partialResults = emptyList()
-            )
-            Log.i("SpeechRecognition", "Ready for speech")
-        }
-        
-        override fun onBeginningOfSpeech() {
-            Log.i("SpeechRecognition", "Beginning of speech detected")
-        }
-        
-        override fun onRmsChanged(rmsdB: Float) {
-            // Audio level changed - could be used for visual feedback
-        }
-        
-        override fun onBufferReceived(buffer: ByteArray?) {
-            // Audio buffer received
-        }
-        
-        override fun onEndOfSpeech() {
-            Log.i("SpeechRecognition", "End of speech")
-        }
-        
-        override fun onError(error: Int) {
-            val errorMessage = when (error) {
-                SpeechRecognizer.ERROR_AUDIO -> "Audio recording error"
-                SpeechRecognizer.ERROR_CLIENT -> "Client side error"
-                SpeechRecognizer.ERROR_INSUFFICIENT_PERMISSIONS -> "Insufficient permissions"
-                SpeechRecognizer.ERROR_NETWORK -> "Network error"
-                SpeechRecognizer.ERROR_NETWORK_TIMEOUT -> "Network timeout"
-                SpeechRecognizer.ERROR_NO_MATCH -> "No speech input matched"
-                SpeechRecognizer.ERROR_RECOGNIZER_BUSY -> "Recognition service busy"
-                SpeechRecognizer.ERROR_SERVER -> "Server error"
-                SpeechRecognizer.ERROR_SPEECH_TIMEOUT -> "No speech input"
-                else -> "Unknown error"
-            }
-            
-            _state.value = _state.value.copy(
-                isListening = false,
-                error = errorMessage
-            )
-            
-            onErrorCallback?.invoke(errorMessage)
-            Log.e("SpeechRecognition", "Recognition error: $errorMessage")
-        }
-        
-        override fun onResults(results: Bundle?) {
-            val matches = results?.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION)
-            val confidence = results?.getFloatArray(SpeechRecognizer.CONFIDENCE_SCORES)
-            
-            if (!matches.isNullOrEmpty()) {
-                val recognizedText = matches[0]
-                val confidenceScore = confidence?.get(0) ?: 0f
-                
-                _state.value = _state.value.copy(
-                    isListening = false,
-                    recognizedText = recognizedText,
-                    confidence = confidenceScore,
-                    error = null
-                )
-                
-                onResultCallback?.invoke(recognizedText, confidenceScore)
-                Log.i("SpeechRecognition", "Recognition result: $recognizedText (confidence: $confidenceScore)")
-            }
+            return
         }
         
-        override fun onPartialResults(partialResults: Bundle?) {
-            val matches = partialResults?.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION)
-            if (!matches.isNullOrEmpty()) {
-                _state.value = _state.value.copy(partialResults = matches)
-                Log.d("SpeechRecognition", "Partial results: $matches")
+        // The recognizer itself belongs to the shared speech engine
+        speechEngine.initialize(this, emptyList())
+        scope.launch {
+            speechEngine.state.collect { engineState ->
+                _state.update { it.copy(isAvailable = engineState.isRecognitionAvailable) }
             }
         }
-        
-        override fun onEvent(eventType: Int, params: Bundle?) {
-            // Additional events
-        }
     }
     
     fun startListening(
@@ -156,7 +76,8 @@ class SpeechRecognitionService /* @Inject constructor(
         onResult: (String, Float) -> Unit,
         onError: (String) -> Unit
     ) {
-        if (!_state.value.isAvailable) {
+        val speechEngine = engine
+        if (speechEngine == null || !_state.value.isAvailable) {
             onError("Speech recognition not available")
             return
         }
@@ -166,45 +87,67 @@ class SpeechRecognitionService /* @Inject constructor(
             return
         }
         
-        onResultCallback = onResult
-        onErrorCallback = onError
-        
-        val intent = Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH).apply {
-            putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM)
-            putExtra(RecognizerIntent.EXTRA_LANGUAGE, languageMap[language] ?: "es-ES")
-            putExtra(RecognizerIntent.EXTRA_LANGUAGE_PREFERENCE, languageMap[language] ?: "es-ES")
-            putExtra(RecognizerIntent.EXTRA_ONLY_RETURN_LANGUAGE_PREFERENCE, false)
-            putExtra(RecognizerIntent.EXTRA_CALLING_PACKAGE, context.packageName)
-            putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, true)
-            putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, 3)
+        val languageTag = languageMap[language] ?: "es-ES"
+        _state.update {
+            it.copy(
+                isListening = true,
+                currentLanguage = languageTag,
+                error = null,
+                recognizedText = "",
+                partialResults = emptyList()
+            )
         }
         
-        try {
-            speechRecognizer?.startListening(intent)
-            _state.value = _state.value.copy(currentLanguage = languageMap[language] ?: "es-ES")
-            Log.i("SpeechRecognition", "Started listening for language: $language")
-        } catch (e: Exception) {
-            val errorMsg = "Failed to start listening: ${e.message}"
-            _state.value = _state.value.copy(error = errorMsg)
-            onError(errorMsg)
-            Log.e("SpeechRecognition", errorMsg, e)
+        session?.cancel()
+        session = scope.launch {
+            speechEngine.listen(Locale.forLanguageTag(languageTag)).collect { result ->
+                when (result) {
+                    is SpeechResult.FinalResult -> {
+                        _state.update {
+                            it.copy(
+                                isListening = false,
+                                recognizedText = result.text,
+                                confidence = result.confidence,
+                                error = null
+                            )
+                        }
+                        onResult(result.text, result.confidence)
+                        Log.i("SpeechRecognition", "Recognition result: ${result.text} (confidence: ${result.confidence})")
+                    }
+                    is SpeechResult.PartialResult -> {
+                        _state.update { it.copy(partialResults = listOf(result.text)) }
+                        Log.d("SpeechRecognition", "Partial results: ${result.text}")
+                    }
+                    is SpeechResult.Error -> {
+                        _state.update { it.copy(isListening = false, error = result.message) }
+                        onError(result.message)
+                        Log.e("SpeechRecognition", "Recognition error: ${result.message}")
+                    }
+                    else -> Unit
+                }
+            }
         }
+        Log.i("SpeechRecognition", "Started listening for language: $language")
     }
     
     fun stopListening() {
-        speechRecognizer?.stopListening()
-        _state.value = _state.value.copy(isListening = false)
+        engine?.stopListening()
+        _state.update { it.copy(isListening = false) }
         Log.i("SpeechRecognition", "Stopped listening")
     }
     
     fun cancel() {
-        speechRecognizer?.cancel()
-        _state.value = _state.value.copy(
-            isListening = false,
-            recognizedText = "",
-            partialResults = emptyList(),
-            error = null
-        )
+        engine?.stopListening(cancel = true)
+        session?.cancel()
+        session = null
+        _state.update {
+            it.copy(
+                isListening = false,
+                recognizedText = "",
+                partialResults = emptyList(),
+                error = null
+            )
+        }
         Log.i("SpeechRecognition", "Recognition cancelled")
     }
     
@@ -223,7 +166,7 @@ class SpeechRecognitionService /* @Inject constructor(
     fun setLanguage(language: String): Boolean {
         val locale = languageMap[language.lowercase()]
         if (locale != null) {
-            _state.value = _state.value.copy(currentLanguage = locale)
+            _state.update { it.copy(currentLanguage = locale) }
             return true
         }
         return false
@@ -242,10 +185,8 @@ class SpeechRecognitionService /* @Inject constructor(
     }
     
     fun cleanup() {
-        speechRecognizer?.destroy()
-        speechRecognizer = null
-        onResultCallback = null
-        onErrorCallback = null
+        session?.cancel()
+        session = null
         _state.value = SpeechRecognitionState()
     }
-}
\ No newline at end of file
+}
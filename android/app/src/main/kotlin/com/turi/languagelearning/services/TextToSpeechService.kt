@@ -1,13 +1,18 @@
 package com.turi.languagelearning.services
 
-import android.content.Context
-import android.speech.tts.TextToSpeech
-import android.speech.tts.UtteranceProgressListener
 import android.util.Log
-import dagger.hilt.android.qualifiers.ApplicationContext
+import com.turi.languagelearning.features.speech.data.engine.SpeechEngine
+import com.turi.languagelearning.features.speech.data.utterance.UtteranceManager
+import com.turi.languagelearning.features.speech.domain.PreSynthesis
+import com.turi.languagelearning.features.speech.domain.QueuePolicy
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.update
+import kotlinx.coroutines.launch
 import java.util.*
 import javax.inject.Inject
 import javax.inject.Singleton
@@ -20,15 +25,21 @@ data class TtsState(
     val error: String? = null
 )
 
+/**
+ * Language-name front end of the shared [SpeechEngine]
+ */
 @Singleton
 class TextToSpeechService @Inject constructor(
-    @ApplicationContext private val context: Context
+    private val engine: SpeechEngine
 ) {
-    
-    private var tts: TextToSpeech? = null
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Main.immediate)
     private val _state = MutableStateFlow<TtsState>(TtsState())
+    // False after cleanup() until this service needs the engine again
+    @Volatile
+    private var holdsEngine = false
     val state: StateFlow<TtsState> = _state.asStateFlow()
-    
+
     private val languageMap = mapOf(
         "spanish" to Locale("es", "ES"),
         "french" to Locale("fr", "FR"),
@@ -37,161 +48,136 @@ class TextToSpeechService @Inject constructor(
         "portuguese" to Locale("pt", "BR"),
         "english" to Locale("en", "US")
     )
-    
+
     init {
-        initializeTts()
-    }
-    
-    private fun initializeTts() {
-        tts = TextToSpeech(context) { status ->
-            if (status == TextToSpeech.SUCCESS) {
-                setupTts()
-            } else {
-                _state.value = _state.value.copy(
-                    error = "TTS initialization failed"
-                )
-                Log.e("TTS", "TTS initialization failed with status: $status")
-            }
-        }
-    }
-    
-    private fun setupTts() {
-        tts?.let { textToSpeech ->
-            // Set up utterance progress listener
-            textToSpeech.setOnUtteranceProgressListener(object : UtteranceProgressListener() {
-                override fun onStart(utteranceId: String?) {
-                    _state.value = _state.value.copy(isSpeaking = true)
-                }
-                
-                override fun onDone(utteranceId: String?) {
-                    _state.value = _state.value.copy(isSpeaking = false)
-                }
-                
-                override fun onError(utteranceId: String?) {
-                    _state.value = _state.value.copy(
-                        isSpeaking = false,
-                        error = "TTS playback error"
+        holdEngine()
+        // Default language is Spanish
+        warmUp("english", "spanish")
+
+        scope.launch {
+            engine.state.collect { engineState ->
+                _state.update { state ->
+                    state.copy(
+                        isInitialized = engineState.isTtsReady,
+                        isSpeaking = engineState.isSpeaking,
+                        availableLanguages = languageMap.filterValues { engineState.isTtsSupported(it) }.keys.toList(),
+                        error = engineState.error ?: state.error
                     )
                 }
-            })
-            
-            // Check available languages
-            val availableLanguages = mutableListOf<String>()
-            languageMap.forEach { (language, locale) ->
-                val result = textToSpeech.isLanguageAvailable(locale)
-                if (result == TextToSpeech.LANG_AVAILABLE || 
-                    result == TextToSpeech.LANG_COUNTRY_AVAILABLE ||
-                    result == TextToSpeech.LANG_COUNTRY_VAR_AVAILABLE) {
-                    availableLanguages.add(language)
-                }
             }
-            
-            // Set default language to Spanish
-            setLanguage("spanish")
-            
-            _state.value = _state.value.copy(
-                isInitialized = true,
-                availableLanguages = availableLanguages,
-                error = null
-            )
-            
-            Log.i("TTS", "TTS initialized successfully. Available languages: $availableLanguages")
         }
     }
-    
+
+    /**
+     * Loads the voices for the learner's languages ahead of the first [speak]
+     */
+    fun warmUp(motherLanguage: String, targetLanguage: String) {
+        val mother = languageMap[motherLanguage.lowercase()] ?: languageMap.getValue("english")
+        val target = languageMap[targetLanguage.lowercase()] ?: return
+
+        _state.update { it.copy(currentLanguage = targetLanguage.lowercase()) }
+        holdEngine()
+        engine.warmUp(mother, target)
+    }
+
     fun speak(text: String, language: String? = null) {
-        if (!_state.value.isInitialized) {
+        // After cleanup the engine restarts before it takes this line
+        if (!holdEngine() && !_state.value.isInitialized) {
             Log.w("TTS", "TTS not initialized, cannot speak")
             return
         }
-        
+
         // Change language if specified
         language?.let { setLanguage(it) }
-        
-        tts?.let { textToSpeech ->
-            // Stop any current speech
-            stop()
-            
-            // Speak the text
-            val params = Bundle().apply {
-                putString(TextToSpeech.Engine.KEY_PARAM_UTTERANCE_ID, "utterance_${System.currentTimeMillis()}")
-            }
-            
-            val result = textToSpeech.speak(text, TextToSpeech.QUEUE_FLUSH, params, params.getString(TextToSpeech.Engine.KEY_PARAM_UTTERANCE_ID))
-            
-            if (result == TextToSpeech.ERROR) {
-                _state.value = _state.value.copy(error = "Failed to speak text")
+
+        val locale = languageMap[_state.value.currentLanguage] ?: return
+        val outcome = engine.say(text, locale, QueuePolicy.FLUSH)
+        Log.i("TTS", "Speaking: $text")
+
+        scope.launch {
+            if (outcome.await() == UtteranceManager.Outcome.FAILED) {
+                _state.update { it.copy(error = "Failed to speak text") }
                 Log.e("TTS", "Failed to speak text: $text")
-            } else {
-                Log.i("TTS", "Speaking: $text")
             }
         }
     }
-    
+
+    /**
+     * Renders [text] in the current language into the audio cache without playing it,
+     * so a later [speak] starts at once
+     */
+    suspend fun preSynthesize(text: String): PreSynthesis {
+        val locale = languageMap[_state.value.currentLanguage] ?: return PreSynthesis.FAILED
+        return engine.preSynthesize(text, locale)
+    }
+
     fun setLanguage(language: String): Boolean {
         val locale = languageMap[language.lowercase()]
         if (locale == null) {
-            _state.value = _state.value.copy(error = "Unsupported language: $language")
+            _state.update { it.copy(error = "Unsupported language: $language") }
             return false
         }
-        
-        tts?.let { textToSpeech ->
-            val result = textToSpeech.setLanguage(locale)
-            
-            when (result) {
-                TextToSpeech.LANG_MISSING_DATA, TextToSpeech.LANG_NOT_SUPPORTED -> {
-                    _state.value = _state.value.copy(error = "Language not supported: $language")
-                    Log.e("TTS", "Language not supported: $language")
-                    return false
-                }
-                else -> {
-                    _state.value = _state.value.copy(
-                        currentLanguage = language,
-                        error = null
-                    )
-                    Log.i("TTS", "Language set to: $language")
-                    return true
-                }
-            }
+
+        // The engine switches voices when it next speaks
+        val engineState = engine.state.value
+        if (!engineState.isTtsReady) return false
+        if (locale in engineState.ttsCapabilities && !engineState.isTtsSupported(locale)) {
+            _state.update { it.copy(error = "Language not supported: $language") }
+            Log.e("TTS", "Language not supported: $language")
+            return false
         }
-        
-        return false
+
+        _state.update { it.copy(currentLanguage = language.lowercase(), error = null) }
+        Log.i("TTS", "Language set to: $language")
+        return true
     }
-    
+
     fun setSpeechRate(rate: Float) {
-        tts?.setSpeechRate(rate)
+        engine.setSpeechRate(rate)
     }
-    
+
     fun setPitch(pitch: Float) {
-        tts?.setPitch(pitch)
+        engine.setPitch(pitch)
     }
-    
+
     fun stop() {
-        tts?.stop()
-        _state.value = _state.value.copy(isSpeaking = false)
+        engine.stopSpeaking()
     }
-    
+
     fun pause() {
         // Note: TextToSpeech doesn't have a native pause, so we stop
         stop()
     }
-    
+
     fun isSpeaking(): Boolean {
-        return tts?.isSpeaking == true
+        return engine.state.value.isSpeaking
     }
-    
+
     fun getAvailableLanguages(): List<String> {
         return _state.value.availableLanguages
     }
-    
+
     fun getCurrentLanguage(): String {
         return _state.value.currentLanguage
     }
-    
+
+    /**
+     * Lets go of the shared engine, which keeps running for other services; the next
+     * [speak] or [warmUp] holds it again
+     */
     fun cleanup() {
-        tts?.stop()
-        tts?.shutdown()
-        tts = null
+        holdsEngine = false
+        engine.release(this)
         _state.value = TtsState()
     }
-}
\ No newline at end of file
+
+    /**
+     * Holds the engine for this service unless it already does; true if it had to
+     */
+    private fun holdEngine(): Boolean {
+        if (holdsEngine) return false
+        holdsEngine = true
+        engine.initialize(this, languageMap.values)
+        return true
+    }
+}
@@ -0,0 +1,114 @@
+package com.turi.languagelearning.core.network
+
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.IOException
+
+class GeminiModelRouterTest {
+
+    private var now = 0L
+    private val router = GeminiModelRouter(MODELS, COOLDOWN_MS) { now }
+
+    @Test
+    fun `failed request falls through to the next model with a spare token`() = runTest {
+        val calls = mutableListOf<String>()
+
+        val result = router.execute(canSendExtra = { true }) { model ->
+            calls += model
+            if (model == PRIMARY) throw IOException("HTTP 500")
+            model
+        }
+
+        assertEquals(SECONDARY, result)
+        assertEquals(listOf(PRIMARY, SECONDARY), calls)
+    }
+
+    @Test
+    fun `throttled request is not retried without a spare token`() = runTest {
+        val calls = mutableListOf<String>()
+        var extraRequests = 0
+
+        val error = runCatching {
+            router.execute(canSendExtra = { extraRequests++; false }) { model ->
+                calls += model
+                throw IOException("Gemini request failed: HTTP 429")
+            }
+        }.exceptionOrNull()
+
+        assertEquals("Gemini request failed: HTTP 429", error?.message)
+        assertEquals(listOf(PRIMARY), calls)
+        assertEquals(1, extraRequests)
+    }
+
+    @Test
+    fun `each fallthrough takes its own token`() = runTest {
+        var tokens = 1
+        val calls = mutableListOf<String>()
+
+        runCatching {
+            router.execute(canSendExtra = { tokens-- > 0 }) { model ->
+                calls += model
+                throw IOException("HTTP 429")
+            }
+        }
+
+        assertEquals(listOf(PRIMARY, SECONDARY), calls)
+    }
+
+    @Test
+    fun `slow request is hedged on the next model only with a spare token`() = runTest {
+        val hedged = router.execute(canSendExtra = { true }) { model ->
+            if (model == PRIMARY) delay(GeminiModelRouter.DEFAULT_HEDGE_DELAY_MS * 2)
+            model
+        }
+        assertEquals(SECONDARY, hedged)
+
+        val calls = mutableListOf<String>()
+        val unhedged = router.execute(canSendExtra = { false }) { model ->
+            calls += model
+            if (model == PRIMARY) delay(GeminiModelRouter.DEFAULT_HEDGE_DELAY_MS * 2)
+            model
+        }
+        assertEquals(PRIMARY, unhedged)
+        assertEquals(listOf(PRIMARY), calls)
+    }
+
+    @Test
+    fun `repeated failures open the breaker until the cooldown ends`() {
+        repeat(FAILURES_TO_TRIP) { router.record(PRIMARY, latencyMs = 100, success = false) }
+
+        assertEquals(listOf(SECONDARY, FALLBACK), router.rankedModels())
+        assertEquals(BreakerState.OPEN, router.stats().first { it.model == PRIMARY }.breakerState)
+
+        now += COOLDOWN_MS
+        assertEquals(BreakerState.HALF_OPEN, router.stats().first { it.model == PRIMARY }.breakerState)
+        assertTrue(PRIMARY in router.rankedModels())
+
+        router.record(PRIMARY, latencyMs = 100, success = true)
+        assertEquals(BreakerState.CLOSED, router.stats().first { it.model == PRIMARY }.breakerState)
+    }
+
+    @Test
+    fun `models are ranked by median latency once measured`() {
+        repeat(MIN_SAMPLES) {
+            router.record(PRIMARY, latencyMs = 900, success = true)
+            router.record(FALLBACK, latencyMs = 200, success = true)
+        }
+
+        assertEquals(listOf(FALLBACK, PRIMARY, SECONDARY), router.rankedModels())
+    }
+
+    private companion object {
+        const val PRIMARY = "model-a"
+        const val SECONDARY = "model-b"
+        const val FALLBACK = "model-c"
+        val MODELS = listOf(PRIMARY, SECONDARY, FALLBACK)
+
+        const val COOLDOWN_MS = 30_000L
+        const val FAILURES_TO_TRIP = 3
+        const val MIN_SAMPLES = 5
+    }
+}
@@ -0,0 +1,45 @@
+package com.turi.languagelearning.features.conversation.data.evaluation
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class LocalResponseEvaluatorTest {
+
+    private val evaluator = LocalResponseEvaluator()
+
+    @Test
+    fun `accents are folded away`() {
+        val score = evaluator.score("como", "cómo")
+
+        assertEquals(1f, score.similarity, 0f)
+        assertEquals(Verdict.CORRECT, score.verdict)
+    }
+
+    @Test
+    fun `a misspelled word is a near miss rather than a wrong word`() {
+        val typo = evaluator.score("grasias", "gracias")
+        val wrongWord = evaluator.score("adiós", "gracias")
+
+        assertTrue(typo.similarity < 1f)
+        assertEquals(Verdict.CORRECT, typo.verdict)
+        assertTrue(wrongWord.similarity < typo.similarity)
+    }
+
+    @Test
+    fun `Han and kana are scored per character without spaces`() {
+        val exact = evaluator.score("私は学生です", "私は学生です")
+        val oneCharacter = evaluator.score("私は先生です", "私は学生です")
+
+        assertEquals(Verdict.CORRECT, exact.verdict)
+        assertEquals(5f / 6f, oneCharacter.similarity, 0.001f)
+        assertEquals(Verdict.AMBIGUOUS, oneCharacter.verdict)
+    }
+
+    @Test
+    fun `kana voicing marks are not folded away`() {
+        val score = evaluator.score("ありかとう", "ありがとう")
+
+        assertTrue(score.similarity < 1f)
+    }
+}
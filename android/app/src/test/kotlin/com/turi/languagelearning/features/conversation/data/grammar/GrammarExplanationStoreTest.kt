@@ -0,0 +1,164 @@
+package com.turi.languagelearning.features.conversation.data.grammar
+
+import android.content.Context
+import com.turi.languagelearning.core.model.Language
+import com.turi.languagelearning.core.network.RequestPriority
+import com.turi.languagelearning.data.local.dao.GrammarExplanationDao
+import com.turi.languagelearning.data.local.entity.GrammarExplanationEntity
+import com.turi.languagelearning.data.local.pack.DialoguePackRepository
+import com.turi.languagelearning.features.conversation.domain.GrammarExplanation
+import com.turi.languagelearning.features.conversation.domain.GrammarExplanationGenerator
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.mockito.Mockito.mock
+
+class GrammarExplanationStoreTest {
+
+    private val dao = FakeGrammarExplanationDao()
+
+    // Without a pack on the classpath the content version comes from the generator alone
+    private val packs = DialoguePackRepository(mock(Context::class.java))
+
+    private fun store(generatorVersion: Int = 1) =
+        GrammarExplanationStore(dao, packs, FixedVersionGenerator(generatorVersion))
+
+    @Test
+    fun `put evicts least recently used rows once over budget`() = runTest {
+        val store = store()
+        val language = Language.SPANISH
+
+        // Same-length sentences, so every row has the same size
+        store.put(sentence(0), language, explanation(sentence(0)))
+        val rows = (GrammarExplanationStore.STORAGE_BUDGET_BYTES / dao.totalSizeBytes()).toInt()
+        for (i in 1 until rows) store.put(sentence(i), language, explanation(sentence(i)))
+        assertEquals(rows, dao.size)
+
+        store.put(sentence(rows), language, explanation(sentence(rows)))
+
+        assertTrue(dao.totalSizeBytes() <= GrammarExplanationStore.STORAGE_BUDGET_BYTES)
+        assertFalse(store.isFull())
+        assertFalse(store.contains(sentence(0), language))
+        assertFalse(store.contains(sentence(EVICTION_BATCH - 1), language))
+        assertTrue(store.contains(sentence(EVICTION_BATCH), language))
+        assertTrue(store.contains(sentence(rows), language))
+    }
+
+    @Test
+    fun `get keeps a row from eviction`() = runTest {
+        val store = store()
+        val language = Language.SPANISH
+        repeat(ROWS_IN_BUDGET) {
+            dao.seed(sentence(it), language, store.contentVersion, lastUsedAt = it + 1L)
+        }
+        assertTrue(store.isFull())
+
+        assertNotNull(store.get(sentence(0), language))
+        store.put("extra", language, explanation("extra"))
+
+        assertTrue(store.contains(sentence(0), language))
+        assertFalse(store.contains(sentence(1), language))
+        assertTrue(store.contains("extra", language))
+    }
+
+    @Test
+    fun `rows from another content version are purged on first use`() = runTest {
+        val language = Language.FRENCH
+        val old = store(generatorVersion = 1)
+        old.put("bonjour", language, explanation("bonjour"))
+        old.put("merci", language, explanation("merci"))
+
+        val current = store(generatorVersion = 2)
+        assertNull(current.get("bonjour", language))
+        assertEquals(0, dao.size)
+
+        current.put("salut", language, explanation("salut"))
+        assertNotNull(current.get("salut", language))
+        assertEquals(1, dao.size)
+    }
+
+    @Test
+    fun `a row written for another version is not served`() = runTest {
+        val store = store()
+        store.get("hola", Language.SPANISH) // settles the purge
+        dao.seed("hola", Language.SPANISH, store.contentVersion + 1, lastUsedAt = 0)
+
+        assertNull(store.get("hola", Language.SPANISH))
+    }
+
+    private fun sentence(index: Int) = "frase %03d".format(index)
+
+    private fun explanation(sentence: String) = GrammarExplanation(
+        sentence = sentence,
+        language = Language.SPANISH,
+        explanation = "x".repeat(ROW_BYTES / 4),
+        grammarRules = emptyList(),
+        examples = emptyList()
+    )
+
+    private class FixedVersionGenerator(override val version: Int) : GrammarExplanationGenerator {
+        override suspend fun generate(sentence: String, language: Language, priority: RequestPriority) =
+            throw UnsupportedOperationException()
+    }
+
+    /**
+     * In-memory [GrammarExplanationDao]; least recently used ties go to the older insert
+     */
+    private class FakeGrammarExplanationDao : GrammarExplanationDao {
+
+        private val rows = LinkedHashMap<String, GrammarExplanationEntity>()
+
+        val size: Int get() = rows.size
+
+        fun seed(sentence: String, language: Language, contentVersion: Int, lastUsedAt: Long) {
+            rows[GrammarExplanationStore.key(sentence, language)] = GrammarExplanationEntity(
+                sentenceKey = GrammarExplanationStore.key(sentence, language),
+                payload = "{}",
+                sizeBytes = ROW_BYTES,
+                contentVersion = contentVersion,
+                createdAt = lastUsedAt,
+                lastUsedAt = lastUsedAt
+            )
+        }
+
+        override suspend fun getExplanation(sentenceKey: String) = rows[sentenceKey]
+
+        override suspend fun contains(sentenceKey: String) = sentenceKey in rows
+
+        override suspend fun insertExplanation(entry: GrammarExplanationEntity) {
+            rows.remove(entry.sentenceKey)
+            rows[entry.sentenceKey] = entry
+        }
+
+        override suspend fun markUsed(sentenceKey: String, usedAt: Long) {
+            rows[sentenceKey]?.let { rows[sentenceKey] = it.copy(lastUsedAt = usedAt) }
+        }
+
+        override suspend fun totalSizeBytes() = rows.values.sumOf { it.sizeBytes.toLong() }
+
+        override suspend fun leastRecentlyUsedKeys(limit: Int) =
+            rows.values.sortedBy { it.lastUsedAt }.take(limit).map { it.sentenceKey }
+
+        override suspend fun deleteExplanations(sentenceKeys: List<String>) {
+            sentenceKeys.forEach { rows.remove(it) }
+        }
+
+        override suspend fun deleteOtherVersions(contentVersion: Int): Int {
+            val other = rows.values.filter { it.contentVersion != contentVersion }
+            other.forEach { rows.remove(it.sentenceKey) }
+            return other.size
+        }
+    }
+
+    private companion object {
+        const val ROW_BYTES = 8 * 1024
+        const val ROWS_IN_BUDGET = (GrammarExplanationStore.STORAGE_BUDGET_BYTES / ROW_BYTES).toInt()
+
+        // Rows the store drops per eviction round
+        const val EVICTION_BATCH = 8
+    }
+}
@@ -0,0 +1,50 @@
+import groovy.json.JsonSlurper
+import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.tasks.CacheableTask
+import org.gradle.api.tasks.InputDirectory
+import org.gradle.api.tasks.OutputDirectory
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
+import org.gradle.api.tasks.TaskAction
+
+/**
+ * Compiles every `*.json` dialogue flow in [sourceDir] into a single
+ * `dialogues/dialogues.dpk` asset under [outputDir].
+ */
+@CacheableTask
+abstract class CompileDialoguePacksTask : DefaultTask() {
+
+    @get:InputDirectory
+    @get:PathSensitive(PathSensitivity.RELATIVE)
+    abstract val sourceDir: DirectoryProperty
+
+    @get:OutputDirectory
+    abstract val outputDir: DirectoryProperty
+
+    @TaskAction
+    fun compile() {
+        val sources = sourceDir.get().asFile
+            .listFiles { file -> file.extension == "json" }
+            .orEmpty()
+            .sortedBy { it.name }
+
+        @Suppress("UNCHECKED_CAST")
+        val flows = sources.map { file ->
+            JsonSlurper().parse(file, Charsets.UTF_8.name()) as? Map<String, Any?>
+                ?: throw GradleException("${file.name}: expected a JSON object")
+        }
+
+        val pack = try {
+            DialoguePackCompiler.compile(flows)
+        } catch (e: IllegalArgumentException) {
+            throw GradleException("Invalid dialogue pack: ${e.message}", e)
+        }
+
+        val target = outputDir.get().asFile.resolve("dialogues/dialogues.dpk")
+        target.parentFile.mkdirs()
+        target.writeBytes(pack)
+        logger.info("Compiled ${flows.size} dialogue flows into ${pack.size} bytes")
+    }
+}
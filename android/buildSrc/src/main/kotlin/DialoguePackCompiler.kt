@@ -0,0 +1,171 @@
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+
+/**
+ * Compiles authored dialogue flows into the binary pack read by `DialoguePack` in the app.
+ *
+ * Layout (big-endian ints):
+ *   header      MAGIC, VERSION, stringCount, flowCount, dialogueCount, optionCount, pointCount
+ *   offsets     stringCount + 1 byte offsets into the string data
+ *   flows       FLOW_RECORD_INTS per flow
+ *   dialogues   DIALOGUE_RECORD_INTS per dialogue, grouped by flow
+ *   options     OPTION_RECORD_INTS per option, grouped by dialogue
+ *   points      one string index per learning point, grouped by dialogue
+ *   strings     deduplicated UTF-8 string data
+ *
+ * Strings are referenced by table index (-1 for null) and option targets by global dialogue
+ * index, so the runtime never has to look anything up by id. Keep in sync with `DialoguePack`.
+ */
+object DialoguePackCompiler {
+
+    const val MAGIC = 0x54445031 // "TDP1"
+    const val VERSION = 1
+    const val FLOW_RECORD_INTS = 7
+    const val DIALOGUE_RECORD_INTS = 13
+    const val OPTION_RECORD_INTS = 5
+
+    /**
+     * [flows] are parsed flow documents:
+     * `{characterId, characterName, language, description, startDialogueId, dialogues: [...]}`,
+     * each dialogue `{id, phrase: {text, translation, difficulty?}, isQuestion?, context?,
+     * learningPoints?, options: [{id, text, translation, next?, isCorrect?}]}`.
+     */
+    fun compile(flows: List<Map<String, Any?>>): ByteArray {
+        val strings = StringTable()
+        val flowRecords = mutableListOf<IntArray>()
+        val dialogueRecords = mutableListOf<IntArray>()
+        val optionRecords = mutableListOf<IntArray>()
+        val points = mutableListOf<Int>()
+
+        // Pending option targets, resolved once every dialogue of the flow has an index
+        class PendingOption(val record: IntArray, val nextId: String?)
+
+        for (flow in flows) {
+            val characterId = flow.requireString("characterId")
+            val characterName = flow.requireString("characterName")
+            val dialogues = flow.requireList("dialogues")
+            val firstDialogue = dialogueRecords.size
+            val indexById = mutableMapOf<String, Int>()
+            val pending = mutableListOf<PendingOption>()
+
+            dialogues.forEach { dialogue ->
+                val id = dialogue.requireString("id")
+                require(indexById.put(id, dialogueRecords.size) == null) {
+                    "Duplicate dialogue id '$id' in flow '$characterId'"
+                }
+
+                val phrase = dialogue.requireMap("phrase")
+                val options = dialogue.optionalList("options")
+                val learningPoints = (dialogue["learningPoints"] as? List<*>).orEmpty().map { it.toString() }
+
+                dialogueRecords += intArrayOf(
+                    strings.add(id),
+                    strings.add(dialogue["characterName"] as? String ?: characterName),
+                    strings.add(phrase["id"] as? String ?: "phrase_$id"),
+                    strings.add(phrase.requireString("text")),
+                    strings.add(phrase.requireString("translation")),
+                    strings.addNullable(phrase["audioUrl"] as? String),
+                    (phrase["difficulty"] as? Number)?.toInt() ?: 1,
+                    if (dialogue["isQuestion"] == true) 1 else 0,
+                    strings.addNullable(dialogue["context"] as? String),
+                    optionRecords.size,
+                    options.size,
+                    points.size,
+                    learningPoints.size
+                )
+
+                options.forEach { option ->
+                    val record = intArrayOf(
+                        strings.add(option.requireString("id")),
+                        strings.add(option.requireString("text")),
+                        strings.add(option.requireString("translation")),
+                        -1,
+                        if (option["isCorrect"] == false) 0 else 1
+                    )
+                    optionRecords += record
+                    pending += PendingOption(record, option["next"] as? String)
+                }
+                learningPoints.forEach { points += strings.add(it) }
+            }
+
+            pending.forEach { option ->
+                val nextId = option.nextId ?: return@forEach
+                option.record[3] = indexById[nextId]
+                    ?: throw IllegalArgumentException("Unknown next dialogue '$nextId' in flow '$characterId'")
+            }
+
+            val startId = flow.requireString("startDialogueId")
+            flowRecords += intArrayOf(
+                strings.add(characterId),
+                strings.add(characterName),
+                strings.add(flow.requireString("language")),
+                strings.add(flow["description"] as? String ?: ""),
+                indexById[startId] ?: throw IllegalArgumentException("Unknown start dialogue '$startId' in flow '$characterId'"),
+                firstDialogue,
+                dialogues.size
+            )
+        }
+
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use { out ->
+            out.writeInt(MAGIC)
+            out.writeInt(VERSION)
+            out.writeInt(strings.size)
+            out.writeInt(flowRecords.size)
+            out.writeInt(dialogueRecords.size)
+            out.writeInt(optionRecords.size)
+            out.writeInt(points.size)
+
+            strings.writeOffsets(out)
+            for (records in listOf(flowRecords, dialogueRecords, optionRecords)) {
+                records.forEach { record -> record.forEach(out::writeInt) }
+            }
+            points.forEach(out::writeInt)
+            strings.writeData(out)
+        }
+        return bytes.toByteArray()
+    }
+
+    private class StringTable {
+        private val indices = LinkedHashMap<String, Int>()
+        private val encoded = mutableListOf<ByteArray>()
+
+        val size: Int
+            get() = encoded.size
+
+        fun add(value: String): Int = indices.getOrPut(value) {
+            encoded += value.toByteArray(Charsets.UTF_8)
+            encoded.size - 1
+        }
+
+        fun addNullable(value: String?): Int = value?.let(::add) ?: -1
+
+        fun writeOffsets(out: DataOutputStream) {
+            var offset = 0
+            out.writeInt(offset)
+            encoded.forEach { bytes ->
+                offset += bytes.size
+                out.writeInt(offset)
+            }
+        }
+
+        fun writeData(out: DataOutputStream) {
+            encoded.forEach(out::write)
+        }
+    }
+
+    private fun Map<String, Any?>.requireString(key: String): String =
+        this[key] as? String ?: throw IllegalArgumentException("Missing string '$key'")
+
+    @Suppress("UNCHECKED_CAST")
+    private fun Map<String, Any?>.requireMap(key: String): Map<String, Any?> =
+        this[key] as? Map<String, Any?> ?: throw IllegalArgumentException("Missing object '$key'")
+
+    @Suppress("UNCHECKED_CAST")
+    private fun Map<String, Any?>.requireList(key: String): List<Map<String, Any?>> =
+        this[key] as? List<Map<String, Any?>> ?: throw IllegalArgumentException("Missing array '$key'")
+
+    @Suppress("UNCHECKED_CAST")
+    private fun Map<String, Any?>.optionalList(key: String): List<Map<String, Any?>> =
+        this[key] as? List<Map<String, Any?>> ?: emptyList()
+}